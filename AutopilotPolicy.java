@@ -0,0 +1,379 @@
+package application;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Light policy that looks ahead with Monte Carlo tree search. Every
+ * {@link #DECISION_SECONDS} it picks the lights worth toggling, the ones with
+ * cars close by, and searches the sequences of toggles over the next
+ * {@link #DEPTH} decisions. Each sequence is tried on a copy of the game made
+ * with {@link Game#fork()}: the copy runs the sequence for the whole horizon
+ * and is scored by its arrivals, crashes and the time its cars stood still.
+ * The first toggle of the most visited sequence is then made in the real game.
+ *
+ * Rollouts run in batches, one per core, each worker on its own copy that is
+ * set back to the state of the decision before every rollout. Sequences being
+ * tried count as visited without reward, so a batch spreads over the tree.
+ * The copies continue the random numbers of the game, so a sequence always
+ * gets the same score and the search picks the same toggle on every run.
+ *
+ * The policy also serves as a hint for players, see
+ * {@link #suggestLater(Game, Consumer)}. Its threads are stopped with
+ * {@link #close()}.
+ */
+public class AutopilotPolicy implements LightPolicy {
+	public static final double DECISION_SECONDS = 2.0; // Time between two decisions
+	public static final int DEPTH = 3; // Decisions a rollout covers, so the search looks 6 seconds ahead
+	public static final int DEFAULT_ROLLOUTS = 96; // Rollouts per decision
+	private static final int MAX_CANDIDATES = 8; // Lights considered at a decision
+	private static final double CANDIDATE_RADIUS = 120; // Lights farther from every car are not worth a toggle
+	private static final double EXPLORATION = 1.4; // UCB1 constant, for scores scaled to 0..1
+	private static final double CRASH_PENALTY = 20; // Score lost per crash, against 1 per arrival
+	private static final double WAIT_PENALTY = 0.2; // Score lost per second a car stands still
+	private final int rollouts;
+	private final int threads = Runtime.getRuntime().availableProcessors();
+	private final ExecutorService workers = Executors.newFixedThreadPool(threads, task -> {
+		Thread thread = new Thread(task, "autopilot");
+		thread.setDaemon(true); // Lets the program end while the policy is still referenced
+		return thread;
+	});
+	private final ExecutorService searcher = Executors.newSingleThreadExecutor(task -> {
+		Thread thread = new Thread(task, "autopilot-hint"); // Waits for the workers, so it cannot be one of them
+		thread.setDaemon(true);
+		return thread;
+	});
+	private long lastDecision = -1; // Tick of the last decision, -1 before the first
+	private int decisions = 0;
+	private long searchNanos = 0; // Time spent searching, for the statistics
+
+	/**
+	 * A sequence of toggles, one per decision; action 0 keeps the lights and
+	 * action a toggles candidate a - 1.
+	 */
+	private static class Node {
+		private final Node parent;
+		private final int action;
+		private final int depth;
+		private Node[] children;
+		private int visits = 0;
+		private int pending = 0; // Rollouts of the current batch below this node
+		private double total = 0; // Sum of the scores of its rollouts
+
+		private Node(Node parent, int action) {
+			this.parent = parent;
+			this.action = action;
+			this.depth = parent != null ? parent.depth + 1 : 0;
+		}
+	}
+
+	/**
+	 * Creates the policy.
+	 *
+	 * @param rollouts The rollouts per decision; more look at more sequences.
+	 */
+	public AutopilotPolicy(int rollouts) {
+		this.rollouts = Math.max(1, rollouts);
+	}
+
+	@Override
+	public void apply(Game game) {
+		long tick = game.getTickCount();
+		if (lastDecision >= 0 && tick >= lastDecision && tick - lastDecision < decisionTicks()) {
+			return;
+		}
+		lastDecision = tick; // Also starts again after a restore went back in time
+		TrafficLight light = suggest(game);
+		if (light != null) {
+			light.toggle();
+		}
+	}
+
+	/**
+	 * Searches the best toggle for the current state of a game without making
+	 * it.
+	 *
+	 * @param game The game; it is not changed.
+	 * @return the light to toggle now, or null if every light should stay.
+	 */
+	public TrafficLight suggest(Game game) {
+		int light = search(game);
+		return light >= 0 ? game.getTrafficLights().get(light) : null;
+	}
+
+	/**
+	 * Searches the best toggle for the current state of a game in the
+	 * background. The state is copied before this returns, so the game can go
+	 * on meanwhile; a hint found for a game that has moved on is a few moments
+	 * old.
+	 *
+	 * @param game   The game; it is not changed. Must not be stepped while this
+	 *               runs.
+	 * @param result Receives the light to toggle, or null if every light should
+	 *               stay or the policy was closed. It is called on the search
+	 *               thread.
+	 */
+	public void suggestLater(Game game, Consumer<TrafficLight> result) {
+		Game copy = game.fork();
+		List<TrafficLight> lights = game.getTrafficLights();
+		try {
+			searcher.execute(() -> {
+				int light = search(copy); // Lights are in the same order in the copy
+				result.accept(light >= 0 ? lights.get(light) : null);
+			});
+		} catch (RejectedExecutionException e) {
+			result.accept(null); // Closed
+		}
+	}
+
+	/**
+	 * Stops the threads of the policy. A search that is running ends without a
+	 * toggle.
+	 */
+	@Override
+	public void close() {
+		searcher.shutdownNow();
+		workers.shutdownNow();
+	}
+
+	/**
+	 * Searches the best toggle for the current state of a game.
+	 *
+	 * @param game The game; it is not changed.
+	 * @return the place of the light among the lights of the game, or -1 if
+	 *         every light should stay.
+	 */
+	private int search(Game game) {
+		long start = System.nanoTime();
+		int[] candidates = candidates(game, game.getTrafficLights());
+		if (candidates.length == 0) {
+			return -1;
+		}
+		ByteBuffer state = ByteBuffer.allocate(game.stateSize());
+		game.writeState(state);
+		state.flip();
+		int slots = Math.min(threads, rollouts);
+		Game[] copies = new Game[slots];
+		for (int i = 0; i < slots; i++) {
+			copies[i] = game.fork();
+		}
+
+		Node root = new Node(null, 0);
+		double[] range = { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY }; // Lowest and highest score so far
+		try {
+			for (int done = 0; done < rollouts;) {
+				int batch = Math.min(slots, rollouts - done);
+				Node[] leaves = new Node[batch];
+				List<Callable<Double>> tasks = new ArrayList<>();
+				for (int i = 0; i < batch; i++) {
+					Node leaf = select(root, candidates.length + 1, range);
+					leaves[i] = leaf;
+					for (Node node = leaf; node != null; node = node.parent) {
+						node.pending++;
+					}
+					Game copy = copies[i];
+					int[] actions = actions(leaf);
+					tasks.add(() -> rollout(copy, state.duplicate(), actions, candidates));
+				}
+				List<Future<Double>> scores = workers.invokeAll(tasks);
+				for (int i = 0; i < batch; i++) { // In batch order, so the result does not depend on the threads
+					double score = scores.get(i).get();
+					range[0] = Math.min(range[0], score);
+					range[1] = Math.max(range[1], score);
+					for (Node node = leaves[i]; node != null; node = node.parent) {
+						node.pending--;
+						node.visits++;
+						node.total += score;
+					}
+				}
+				done += batch;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return -1;
+		} catch (RejectedExecutionException e) {
+			return -1; // Closed during the search
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+			return -1;
+		}
+
+		Node best = null;
+		for (Node child : root.children) {
+			if (child != null && (best == null || child.visits > best.visits)) {
+				best = child; // Ties go to the lower action, keeping the lights first
+			}
+		}
+		decisions++;
+		searchNanos += System.nanoTime() - start;
+		return best == null || best.action == 0 ? -1 : candidates[best.action - 1];
+	}
+
+	/**
+	 * Picks the unplanned lights with the most cars within
+	 * {@link #CANDIDATE_RADIUS}.
+	 *
+	 * @param game   The game.
+	 * @param lights Its traffic lights in element order.
+	 * @return the places of the chosen lights in that order.
+	 */
+	private static int[] candidates(Game game, List<TrafficLight> lights) {
+		Map<Long, List<Integer>> cells = new HashMap<>(); // Unplanned lights by cell of CANDIDATE_RADIUS pixels
+		for (int i = 0; i < lights.size(); i++) {
+			if (!lights.get(i).isPlanned()) {
+				cells.computeIfAbsent(cellKey(lights.get(i).getCenterX(), lights.get(i).getCenterY()),
+						key -> new ArrayList<>()).add(i);
+			}
+		}
+		int[] nearCars = new int[lights.size()];
+		for (Car car : game.getCars()) {
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					List<Integer> cell = cells.get(cellKey(car.getPositionX() + dx * CANDIDATE_RADIUS,
+							car.getPositionY() + dy * CANDIDATE_RADIUS));
+					if (cell == null) {
+						continue;
+					}
+					for (int index : cell) {
+						double x = car.getPositionX() - lights.get(index).getCenterX();
+						double y = car.getPositionY() - lights.get(index).getCenterY();
+						if (x * x + y * y < CANDIDATE_RADIUS * CANDIDATE_RADIUS) {
+							nearCars[index]++;
+						}
+					}
+				}
+			}
+		}
+		List<Integer> chosen = new ArrayList<>();
+		for (int i = 0; i < lights.size(); i++) {
+			if (nearCars[i] > 0) {
+				chosen.add(i);
+			}
+		}
+		chosen.sort((a, b) -> nearCars[a] != nearCars[b] ? nearCars[b] - nearCars[a] : a - b);
+		int[] result = new int[Math.min(MAX_CANDIDATES, chosen.size())];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = chosen.get(i);
+		}
+		return result;
+	}
+
+	private static long cellKey(double x, double y) {
+		return ((long) Math.floor(x / CANDIDATE_RADIUS) << 32)
+				^ ((long) Math.floor(y / CANDIDATE_RADIUS) & 0xffffffffL);
+	}
+
+	/**
+	 * Walks down the tree by UCB1 to a sequence that has not been tried, or to a
+	 * full one.
+	 *
+	 * @param root    The root.
+	 * @param actions The number of actions at every decision.
+	 * @param range   Lowest and highest score so far, to scale the means.
+	 * @return the node to roll out.
+	 */
+	private static Node select(Node root, int actions, double[] range) {
+		Node node = root;
+		while (node.depth < DEPTH) {
+			if (node.children == null) {
+				node.children = new Node[actions];
+			}
+			for (int a = 0; a < actions; a++) {
+				if (node.children[a] == null) {
+					node.children[a] = new Node(node, a);
+					return node.children[a];
+				}
+			}
+			Node best = null;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			double spread = range[1] > range[0] ? range[1] - range[0] : 1;
+			double parentVisits = Math.log(node.visits + node.pending + 1);
+			for (Node child : node.children) {
+				int visits = child.visits + child.pending; // Pending rollouts count as visits without reward
+				double mean = child.visits > 0 ? (child.total / child.visits - range[0]) / spread : 0;
+				double value = mean * child.visits / Math.max(1, visits)
+						+ EXPLORATION * Math.sqrt(parentVisits / Math.max(1, visits));
+				if (value > bestValue) {
+					bestValue = value;
+					best = child;
+				}
+			}
+			node = best;
+		}
+		return node;
+	}
+
+	private static int[] actions(Node leaf) {
+		int[] actions = new int[leaf.depth];
+		for (Node node = leaf; node.parent != null; node = node.parent) {
+			actions[node.depth - 1] = node.action;
+		}
+		return actions;
+	}
+
+	/**
+	 * Sets a copy of the game to the state of the decision, makes a sequence of
+	 * toggles and runs it to the end of the horizon.
+	 *
+	 * @param copy       The copy of this worker.
+	 * @param state      The state of the decision.
+	 * @param actions    The toggle of every decision, possibly fewer than
+	 *                   {@link #DEPTH}; the lights stay after the last one.
+	 * @param candidates The lights the actions refer to.
+	 * @return the score: arrivals, less penalties for crashes and standing.
+	 */
+	private static double rollout(Game copy, ByteBuffer state, int[] actions, int[] candidates) {
+		copy.readState(state);
+		List<TrafficLight> lights = copy.getTrafficLights();
+		int arrived = copy.getCarsArrived();
+		int crashes = copy.getCrashes();
+		double standing = 0; // Car seconds spent stopped
+		for (int decision = 0; decision < DEPTH; decision++) {
+			if (decision < actions.length && actions[decision] > 0) {
+				lights.get(candidates[actions[decision] - 1]).toggle();
+			}
+			for (long ticks = decisionTicks(); ticks > 0;) {
+				int step = copy.step((int) Math.min(Game.MAX_STEP_TICKS, ticks));
+				ticks -= step;
+				List<Car> cars = copy.getCars();
+				for (int i = 0; i < cars.size(); i++) {
+					if (cars.get(i).isStopped()) {
+						standing += step * Game.TICK_SECONDS;
+					}
+				}
+			}
+		}
+		return (copy.getCarsArrived() - arrived) - CRASH_PENALTY * (copy.getCrashes() - crashes)
+				- WAIT_PENALTY * standing;
+	}
+
+	private static long decisionTicks() {
+		return Math.round(DECISION_SECONDS / Game.TICK_SECONDS);
+	}
+
+	public int getDecisionCount() {
+		return decisions;
+	}
+
+	/**
+	 * Returns the mean time a decision took.
+	 *
+	 * @return the time in milliseconds, 0 before the first decision.
+	 */
+	public double getMeanSearchMillis() {
+		return decisions > 0 ? searchNanos / 1e6 / decisions : 0;
+	}
+}
@@ -1,15 +1,9 @@
 package application;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 
-import javafx.animation.Interpolator;
-import javafx.animation.KeyFrame;
-import javafx.animation.PathTransition;
-import javafx.animation.Timeline;
-import javafx.geometry.Point2D;
 import javafx.scene.layout.Pane;
 import javafx.scene.shape.Rectangle;
-import javafx.util.Duration;
 
 //Berat Metehan Çakmak 150123547
 //Eray Hoşavcıoğlu 150121005
@@ -19,15 +13,37 @@ import javafx.util.Duration;
  * parses the text file to create and place game elements like roads, buildings,
  * and traffic lights according to specified configurations.
  */
-public class Car extends MapElement {
-	private static final Interpolator Interpolator = null;
-	private PathTransition transition; // Manages the animation of the car along the path
-	private Rectangle carShape; // Visual representation of the car
+public class Car extends MapElement implements TimingWheel.Timer {
+	private static final double HALF_LENGTH = 10; // Half of the 20 pixel length of a car
+	private static final double HALF_WIDTH = 5; // Half of its 10 pixel width
+	private static final double REACH = 2 * Math.hypot(HALF_LENGTH, HALF_WIDTH); // Centre distance below which cars may touch
+	public static final double SPEED = 45.0; // Speed of every moving car, in pixels per simulated second
+	private Rectangle carShape; // Visual representation of the car, created when first drawn
+	private int id = -1; // Number given by the game when the car is spawned
 	private boolean isStopped; // Indicates whether the car is currently stopped
-	private final double speed = 45.0; // A constant speed value for all cars
+	private double speed = SPEED; // A constant speed value for all cars
 	private application.Path path; // A reference to store the path data inside the car object
 	private boolean ada = true;
-	private static ArrayList<Car> allCars = new ArrayList<>();
+	private long adaTick = -1; // Tick in which ada is set again after a restart, -1 if none is pending
+	private long adaTimer = -1; // Handle of the wheel timer for adaTick
+	private double distance = 0; // Distance travelled along the path
+	private double handover = Double.POSITIVE_INFINITY; // Distance at which the car joins a meso link queue
+	private boolean held; // Stopped at its handover because the meso link there is full
+	private long spawnTick = 0; // Tick in which the car entered the game
+	private int stoppedTicks = 0; // Ticks the car has spent stopped so far
+	private long waitTick = -1; // Tick the car stopped in, -1 while it moves; kept by the WaitForGraph
+	private int segment = 0; // Path segment the car is currently on, used as a lookup hint
+	private int lightZone = 0; // First stretch of LightZones the car has not passed yet, used as a lookup hint
+	private final double[] position = new double[3]; // Current x, y and heading in degrees
+	private double startX; // Position at the start of the last step, for swept collision tests
+	private double startY;
+	private boolean moved = false; // Whether the last step moved the car; cars that both stood still cannot crash
+	private Car ahead; // Next car ahead on the same path, null for the first one
+	private int lane = -1; // Place of the car in the kinematics lanes of the last step
+	private Car behind; // Next car behind on the same path, null for the last one
+	private Platoon platoon; // Stopped queue the car is updated with, null while it is checked on its own
+	private double directionX = 1; // Unit vector along the heading, kept so collision tests need no trigonometry
+	private double directionY = 0;
 
 	/**
 	 * Constructs a car that follows a predefined path.
@@ -36,64 +52,194 @@ public class Car extends MapElement {
 	 */
 	public Car(Path path) {
 		super(path.getStartX(), path.getStartY()); // Initialize at the starting point of the path
-		carShape = new Rectangle(path.getStartX(), path.getStartY(), 20, 10);
-		carShape.setFill(javafx.scene.paint.Color.BLUE);
 		this.path = path;
 
-		// Setup the path transition for the car
-		initializeTransition(path, speed);
+		segment = path.sample(0, 0, position);
 		isStopped = false;
-		allCars.add(this);
+		resetSweep();
 	}
 
-	private void initializeTransition(Path path, double speed) {
-		this.transition = new PathTransition();
-		double pathLength = path.getLength();
-		double durationSeconds = pathLength / speed;
+	/**
+	 * Moves the car forward along its path by one simulation step. A stopped car
+	 * keeps its position and the step is added to its stopped time. The position
+	 * at the start of the step is kept so that collisions can be tested along the
+	 * whole movement.
+	 *
+	 * @param ticks Length of the step in ticks.
+	 * @return true if the car has reached the end of its path.
+	 */
+	public boolean advance(int ticks) {
+		double dt = ticks * Game.TICK_SECONDS;
+		return advanceTo(isStopped ? distance : Math.min(distance + speed * dt, path.getLength()), ticks);
+	}
 
-		transition.setNode(this.carShape);
-		transition.setPath(path.getFXPath());
-		transition.setDuration(Duration.seconds(durationSeconds));
-		transition.setOrientation(PathTransition.OrientationType.ORTHOGONAL_TO_TANGENT);
-		transition.setInterpolator(Interpolator.LINEAR);
-		transition.setCycleCount(1);
-		transition.setOnFinished(event -> onPathComplete());
-		transition.play();
+	/**
+	 * Moves the car to a distance worked out for it by a
+	 * {@link KinematicsKernel}, which is the distance {@link #advance(int)} would
+	 * have moved it to.
+	 *
+	 * @param progress The new distance along the path; ignored for a stopped car.
+	 * @param ticks    Length of the step in ticks.
+	 * @return true if the car has reached the end of its path.
+	 */
+	public boolean advanceTo(double progress, int ticks) {
+		startX = position[0];
+		startY = position[1];
+		moved = !isStopped;
+		if (!isStopped) {
+			distance = progress;
+			double heading = position[2];
+			segment = path.sample(distance, segment, position);
+			if (position[2] != heading) {
+				updateDirection(); // Only at corners
+			}
+			syncShape();
+		} else {
+			stoppedTicks += ticks;
+		}
+		return distance >= path.getLength();
 	}
 
 	/**
-	 * Checks the status of the nearest traffic light and stops or starts the car
-	 * based on the light's color.
-	 * 
-	 * @param light The traffic light to check against.
+	 * Puts the car at a distance along its path, for a car leaving a meso link.
+	 *
+	 * @param distance The distance from the start of the path.
+	 */
+	public void placeAt(double distance) {
+		this.distance = distance;
+		segment = path.sample(distance, 0, position);
+		syncShape();
+		resetSweep();
+	}
+
+	/**
+	 * Writes the movement state of the car to a snapshot buffer. The path is
+	 * written by the game, which knows the index of every path.
+	 *
+	 * @param buffer The buffer receiving the state.
+	 */
+	public void writeState(ByteBuffer buffer) {
+		buffer.putInt(id);
+		buffer.putDouble(distance);
+		buffer.putLong(spawnTick);
+		buffer.putInt(stoppedTicks);
+		buffer.putFloat((float) speed);
+		buffer.putLong(adaTick);
+		buffer.putLong(waitTick);
+		buffer.put(getStateFlags());
+	}
+
+	/**
+	 * Restores the movement state written by {@link #writeState(ByteBuffer)} and
+	 * moves the car to the restored position.
+	 *
+	 * @param buffer The buffer holding the state.
+	 */
+	public void readState(ByteBuffer buffer) {
+		id = buffer.getInt();
+		distance = buffer.getDouble();
+		spawnTick = buffer.getLong();
+		stoppedTicks = buffer.getInt();
+		speed = buffer.getFloat();
+		adaTick = buffer.getLong();
+		waitTick = buffer.getLong();
+		byte flags = buffer.get();
+		isStopped = (flags & 1) != 0;
+		ada = (flags & 2) != 0;
+		held = (flags & 4) != 0;
+		segment = path.sample(distance, 0, position);
+		syncShape();
+		resetSweep();
+	}
+
+	/**
+	 * Sets the restart timer again on the wheel of a restored game.
+	 *
+	 * @param wheel The timing wheel of the game.
 	 */
+	public void resumeTimers(TimingWheel wheel) {
+		if (adaTick >= 0) {
+			adaTimer = wheel.schedule(this, adaTick);
+		}
+	}
 
-	private void onPathComplete() {
-		transition.stop();
-		Game.getInstance(15, 15).carCompleted(this);
+	/**
+	 * Sets ada once the restart delay is over. A car that has left the game in the
+	 * meantime may still get this call, which does no harm.
+	 *
+	 * @param tick The tick the delay ended in.
+	 */
+	@Override
+	public void expire(long tick) {
+		ada = true;
+		adaTick = -1;
 	}
 
-	public void checkTrafficLight(TrafficLight light) {
+	/**
+	 * Makes the last step an empty one at the current position, for cars that
+	 * have just been placed.
+	 */
+	private void resetSweep() {
+		startX = position[0];
+		startY = position[1];
+		moved = false;
+		updateDirection();
+	}
+
+	private void updateDirection() {
+		double angle = Math.toRadians(position[2]);
+		directionX = Math.cos(angle);
+		directionY = Math.sin(angle);
+	}
+
+	/**
+	 * Places the car's rectangle on its current position along the path, centred
+	 * on the path and rotated to follow its direction. Cars that have never been
+	 * drawn, for example in a headless run, have no rectangle to update, and a
+	 * rectangle taken off the screen, as while the map is zoomed out, is only
+	 * placed again when it is drawn.
+	 */
+	private void syncShape() {
+		if (carShape == null || carShape.getParent() == null) {
+			return;
+		}
+		carShape.setTranslateX(position[0] - carShape.getX() - carShape.getWidth() / 2);
+		carShape.setTranslateY(position[1] - carShape.getY() - carShape.getHeight() / 2);
+		carShape.setRotate(position[2]);
+	}
+
+	/**
+	 * Checks the status of the nearest traffic light and stops or starts the car
+	 * based on the light's color. A car that starts again sets ada one second
+	 * later, on a timer of the game's wheel.
+	 * 
+	 * @param light The traffic light to check against.
+	 * @param wheel The timing wheel of the game.
+	 * @return true if the light holds the car.
+	 */
+	public boolean checkTrafficLight(TrafficLight light, TimingWheel wheel) {
 
 		boolean isNear = nearTrafficLight(light);
 
 		// If the traffic light is red and the car is near, stop the car.
 		if (!light.isGreen() && isNear) {
 			ada = false;
+			if (adaTick >= 0) {
+				wheel.cancel(adaTimer);
+				adaTick = -1;
+			}
 			if (!isStopped) {
 				stopCar();
 			}
+			return true;
 		} else if (light.isGreen() && isStopped && isNear) {
-			Timeline timeline = new Timeline(new KeyFrame(Duration.seconds(1), ae -> {
-				ada = true;
-			}));
-
-			startCar();
-			timeline.play();
-
 			// If the light turns green and the car is near and was stopped, start the car.
-
+			startCar();
+			wheel.cancel(adaTimer);
+			adaTick = wheel.getCurrentTick() + Math.round(1.0 / Game.TICK_SECONDS);
+			adaTimer = wheel.schedule(this, adaTick);
 		}
+		return false;
 	}
 
 	/**
@@ -103,71 +249,366 @@ public class Car extends MapElement {
 	 * @return true if the car is within 20 units of the traffic light.
 	 */
 	private boolean nearTrafficLight(TrafficLight light) {
-		// Calculating the current absolute position by adding the original position and
-		// the translation.
-		double carCurrentX = carShape.getX() + carShape.getTranslateX() + 8;
-		double carCurrentY = carShape.getY() + carShape.getTranslateY() + 4;
-		Point2D carPos = new Point2D(carCurrentX, carCurrentY);
-
-		Point2D lightPos = light.getPosition();
-		double distance = carPos.distance(lightPos);
-
-		return distance < 20;
+		double dx = position[0] - light.getCenterX(); // Plain arithmetic, as this runs for every car and light
+		double dy = position[1] - light.getCenterY(); // in every tick
+		return dx * dx + dy * dy < 20 * 20;
 	}
 
 	@Override
 	public void draw(Pane pane) {
-		if (!pane.getChildren().contains(carShape)) {
+		Rectangle carShape = getCarShape();
+		if (carShape.getParent() != pane) {
 			pane.getChildren().add(carShape);
 			// Ensure the car is added to the pane if not already present
+			syncShape(); // It was not moved while it was off the pane
 		}
-		carShape.toFront();
 	}
 
+	/**
+	 * Returns the rectangle that represents the car, creating it on first use so
+	 * that the simulation itself never needs JavaFX nodes.
+	 *
+	 * @return the car's rectangle.
+	 */
 	public Rectangle getCarShape() {
+		if (carShape == null) {
+			carShape = new Rectangle(x, y, 2 * HALF_LENGTH, 2 * HALF_WIDTH);
+			carShape.setFill(javafx.scene.paint.Color.BLUE);
+			syncShape();
+		}
 		return carShape;
 	}
 
+	public boolean hasShape() {
+		return carShape != null;
+	}
+
 	public void stopCar() {
-		if (!isStopped) {
-			transition.pause();
-			isStopped = true;
-		}
+		isStopped = true;
 	}
 
 	public void startCar() {
-		if (isStopped) {
-			transition.play();
-			isStopped = false;
+		isStopped = false;
+	}
+
+	/**
+	 * Checks whether the 20 by 10 rectangles of two cars touch, taking their
+	 * rotation into account. This is a separating axis test on the positions and
+	 * headings of the cars, so it needs neither the scene graph nor any new
+	 * objects.
+	 *
+	 * @param otherCar The car to test against.
+	 * @return true if the two rectangles intersect.
+	 */
+	public boolean overlaps(Car otherCar) {
+		return boxesMeet(position[0] - otherCar.position[0], position[1] - otherCar.position[1], 0, 0, otherCar);
+	}
+
+	/**
+	 * Checks whether two cars touched at any moment of the last step, not only at
+	 * its end. Both cars are taken to move in a straight line from their start
+	 * position to their current one, so their offset also moves in a straight
+	 * line. The rectangles keep the heading they have at the end of the step,
+	 * which only differs from the real one in the step that turns a corner. With
+	 * this test a long step cannot carry two cars through each other.
+	 *
+	 * @param otherCar The car to test against.
+	 * @return true if the rectangles met during the step.
+	 */
+	public boolean sweptOverlaps(Car otherCar) {
+		double fromX = startX - otherCar.startX;
+		double fromY = startY - otherCar.startY;
+		return boxesMeet(fromX, fromY, position[0] - otherCar.position[0] - fromX,
+				position[1] - otherCar.position[1] - fromY, otherCar);
+	}
+
+	/**
+	 * Separating axis test between the rectangle of this car and that of another
+	 * car while the offset between them moves along a line. Two rectangles are
+	 * apart exactly when their projections are apart on one of the four edge
+	 * directions. On every direction the projected offset moves linearly, so the
+	 * part of the step in which the projections overlap is an interval; the cars
+	 * meet if the intervals of all four directions share a moment.
+	 *
+	 * @param fromX    Offset from the other car to this one at the start.
+	 * @param fromY    Offset from the other car to this one at the start.
+	 * @param moveX    Change of the offset over the step.
+	 * @param moveY    Change of the offset over the step.
+	 * @param otherCar The other car.
+	 * @return true if the rectangles overlap at some moment of the step.
+	 */
+	private boolean boxesMeet(double fromX, double fromY, double moveX, double moveY, Car otherCar) {
+		double toX = fromX + moveX;
+		double toY = fromY + moveY;
+		double reach = REACH + Math.abs(moveX) + Math.abs(moveY);
+		if (toX * toX + toY * toY > reach * reach) {
+			return false; // Too far apart for the rectangles to meet anywhere on the step, the common case
 		}
+		double enter = 0; // Part of the step after which the projections overlap on every direction so far
+		double leave = 1; // Part of the step after which they are apart again on one of them
+		for (int axis = 0; axis < 4; axis++) {
+			double axisX;
+			double axisY;
+			switch (axis) {
+			case 0:
+				axisX = directionX; // Along this car
+				axisY = directionY;
+				break;
+			case 1:
+				axisX = -directionY; // Across this car
+				axisY = directionX;
+				break;
+			case 2:
+				axisX = otherCar.directionX;
+				axisY = otherCar.directionY;
+				break;
+			default:
+				axisX = -otherCar.directionY;
+				axisY = otherCar.directionX;
+				break;
+			}
+			double radius = projectedRadius(axisX, axisY) + otherCar.projectedRadius(axisX, axisY);
+			double from = fromX * axisX + fromY * axisY;
+			double move = moveX * axisX + moveY * axisY;
+			if (move == 0) {
+				if (Math.abs(from) > radius) {
+					return false; // Apart on this direction for the whole step
+				}
+				continue;
+			}
+			double t1 = (-radius - from) / move;
+			double t2 = (radius - from) / move;
+			enter = Math.max(enter, Math.min(t1, t2));
+			leave = Math.min(leave, Math.max(t1, t2));
+			if (enter > leave) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns half the length of the shadow the car's rectangle casts on a
+	 * direction.
+	 *
+	 * @param axisX The unit direction.
+	 * @param axisY The unit direction.
+	 * @return the half length of the projection.
+	 */
+	private double projectedRadius(double axisX, double axisY) {
+		return HALF_LENGTH * Math.abs(directionX * axisX + directionY * axisY)
+				+ HALF_WIDTH * Math.abs(directionX * axisY - directionY * axisX);
 	}
 
 	public boolean isBehind(Car otherCar) {
 
 		if (ada) {
-			Point2D myPosition = new Point2D(carShape.getX() + carShape.getTranslateX() + 8,
-					carShape.getY() + carShape.getTranslateY() + 4);
-			Point2D otherPosition = new Point2D(otherCar.carShape.getX() + otherCar.carShape.getTranslateX() + 8,
-					otherCar.carShape.getY() + otherCar.carShape.getTranslateY() + 4);
-			return myPosition.distance(otherPosition) < 35;
-
+			double dx = position[0] - otherCar.position[0];
+			double dy = position[1] - otherCar.position[1];
+			return dx * dx + dy * dy < 35 * 35;
 		}
 		return false;
 
 	}
 
 	public double getX() {
-		return carShape.getX();
+		return x;
 	}
 
 	public double getY() {
-		return carShape.getY();
+		return y;
+	}
+
+	/**
+	 * Returns the x coordinate of the centre of the car on its path.
+	 *
+	 * @return the current x position in pixels.
+	 */
+	public double getPositionX() {
+		return position[0];
+	}
+
+	/**
+	 * Returns the y coordinate of the centre of the car on its path.
+	 *
+	 * @return the current y position in pixels.
+	 */
+	public double getPositionY() {
+		return position[1];
+	}
+
+	/**
+	 * Returns the direction the car is facing.
+	 *
+	 * @return the heading in degrees, 0 pointing along the x axis.
+	 */
+	public double getHeading() {
+		return position[2];
+	}
+
+	/**
+	 * Returns the state of the car packed into a byte: bit 0 is set while it is
+	 * stopped, bit 1 while it watches the car ahead and bit 2 while it waits for
+	 * room in a meso link.
+	 *
+	 * @return the state flags.
+	 */
+	public byte getStateFlags() {
+		return (byte) ((isStopped ? 1 : 0) | (ada ? 2 : 0) | (held ? 4 : 0));
+	}
+
+	/**
+	 * Returns the speed the car is currently moving at.
+	 *
+	 * @return the speed in pixels per simulated second, 0 while stopped.
+	 */
+	public double getCurrentSpeed() {
+		return isStopped ? 0 : speed;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	public long getSpawnTick() {
+		return spawnTick;
+	}
+
+	public void setSpawnTick(long spawnTick) {
+		this.spawnTick = spawnTick;
+	}
+
+	/**
+	 * Returns how long the car has been stopped, at lights or behind other cars.
+	 *
+	 * @return the stopped time in ticks.
+	 */
+	public int getStoppedTicks() {
+		return stoppedTicks;
+	}
+
+	public void setStoppedTicks(int stoppedTicks) {
+		this.stoppedTicks = stoppedTicks;
+	}
+
+	/**
+	 * Returns the distance at which the game hands the car to the queue of a meso
+	 * link.
+	 *
+	 * @return the distance, or infinity if the car drives to the end of its path.
+	 */
+	public double getHandover() {
+		return handover;
+	}
+
+	public void setHandover(double handover) {
+		this.handover = handover;
+	}
+
+	/**
+	 * Returns whether the car is held at its handover because the meso link
+	 * queue it is about to join is full.
+	 *
+	 * @return true while it waits there.
+	 */
+	public boolean isHeld() {
+		return held;
+	}
+
+	public void setHeld(boolean held) {
+		this.held = held;
+	}
+
+	/**
+	 * Returns the distance the car has travelled along its path.
+	 *
+	 * @return the distance from the start of the path.
+	 */
+	public double getDistance() {
+		return distance;
 	}
 
 	public Path getPath() {
 		return this.path;
 	}
 
+	public int getLightZone() {
+		return lightZone;
+	}
+
+	public void setLightZone(int lightZone) {
+		this.lightZone = lightZone;
+	}
+
+	/**
+	 * Returns the path segment the car is on.
+	 *
+	 * @return the segment index, as defined by {@link Path#sample}.
+	 */
+	public int getSegment() {
+		return segment;
+	}
+
+	/**
+	 * Returns whether the car moved in the last step. Two cars that both stood
+	 * still cannot have met, as they would have been caught in the step that
+	 * brought them together.
+	 *
+	 * @return true if the car moved.
+	 */
+	public boolean hasMoved() {
+		return moved;
+	}
+
+	public int getLane() {
+		return lane;
+	}
+
+	public void setLane(int lane) {
+		this.lane = lane;
+	}
+
+	public Car getAhead() {
+		return ahead;
+	}
+
+	public void setAhead(Car ahead) {
+		this.ahead = ahead;
+	}
+
+	public Car getBehind() {
+		return behind;
+	}
+
+	public void setBehind(Car behind) {
+		this.behind = behind;
+	}
+
+	public Platoon getPlatoon() {
+		return platoon;
+	}
+
+	public void setPlatoon(Platoon platoon) {
+		this.platoon = platoon;
+	}
+
+	/**
+	 * Returns the tick the car stopped in.
+	 *
+	 * @return the tick, or -1 while the car moves.
+	 */
+	public long getWaitTick() {
+		return waitTick;
+	}
+
+	public void setWaitTick(long waitTick) {
+		this.waitTick = waitTick;
+	}
+
 	public boolean isStopped() {
 		return isStopped;
 	}
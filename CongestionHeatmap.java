@@ -0,0 +1,123 @@
+package application;
+
+import java.util.Arrays;
+import java.util.List;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Measures where traffic piles up. For every grid cell it counts how many
+ * car-ticks were spent in the cell and how many of those the car was stopped,
+ * in plain int arrays indexed by cell. Counting is done in buckets of simulated
+ * time: when a bucket is full its counts become the latest completed bucket and
+ * counting starts again, so the heatmap always shows a recent window.
+ */
+public class CongestionHeatmap {
+	public static final double BUCKET_SECONDS = 10.0; // Simulated time covered by one bucket
+	private final int cellsX;
+	private final int cellsY;
+	private final double cellSize;
+	private final long bucketTicks;
+	private int[] occupancy; // Car-ticks per cell in the current bucket
+	private int[] stopped; // Stopped car-ticks per cell in the current bucket
+	private int[] completedOccupancy; // Counts of the last completed bucket
+	private int[] completedStopped;
+	private long ticksInBucket = 0;
+	private int bucketsCompleted = 0;
+
+	/**
+	 * Constructs an empty heatmap for a grid.
+	 *
+	 * @param cellsX   Number of cells across.
+	 * @param cellsY   Number of cells down.
+	 * @param cellSize Size of a cell in pixels.
+	 */
+	public CongestionHeatmap(int cellsX, int cellsY, double cellSize) {
+		this.cellsX = cellsX;
+		this.cellsY = cellsY;
+		this.cellSize = cellSize;
+		this.bucketTicks = Math.round(BUCKET_SECONDS / Game.TICK_SECONDS);
+		occupancy = new int[cellsX * cellsY];
+		stopped = new int[cellsX * cellsY];
+		completedOccupancy = new int[cellsX * cellsY];
+		completedStopped = new int[cellsX * cellsY];
+	}
+
+	/**
+	 * Adds one step worth of car positions. Cars outside the grid, which happens
+	 * while they enter or leave the map, are not counted.
+	 *
+	 * @param cars  The cars currently in the game.
+	 * @param ticks The length of the step, which every car is counted for.
+	 */
+	public void record(List<Car> cars, int ticks) {
+		for (int i = 0; i < cars.size(); i++) {
+			Car car = cars.get(i);
+			int cellX = (int) (car.getPositionX() / cellSize);
+			int cellY = (int) (car.getPositionY() / cellSize);
+			if (cellX >= 0 && cellY >= 0 && cellX < cellsX && cellY < cellsY) {
+				int cell = cellY * cellsX + cellX;
+				occupancy[cell] += ticks;
+				if (car.isStopped()) {
+					stopped[cell] += ticks;
+				}
+			}
+		}
+		ticksInBucket += ticks;
+		if (ticksInBucket >= bucketTicks) {
+			int[] swap = completedOccupancy;
+			completedOccupancy = occupancy;
+			occupancy = swap;
+			swap = completedStopped;
+			completedStopped = stopped;
+			stopped = swap;
+			Arrays.fill(occupancy, 0);
+			Arrays.fill(stopped, 0);
+			ticksInBucket = 0;
+			bucketsCompleted++;
+		}
+	}
+
+	/**
+	 * Colours the last completed bucket into an ARGB pixel array with one pixel
+	 * per cell. Cells nobody passed through stay transparent. Otherwise the hue
+	 * goes from green for moving traffic to red for cells where cars mostly stood
+	 * still, and the opacity grows with the average number of cars in the cell.
+	 *
+	 * @param pixels An array of cellsX * cellsY pixels to fill.
+	 */
+	public void render(int[] pixels) {
+		for (int cell = 0; cell < pixels.length; cell++) {
+			int cars = completedOccupancy[cell];
+			if (cars == 0) {
+				pixels[cell] = 0;
+				continue;
+			}
+			double stoppedShare = (double) completedStopped[cell] / cars;
+			double meanCars = (double) cars / bucketTicks;
+			int alpha = (int) (60 + 140 * Math.min(1.0, meanCars / 3.0));
+			int red = (int) (255 * Math.min(1.0, 2 * stoppedShare));
+			int green = (int) (255 * Math.min(1.0, 2 * (1 - stoppedShare)));
+			pixels[cell] = (alpha << 24) | (red << 16) | (green << 8);
+		}
+	}
+
+	/**
+	 * Returns how many buckets have been completed. A change in this number means
+	 * the heatmap has new data to draw.
+	 *
+	 * @return the number of completed buckets.
+	 */
+	public int getBucketsCompleted() {
+		return bucketsCompleted;
+	}
+
+	public int getCellsX() {
+		return cellsX;
+	}
+
+	public int getCellsY() {
+		return cellsY;
+	}
+}
@@ -0,0 +1,192 @@
+package application;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * A curved path segment flattened into a polyline, together with its arc length
+ * table. The points are stored relative to the start of the curve, so the same
+ * table serves every curve of the same shape wherever it lies on the map.
+ * Tables are cached by shape, and a level with many identical curve tiles
+ * flattens each shape only once.
+ *
+ * Curves are split into as few straight pieces as keep the polyline within
+ * {@link #TOLERANCE} pixels of the exact curve, so tight curves get more
+ * points than wide ones.
+ */
+public class CurveTable {
+	public static final double TOLERANCE = 0.25; // Largest distance between the polyline and the curve, in pixels
+	private static final int MAX_CACHED = 4096; // Bounds the cache for servers loading many different levels
+	private static final Map<Key, CurveTable> cache = new ConcurrentHashMap<>(); // Level loads may run on any thread
+	private final double[] offsetsX; // Points after the start, relative to it; the last one is the end
+	private final double[] offsetsY;
+	private final double[] lengths; // Arc length from the start of the curve to every point
+
+	/**
+	 * Shape of a curve, relative to its start.
+	 */
+	private static class Key {
+		private final boolean arc;
+		private final double[] values;
+
+		private Key(boolean arc, double... values) {
+			this.arc = arc;
+			this.values = values;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Key && ((Key) other).arc == arc && Arrays.equals(((Key) other).values, values);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(values) * 31 + (arc ? 1 : 0);
+		}
+	}
+
+	private CurveTable(double[] offsetsX, double[] offsetsY) {
+		this.offsetsX = offsetsX;
+		this.offsetsY = offsetsY;
+		this.lengths = new double[offsetsX.length];
+		double length = 0;
+		double lastX = 0;
+		double lastY = 0;
+		for (int i = 0; i < offsetsX.length; i++) {
+			length += Math.hypot(offsetsX[i] - lastX, offsetsY[i] - lastY);
+			lengths[i] = length;
+			lastX = offsetsX[i];
+			lastY = offsetsY[i];
+		}
+	}
+
+	/**
+	 * Returns the table of a quadratic Bézier curve. All coordinates are relative
+	 * to the start of the curve.
+	 *
+	 * @param controlX X coordinate of the control point.
+	 * @param controlY Y coordinate of the control point.
+	 * @param endX     X coordinate of the end point.
+	 * @param endY     Y coordinate of the end point.
+	 * @return the shared table.
+	 */
+	public static CurveTable quad(double controlX, double controlY, double endX, double endY) {
+		return lookup(new Key(false, controlX, controlY, endX, endY), () -> {
+			// The chord of a parameter step h strays at most |P0 - 2 P1 + P2| h^2 / 4 from the curve
+			double bend = Math.hypot(endX - 2 * controlX, endY - 2 * controlY);
+			int pieces = Math.max(1, (int) Math.ceil(Math.sqrt(bend / (4 * TOLERANCE))));
+			double[] xs = new double[pieces];
+			double[] ys = new double[pieces];
+			for (int i = 1; i <= pieces; i++) {
+				double t = (double) i / pieces;
+				xs[i - 1] = 2 * t * (1 - t) * controlX + t * t * endX;
+				ys[i - 1] = 2 * t * (1 - t) * controlY + t * t * endY;
+			}
+			return new CurveTable(xs, ys);
+		});
+	}
+
+	/**
+	 * Returns the table of a circular arc around a centre, from the start to the
+	 * end point the shorter way round; a half circle turns clockwise on screen.
+	 * If the end is not exactly on the circle the radius changes evenly along the
+	 * arc. All coordinates are relative to the start of the curve.
+	 *
+	 * @param centerX X coordinate of the centre.
+	 * @param centerY Y coordinate of the centre.
+	 * @param endX    X coordinate of the end point.
+	 * @param endY    Y coordinate of the end point.
+	 * @return the shared table.
+	 */
+	public static CurveTable arc(double centerX, double centerY, double endX, double endY) {
+		return lookup(new Key(true, centerX, centerY, endX, endY), () -> {
+			double startRadius = Math.hypot(centerX, centerY);
+			double endRadius = Math.hypot(endX - centerX, endY - centerY);
+			double startAngle = Math.atan2(-centerY, -centerX);
+			double sweep = sweep(centerX, centerY, endX, endY);
+			double radius = Math.max(startRadius, endRadius);
+			// A chord of angle a strays radius * (1 - cos(a / 2)) from the circle
+			double step = radius > TOLERANCE ? 2 * Math.acos(1 - TOLERANCE / radius) : Math.PI;
+			int pieces = Math.max(1, (int) Math.ceil(Math.abs(sweep) / step));
+			double[] xs = new double[pieces];
+			double[] ys = new double[pieces];
+			for (int i = 1; i < pieces; i++) {
+				double t = (double) i / pieces;
+				double angle = startAngle + sweep * t;
+				double r = startRadius + (endRadius - startRadius) * t;
+				xs[i - 1] = centerX + r * Math.cos(angle);
+				ys[i - 1] = centerY + r * Math.sin(angle);
+			}
+			xs[pieces - 1] = endX; // Exactly on the end point, whatever the rounding
+			ys[pieces - 1] = endY;
+			return new CurveTable(xs, ys);
+		});
+	}
+
+	/**
+	 * Returns the angle an arc turns through, positive for clockwise on screen.
+	 *
+	 * @param centerX X coordinate of the centre, relative to the start.
+	 * @param centerY Y coordinate of the centre, relative to the start.
+	 * @param endX    X coordinate of the end point, relative to the start.
+	 * @param endY    Y coordinate of the end point, relative to the start.
+	 * @return the angle in radians, above -PI and at most PI.
+	 */
+	public static double sweep(double centerX, double centerY, double endX, double endY) {
+		double sweep = Math.atan2(endY - centerY, endX - centerX) - Math.atan2(-centerY, -centerX);
+		if (sweep <= -Math.PI) {
+			sweep += 2 * Math.PI;
+		} else if (sweep > Math.PI) {
+			sweep -= 2 * Math.PI;
+		}
+		return sweep;
+	}
+
+	private static CurveTable lookup(Key key, Supplier<CurveTable> flatten) {
+		CurveTable table = cache.get(key);
+		if (table == null) {
+			if (cache.size() >= MAX_CACHED) {
+				cache.clear();
+			}
+			table = flatten.get();
+			cache.put(key, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the number of points after the start of the curve.
+	 *
+	 * @return the point count, at least 1.
+	 */
+	public int getPointCount() {
+		return offsetsX.length;
+	}
+
+	public double getOffsetX(int index) {
+		return offsetsX[index];
+	}
+
+	public double getOffsetY(int index) {
+		return offsetsY[index];
+	}
+
+	/**
+	 * Returns the arc length from the start of the curve to a point.
+	 *
+	 * @param index The point.
+	 * @return the length in pixels.
+	 */
+	public double getLength(int index) {
+		return lengths[index];
+	}
+
+	public static int getCachedCount() {
+		return cache.size();
+	}
+}
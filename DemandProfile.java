@@ -0,0 +1,114 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Describes how many cars arrive at the start of one path over time. Arrivals
+ * follow a Poisson process whose rate is a base rate, replaced by the rate of a
+ * peak window (for example a rush hour) while the simulation time is inside
+ * that window.
+ */
+public class DemandProfile {
+	private double baseRate; // Cars per simulated second outside of any peak
+	private List<double[]> peaks = new ArrayList<>(); // Peak windows as {start, end, rate}
+
+	/**
+	 * Constructs a demand profile with a constant arrival rate.
+	 *
+	 * @param baseRate The number of cars arriving per simulated second.
+	 */
+	public DemandProfile(double baseRate) {
+		this.baseRate = baseRate;
+	}
+
+	public void setBaseRate(double baseRate) {
+		this.baseRate = baseRate;
+	}
+
+	public double getBaseRate() {
+		return baseRate;
+	}
+
+	/**
+	 * Adds a window of time during which cars arrive at a different rate. When
+	 * windows overlap, the one added last wins.
+	 *
+	 * @param start The simulated second the window begins.
+	 * @param end   The simulated second the window ends.
+	 * @param rate  The number of cars arriving per simulated second inside the
+	 *              window.
+	 */
+	public void addPeak(double start, double end, double rate) {
+		if (end > start) {
+			peaks.add(new double[] { start, end, rate });
+		}
+	}
+
+	/**
+	 * Returns the arrival rate in effect at a given time.
+	 *
+	 * @param time The simulated time in seconds.
+	 * @return the number of cars arriving per simulated second at that time.
+	 */
+	public double rateAt(double time) {
+		for (int i = peaks.size() - 1; i >= 0; i--) {
+			double[] peak = peaks.get(i);
+			if (time >= peak[0] && time < peak[1]) {
+				return peak[2];
+			}
+		}
+		return baseRate;
+	}
+
+	/**
+	 * Finds the first time after the given one at which the rate may change.
+	 *
+	 * @param time The simulated time in seconds.
+	 * @return the next window boundary, or positive infinity if there is none.
+	 */
+	private double nextChange(double time) {
+		double next = Double.POSITIVE_INFINITY;
+		for (double[] peak : peaks) {
+			if (peak[0] > time && peak[0] < next) {
+				next = peak[0];
+			}
+			if (peak[1] > time && peak[1] < next) {
+				next = peak[1];
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Samples the time of the next arrival after the given time. The inter-arrival
+	 * time is drawn from an exponential distribution and stretched across the
+	 * windows of different rate, so the arrivals form an exact Poisson process
+	 * even when a peak starts or ends in between.
+	 *
+	 * @param from   The simulated time of the previous arrival.
+	 * @param random The random number source.
+	 * @return the simulated time of the next arrival, or positive infinity if no
+	 *         more cars will arrive.
+	 */
+	public double nextArrival(double from, Random random) {
+		double remaining = -Math.log(1.0 - random.nextDouble()); // Unit-rate exponential sample
+		double time = from;
+		while (true) {
+			double rate = rateAt(time);
+			double change = nextChange(time);
+			if (rate > 0 && remaining <= rate * (change - time)) {
+				return time + remaining / rate;
+			}
+			if (change == Double.POSITIVE_INFINITY) {
+				return Double.POSITIVE_INFINITY;
+			}
+			remaining -= rate * (change - time);
+			time = change;
+		}
+	}
+}
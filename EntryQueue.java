@@ -0,0 +1,224 @@
+package application;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Guards the start of one path. A car may only enter when the previous car
+ * spawned on the path, and the previous car of every other path starting at
+ * the same place, has moved clear of the start. Cars arriving while the start
+ * is blocked wait in a virtual backlog and enter, in arrival order, as soon as
+ * the start is free again. Of the backlogs of a shared start, the car that has
+ * waited longest enters first, and on equal waits the path with the lower
+ * index.
+ */
+public class EntryQueue {
+	public static final double CLEARANCE = 35.0; // Distance the last car must travel before the next may enter
+	private final Path path;
+	private final int index; // Index of the path, decides between equal waits at a shared start
+	private Car lastSpawned; // Most recent car that entered, or null once it has left the game
+	private List<EntryQueue> sharedStart = Collections.emptyList(); // Entries of other paths starting within the clearance
+	private boolean closed = false; // Set by the game while the first link of the path is a full meso queue
+	private ArrayDeque<Double> backlog = new ArrayDeque<>(); // Arrival times of the waiting cars
+	private long released = 0; // Cars that entered after waiting in the backlog
+	private double totalWait = 0; // Sum of the backlog waiting times of released cars
+	private double maxWait = 0; // Longest backlog waiting time so far
+
+	/**
+	 * Constructs the entry of a path.
+	 *
+	 * @param path  The path whose start this entry guards.
+	 * @param index The index of the path.
+	 */
+	public EntryQueue(Path path, int index) {
+		this.path = path;
+		this.index = index;
+	}
+
+	/**
+	 * Checks whether a car can enter. Only the last car spawned on each path that
+	 * starts here needs to be checked, since every earlier car is further along,
+	 * so the cost does not grow with the traffic.
+	 *
+	 * @return true if the start of the path is occupied.
+	 */
+	public boolean isBlocked() {
+		if (closed || isOccupied()) {
+			return true;
+		}
+		for (int i = 0; i < sharedStart.size(); i++) {
+			if (sharedStart.get(i).isOccupied()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isOccupied() {
+		return lastSpawned != null && lastSpawned.getDistance() < CLEARANCE;
+	}
+
+	/**
+	 * Sets the entries of the other paths that start at the same place, whose
+	 * cars would enter on top of the cars of this path.
+	 *
+	 * @param entries The entries, not including this one.
+	 */
+	public void setSharedStart(List<EntryQueue> entries) {
+		this.sharedStart = entries;
+	}
+
+	/**
+	 * Closes or opens the entry of a path that starts in a meso link, whose cars
+	 * are queued rather than driven.
+	 *
+	 * @param closed true while the first link holds as many cars as fit on it.
+	 */
+	public void setClosed(boolean closed) {
+		this.closed = closed;
+	}
+
+	/**
+	 * Decides whether an arriving car may enter now. If the start is blocked or
+	 * other cars are already waiting, the arrival joins the backlog instead.
+	 *
+	 * @param time The simulated time of the arrival.
+	 * @return true if the car may be spawned immediately.
+	 */
+	public boolean admit(double time) {
+		if (backlog.isEmpty() && !isBlocked()) {
+			return true;
+		}
+		backlog.addLast(time);
+		return false;
+	}
+
+	/**
+	 * Releases the first waiting car if the start has become free, recording how
+	 * long it waited.
+	 *
+	 * @param time The current simulated time.
+	 * @return true if a waiting car should be spawned now.
+	 */
+	public boolean release(double time) {
+		if (backlog.isEmpty() || isBlocked() || !isFirstInLine()) {
+			return false;
+		}
+		double wait = time - backlog.pollFirst();
+		released++;
+		totalWait += wait;
+		maxWait = Math.max(maxWait, wait);
+		return true;
+	}
+
+	/**
+	 * Checks whether the first waiting car of this entry goes before the waiting
+	 * cars of the other paths at the same start, so the order they enter in does
+	 * not depend on the order the game checks the entries in.
+	 *
+	 * @return false if another backlog at the start goes first.
+	 */
+	private boolean isFirstInLine() {
+		double first = backlog.peekFirst();
+		for (int i = 0; i < sharedStart.size(); i++) {
+			EntryQueue other = sharedStart.get(i);
+			if (other.closed || other.backlog.isEmpty()) {
+				continue; // A closed entry must not hold up the others
+			}
+			double otherFirst = other.backlog.peekFirst();
+			if (otherFirst < first || otherFirst == first && other.index < index) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records the car that has just entered the path.
+	 *
+	 * @param car The car spawned at the start of the path.
+	 */
+	public void entered(Car car) {
+		lastSpawned = car;
+	}
+
+	/**
+	 * Forgets a car that has left the game, so that a crash at the start of the
+	 * path does not block the entry forever.
+	 *
+	 * @param car The car that was removed.
+	 */
+	public void left(Car car) {
+		if (lastSpawned == car) {
+			lastSpawned = null;
+		}
+	}
+
+	/**
+	 * Writes the backlog and the waiting statistics to a snapshot buffer. The last
+	 * car that entered is written by the game as an index into its car list.
+	 *
+	 * @param buffer The buffer receiving the state.
+	 */
+	public void writeState(ByteBuffer buffer) {
+		buffer.putInt(backlog.size());
+		for (double arrival : backlog) {
+			buffer.putDouble(arrival);
+		}
+		buffer.putLong(released);
+		buffer.putDouble(totalWait);
+		buffer.putDouble(maxWait);
+	}
+
+	/**
+	 * Restores the state written by {@link #writeState(ByteBuffer)}.
+	 *
+	 * @param buffer  The buffer holding the state.
+	 * @param lastCar The last car that entered, or null.
+	 */
+	public void readState(ByteBuffer buffer, Car lastCar) {
+		lastSpawned = lastCar;
+		backlog.clear();
+		int waiting = buffer.getInt();
+		for (int i = 0; i < waiting; i++) {
+			backlog.addLast(buffer.getDouble());
+		}
+		released = buffer.getLong();
+		totalWait = buffer.getDouble();
+		maxWait = buffer.getDouble();
+	}
+
+	/**
+	 * Returns the last car that entered the path while it is still in the game.
+	 *
+	 * @return the car, or null.
+	 */
+	public Car getLastSpawned() {
+		return lastSpawned;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public int getBacklogLength() {
+		return backlog.size();
+	}
+
+	public long getReleased() {
+		return released;
+	}
+
+	public double getTotalWait() {
+		return totalWait;
+	}
+
+	public double getMaxWait() {
+		return maxWait;
+	}
+}
@@ -0,0 +1,41 @@
+package application;
+
+import java.util.List;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * A fixed-time signal plan. The lights are split into two groups by their order
+ * in the level file, and the groups take turns being green for a fixed period
+ * of simulated time. Levels usually list the two lights of an intersection one
+ * after the other, so the crossing directions alternate.
+ */
+public class FixedCyclePolicy implements LightPolicy {
+	public static final double DEFAULT_PERIOD = 10.0; // Seconds each group stays green
+	private final double period;
+	private List<TrafficLight> lights; // Lights of the controlled game, looked up on first use
+
+	/**
+	 * Constructs a fixed-time plan.
+	 *
+	 * @param period The number of simulated seconds each group stays green.
+	 */
+	public FixedCyclePolicy(double period) {
+		this.period = period;
+	}
+
+	@Override
+	public void apply(Game game) {
+		boolean evenGreen = ((long) (game.getSimulationTime() / period)) % 2 == 0;
+		if (lights == null) {
+			lights = game.getTrafficLights();
+		}
+		for (int i = 0; i < lights.size(); i++) {
+			boolean green = (i % 2 == 0) == evenGreen;
+			if (lights.get(i).isGreen() != green) {
+				lights.get(i).setGreen(green);
+			}
+		}
+	}
+}
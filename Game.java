@@ -1,12 +1,15 @@
 package application;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
-import javafx.animation.AnimationTimer;
-import javafx.application.Platform;
+import java.util.TreeMap;
 
 //Berat Metehan Çakmak 150123547
 //Eray Hoşavcıoğlu 150121005
@@ -14,24 +17,68 @@ import javafx.application.Platform;
 /**
  * Manages the main logic of the simulation, including the initialization and
  * updating of game states. This class handles the creation of cars, management
- * of traffic elements, and checks for win or loss conditions. It utilizes
- * singleton pattern to ensure that only one instance of the game is active at
- * any given time.
+ * of traffic elements, and checks for win or loss conditions. Every game is an
+ * independent instance with its own level, cars, random numbers and timers, so
+ * the window, headless runs, server sessions and training environments can
+ * each run their own games side by side in one JVM.
  */
 public class Game {
-	private static volatile Game instance;
 	private List<MapElement> elements;
 	private Map<Integer, Path> paths;
 	private double gridWidth;
 	private double gridHeight;
 	private double cellSize;
 	public List<Car> cars = new ArrayList<>();
+	private final List<Car> crashedCars = new ArrayList<>(); // Reused by every collision check
+	private int[] movedIndices = new int[64]; // Cars that moved in the current step, reused by every collision check
+	private final Map<Path, Car> pathTails = new HashMap<>(); // Last car on every path, cars are linked to the one ahead
+	private final List<Platoon> platoons = new ArrayList<>(); // Stopped queues updated as one unit
+	private final Map<Path, LightZones> lightZones = new HashMap<>(); // Stretches of every path near a light
+	private List<TrafficLight> zoneLights; // The lights in element order, as the stretches refer to them
+	private int[] nearZones = new int[8]; // Reused by every light check
 	private GameUI gameUI; // Reference to the user interface
-	private long spawnInterval = 2_000_000_000; // Interval for car spawning (2 seconds)
-	private double lastSpawnTime = 0; // Time since last car was spawned
-	private AnimationTimer timer;
+	private final GameEvents events = new GameEvents(); // Spawns, arrivals, crashes and light changes for the UI
+	public static final double TICK_SECONDS = 1.0 / 60.0; // Simulated time covered by one tick
+	public static final int MAX_STEP_TICKS = 8; // Longest step: a car moves 6 pixels, well within the 20 pixel light range
+	private double spawnInterval = 2.0; // Mean time between spawns for levels without demand lines
+	private double spawnChance = 0.8; // Share of spawn intervals that produce a car in those levels
+	private Map<Integer, DemandProfile> demands = new HashMap<>(); // Demand declared in the level, by path
+	private SpawnScheduler spawnScheduler; // Created once traffic starts and the paths are known
+	private Map<Integer, SignalPlan> signalPlans = new TreeMap<>(); // Fixed time plans declared in the level
+	private TimingWheel timers = new TimingWheel(-1); // Spawn arrivals, signal plan stages and restarting cars
+	private final WaitForGraph waitGraph = new WaitForGraph(timers); // Which stopped car waits on what, for gridlocks
+	private WaitForGraph.Policy gridlockPolicy = WaitForGraph.Policy.REPORT;
+	private Map<Path, EntryQueue> entries = new HashMap<>(); // Admission control at the start of each path
+	private double[] mesoRegion; // Part of the map queued rather than driven: min x, min y, max x, max y; null for none
+	private MesoNetwork meso; // Link queues of the meso region, cut once traffic starts
+	private final MesoNetwork.Exits mesoExits = new MesoNetwork.Exits() {
+		@Override
+		public void arrived(Path path, long spawnTick, int delayTicks) {
+			mesoArrived(path, spawnTick, delayTicks);
+		}
+
+		@Override
+		public boolean enterMicro(Path path, double distance, int id, long spawnTick, int delayTicks) {
+			return leaveMeso(path, distance, id, spawnTick, delayTicks);
+		}
+	};
+	private List<EntryQueue> waitingEntries = new ArrayList<>(); // Entries that currently have a backlog
+	private double trafficStartTime = 0; // Simulated time at which spawning started
+	private double simulationTime = 0; // Simulated seconds elapsed since the game started
+	private long tickCount = 0; // Number of ticks simulated so far
+	private boolean trafficStarted = false; // Whether cars are being spawned
+	private boolean gameOver = false; // Set once the game has been won or lost
+	private final SimRandom random = new SimRandom();
+	private String levelPath; // File the level was loaded from, stored in snapshots
+	private CongestionHeatmap heatmap; // Congestion counters, only kept while the heatmap is enabled
+	private TrajectoryRecorder recorder; // Streams car states to a file while recording
+	private ReplayBuffer replay; // Last seconds of the game, kept while replays are enabled
+	private KinematicsKernel kinematics; // Moves the cars from arrays, null to move them one by one
+	private int nextCarId = 0; // Id given to the next spawned car
 	protected int crashes = 0; // Count of crashes
 	protected int carsArrived = 0; // Count of cars that have completed their paths
+	private double totalTravelTime = 0; // Sum of the travel times of arrived cars, in simulated seconds
+	private Map<Path, PathStatistics> pathStatistics = new HashMap<>(); // Travel and delay histograms by path
 	protected int winCount;
 	protected int maxCrashCount;
 
@@ -73,40 +120,159 @@ public class Game {
 	}
 
 	/**
-	 * Initializes traffic by creating an AnimationTimer that periodically spawns
-	 * cars.
+	 * Returns the event bus the game publishes spawns, arrivals, crashes, light
+	 * changes and the end of the game on.
+	 *
+	 * @return the event bus.
+	 */
+	public GameEvents getEvents() {
+		return events;
+	}
+
+	/**
+	 * Hands events published outside a tick, for example by a level reload or a
+	 * click on a light, to the subscribers.
+	 */
+	public void flushEvents() {
+		events.flush(tickCount);
+	}
+
+	/**
+	 * Starts spawning traffic. Cars are spawned from {@link #tick()} whenever the
+	 * spawn scheduler has an arrival due in simulated time, so the spawn rate
+	 * follows the simulation speed.
 	 */
 	public void createTraffic() {
-		timer = new AnimationTimer() {
-			@Override
-			public void handle(long now) {
-				if (lastSpawnTime == 0 || (now - lastSpawnTime) >= spawnInterval) {
-					if (Math.random() <= 0.8) {
-						spawnCar();
-					}
-					lastSpawnTime = now; // Update last spawn time
+		if (trafficStarted) {
+			return; // Already spawning, for example after a restore
+		}
+		trafficStarted = true;
+		trafficStartTime = simulationTime;
+		spawnScheduler = null; // Rebuilt on the next tick from the paths loaded by then
+		startSignalPlans();
+	}
+
+	/**
+	 * Starts every signal plan of the level at the current tick.
+	 */
+	private void startSignalPlans() {
+		List<TrafficLight> lights = getTrafficLights();
+		for (SignalPlan plan : signalPlans.values()) {
+			plan.start(timers, lights, tickCount);
+		}
+	}
+
+	/**
+	 * Advances the simulation by one fixed step of {@link #TICK_SECONDS}. A tick
+	 * spawns due cars, moves every car along its path, and then runs
+	 * {@link #update()} for lights, collisions and the win or loss check. The UI
+	 * may call this several times per frame to run the game faster than real
+	 * time.
+	 */
+	public void tick() {
+		step(1);
+	}
+
+	/**
+	 * Advances the simulation by several ticks in a single step, for fast-forward
+	 * and headless runs. Collisions are tested along the whole movement of the
+	 * step, so cars cannot pass through each other, but lights and the cars ahead
+	 * are only looked at once per step. Steps are limited to
+	 * {@link #MAX_STEP_TICKS}, and a trajectory recording, which stores every
+	 * tick, keeps the game at single ticks.
+	 *
+	 * @param ticks The number of ticks wanted.
+	 * @return the number of ticks simulated, 0 once the game is over.
+	 */
+	public int step(int ticks) {
+		if (gameOver) {
+			return 0;
+		}
+		ticks = recorder != null ? 1 : Math.max(1, Math.min(ticks, MAX_STEP_TICKS));
+		if (trafficStarted && spawnScheduler == null) {
+			createSpawnScheduler();
+		}
+		if (trafficStarted && mesoRegion != null && meso == null) {
+			buildMeso();
+		}
+		timers.advanceTo(tickCount); // Collects due arrivals and runs signal plans and restarting cars
+		if (trafficStarted) {
+			spawnDueCars();
+		}
+		if (meso != null) {
+			meso.step(tickCount, mesoExits);
+		}
+
+		if (kinematics != null) {
+			advanceLanes(ticks);
+		} else {
+			for (int i = cars.size() - 1; i >= 0; i--) { // Backwards, as finished cars are removed
+				Car car = cars.get(i);
+				if (car.advance(ticks)) {
+					carCompleted(car);
 				}
 			}
-		};
-		timer.start();
+		}
+
+		update();
+		if (meso != null) {
+			enterMeso();
+		}
+		if (heatmap != null) {
+			heatmap.record(cars, ticks);
+		}
+		if (recorder != null) {
+			recorder.record(tickCount, cars);
+		}
+		if (replay != null) {
+			replay.record(tickCount, cars, elements);
+		}
+		events.flush(tickCount);
+		simulationTime += ticks * TICK_SECONDS;
+		tickCount += ticks;
+		return ticks;
 	}
 
 	/**
 	 * Updates the state of the game, checking traffic lights and handling
-	 * collisions.
+	 * collisions. What each stopped car waits on is passed to the wait-for graph,
+	 * and gridlocks it finds are published and, if the policy says so, released.
+	 * The followers of a platoon whose leader stays stopped are skipped, since
+	 * nothing can change for them. A car only checks the lights whose
+	 * {@link LightZones} stretch it is on; every other light is too far away to
+	 * stop or start it.
 	 */
 	public void update() {
 
-		List<Car> carsCopy = new ArrayList<>(cars);
-		for (Car car : carsCopy) {
-			checkCarProximity(car);
-			for (MapElement element : new ArrayList<>(getElements())) {
-				if (element instanceof TrafficLight) {
-					TrafficLight light = (TrafficLight) element;
-					car.checkTrafficLight(light);
+		for (int i = 0; i < cars.size(); i++) { // Index loops, so a tick allocates nothing here
+			Car car = cars.get(i);
+			Platoon platoon = car.getPlatoon();
+			if (platoon != null && platoon.getLeader() != car && platoon.isHeld()) {
+				continue; // Its leader was checked earlier in this loop, being ahead of it
+			}
+			MapElement holder = checkCarProximity(car);
+			LightZones zones = zonesFor(car.getPath());
+			int near = zones.zonesAt(car, nearZones);
+			for (int k = 0; k < near; k++) {
+				TrafficLight light = zoneLights.get(zones.getLightIndex(nearZones[k]));
+				if (car.checkTrafficLight(light, timers)) {
+					holder = light;
 				}
 			}
+			if (car.isStopped() && !car.isHeld()) {
+				waitGraph.waiting(car, holder, tickCount);
+				if (holder != null && holder == car.getAhead()) {
+					follow(car); // Stopped behind a car and near no light
+				}
+			} else {
+				waitGraph.moving(car); // A held car waits for a meso queue, which drains by itself
+			}
+			if (platoon != null && platoon.getLeader() == car) {
+				platoon.setHeld(car.isStopped());
+			}
 		}
+		releasePlatoons();
+		resolveGridlocks();
 
 		checkCollisions(); // Check and handle collisions
 
@@ -124,125 +290,906 @@ public class Game {
 	 * @param won true if the player won, false if lost.
 	 */
 	private void endGame(boolean won) {
-		Platform.runLater(() -> gameUI.displayEndGameScreen(won));
-		timer.stop(); // Stop the game updates
+		gameOver = true; // Stop the game updates
+		stopRecording();
+		events.gameEnded(won);
+		if (gameUI == null) {
+			return; // Headless runs only need the result
+		}
 		for (Car car : cars) {
-			cars.remove(car);
-			gameUI.removeCarFromPane(car);
+			events.publish(GameEvents.Type.CAR_REMOVED, car);
+		}
+		cars.clear();
+		clearPlatoons();
+		pathTails.clear();
+	}
+
+	/**
+	 * Adds a car that has stopped behind the car ahead of it to the platoon of
+	 * that car, starting one if needed.
+	 *
+	 * @param car The stopped car.
+	 */
+	private void follow(Car car) {
+		Platoon platoon = car.getAhead().getPlatoon();
+		if (platoon != null && platoon == car.getPlatoon()) {
+			return; // Already a follower
+		}
+		if (platoon == null) {
+			platoon = new Platoon(car.getAhead());
+			platoons.add(platoon);
+		}
+		platoon.join(car);
+	}
+
+	/**
+	 * Drops the platoons whose leader has started again or that were merged into
+	 * the platoon ahead. Their cars are checked on their own from now on.
+	 */
+	private void releasePlatoons() {
+		int kept = 0;
+		for (int i = 0; i < platoons.size(); i++) {
+			Platoon platoon = platoons.get(i);
+			if (platoon.isHeld()) {
+				platoons.set(kept++, platoon);
+			} else {
+				platoon.dissolve();
+			}
+		}
+		while (platoons.size() > kept) {
+			platoons.remove(platoons.size() - 1);
+		}
+	}
+
+	/**
+	 * Removes every platoon, for example when the lights or cars change outside a
+	 * tick. They form again as cars are checked.
+	 */
+	private void clearPlatoons() {
+		platoons.forEach(Platoon::dissolve);
+		platoons.clear();
+	}
+
+	/**
+	 * Publishes the gridlocks found in this tick, one event per car, and under
+	 * the release policy starts the front car or turns the holding light green.
+	 */
+	private void resolveGridlocks() {
+		for (WaitForGraph.Gridlock gridlock : waitGraph.takeGridlocks()) {
+			for (Car car : gridlock.getCars()) {
+				events.publish(GameEvents.Type.GRIDLOCK, car);
+			}
+			if (gridlockPolicy == WaitForGraph.Policy.RELEASE) {
+				if (gridlock.getFront() instanceof TrafficLight) {
+					((TrafficLight) gridlock.getFront()).setGreen(true); // Its cars start in the next tick
+				} else {
+					((Car) gridlock.getFront()).startCar();
+				}
+			}
 		}
 	}
 
 	/**
 	 * Checks for collisions between cars and removes any cars that have collided.
+	 * Pairs are tested along their movement in the last step rather than only at
+	 * its end, so long steps do not miss crashes. Pairs of cars that both stood
+	 * still are skipped, so in a jam only the moving cars cost anything.
 	 */
 	private void checkCollisions() {
-		List<Car> toRemove = new ArrayList<>();
+		List<Car> toRemove = crashedCars;
+		toRemove.clear();
+		int movedCount = 0;
 		for (int i = 0; i < cars.size(); i++) {
-			for (int j = i + 1; j < cars.size(); j++) {
-				if (cars.get(i).getCarShape().getBoundsInParent()
-						.intersects(cars.get(j).getCarShape().getBoundsInParent())) {
-					if (!toRemove.contains(cars.get(i))) {
-						toRemove.add(cars.get(i));
-					}
-					if (!toRemove.contains(cars.get(j))) {
-						toRemove.add(cars.get(j));
-					}
-					crashes++; // Increment crash count
+			if (cars.get(i).hasMoved()) {
+				if (movedCount == movedIndices.length) {
+					movedIndices = Arrays.copyOf(movedIndices, movedCount * 2);
+				}
+				movedIndices[movedCount++] = i;
+			}
+		}
+		int firstMovedAfter = 0; // Entry of movedIndices of the first moved car after car i
+		for (int i = 0; i < cars.size(); i++) {
+			while (firstMovedAfter < movedCount && movedIndices[firstMovedAfter] <= i) {
+				firstMovedAfter++;
+			}
+			if (cars.get(i).hasMoved()) {
+				for (int j = i + 1; j < cars.size(); j++) {
+					checkPair(i, j, toRemove);
+				}
+			} else {
+				for (int k = firstMovedAfter; k < movedCount; k++) {
+					checkPair(i, movedIndices[k], toRemove);
 				}
 			}
 		}
+		if (toRemove.isEmpty()) {
+			return;
+		}
 		cars.removeAll(toRemove); // Remove collided cars after iteration
-		toRemove.forEach(car -> gameUI.removeCarFromPane(car)); // Update UI after removing cars
+		for (Car car : toRemove) {
+			carLeft(car);
+			events.publish(GameEvents.Type.CAR_CRASHED, car);
+		}
 	}
 
 	/**
-	 * Handles the completion of a car's journey by removing it from the UI and the
-	 * game's car list. It also increments the counter for cars that have
-	 * successfully completed their paths.
+	 * Tests two cars for a collision in the last step and records it.
+	 *
+	 * @param i        Index of the first car.
+	 * @param j        Index of the second car, after the first.
+	 * @param toRemove Collects the crashed cars.
+	 */
+	private void checkPair(int i, int j, List<Car> toRemove) {
+		if (cars.get(i).sweptOverlaps(cars.get(j))) {
+			if (!toRemove.contains(cars.get(i))) {
+				toRemove.add(cars.get(i));
+			}
+			if (!toRemove.contains(cars.get(j))) {
+				toRemove.add(cars.get(j));
+			}
+			crashes++; // Increment crash count
+			if (replay != null) {
+				replay.markCrash(tickCount, (cars.get(i).getPositionX() + cars.get(j).getPositionX()) / 2,
+						(cars.get(i).getPositionY() + cars.get(j).getPositionY()) / 2);
+			}
+		}
+	}
+
+	/**
+	 * Handles the completion of a car's journey by removing it from the game's car
+	 * list and reporting its arrival. It also increments the counter for cars that
+	 * have successfully completed their paths.
 	 *
 	 * @param car The car that has completed its journey.
 	 */
 	public void carCompleted(Car car) {
-		if (gameUI != null) {
-			gameUI.removeCarFromPane(car); // Remove from UI
-			cars.remove(car); // Remove from the car list
-			carsArrived++; // Increment the score for cars that have completed their path
+		events.publish(GameEvents.Type.CAR_ARRIVED, car);
+		cars.remove(car); // Remove from the car list
+		carLeft(car);
+		carsArrived++; // Increment the score for cars that have completed their path
+		totalTravelTime += (tickCount - car.getSpawnTick()) * TICK_SECONDS;
+		statisticsFor(car.getPath()).recordArrival(car, tickCount);
+	}
+
+	/**
+	 * Counts a vehicle that reached the end of its path in a meso link queue.
+	 *
+	 * @param path       The path.
+	 * @param spawnTick  The tick the vehicle entered the game.
+	 * @param delayTicks The time it lost stopped or queued, in ticks.
+	 */
+	private void mesoArrived(Path path, long spawnTick, int delayTicks) {
+		carsArrived++;
+		totalTravelTime += (tickCount - spawnTick) * TICK_SECONDS;
+		statisticsFor(path).recordArrival(spawnTick, delayTicks, tickCount);
+	}
+
+	/**
+	 * Hands every moving car that reached a meso link to its queue. This runs
+	 * after the lights are checked, so a car stopped by the light at the end of
+	 * a micro link stays on the road until the light turns green.
+	 */
+	private void enterMeso() {
+		for (int i = cars.size() - 1; i >= 0; i--) {
+			Car car = cars.get(i);
+			if (car.getDistance() < car.getHandover()) {
+				if (car.isHeld()) { // The links were cut again and no longer start here
+					car.setHeld(false);
+					car.startCar();
+				}
+				continue;
+			}
+			if (car.isStopped() && !car.isHeld()) {
+				continue; // Stopped by a light or the car ahead
+			}
+			int link = meso.nextMesoLink(car.getPath(), car.getHandover());
+			if (meso.isFull(link)) {
+				car.setHeld(true); // The cars behind stop behind it, so the queue backs up on the road
+				car.stopCar();
+				continue;
+			}
+			cars.remove(i);
+			carLeft(car);
+			events.publish(GameEvents.Type.CAR_REMOVED, car);
+			meso.enter(link, car.getId(), car.getSpawnTick(), car.getStoppedTicks(), tickCount);
+		}
+	}
+
+	/**
+	 * Turns a vehicle leaving a meso link into a car at the start of the micro
+	 * link after it. The car is put between the cars of its path that are ahead
+	 * of it and behind it, in the car list as well, so the cars of a path stay in
+	 * list order.
+	 *
+	 * @param path       The path.
+	 * @param distance   The start of the micro link.
+	 * @param id         The id of the vehicle.
+	 * @param spawnTick  The tick the vehicle entered the game.
+	 * @param delayTicks The time it lost so far, in ticks.
+	 * @return false if a car is closer than the clearance of an entry.
+	 */
+	private boolean leaveMeso(Path path, double distance, int id, long spawnTick, int delayTicks) {
+		Car behind = null;
+		Car ahead = pathTails.get(path);
+		while (ahead != null && ahead.getDistance() < distance) {
+			behind = ahead;
+			ahead = ahead.getAhead();
+		}
+		if (ahead != null && ahead.getDistance() - distance < EntryQueue.CLEARANCE
+				|| behind != null && distance - behind.getDistance() < EntryQueue.CLEARANCE) {
+			return false;
+		}
+		Car car = new Car(path);
+		car.placeAt(distance);
+		car.setId(id);
+		car.setSpawnTick(spawnTick);
+		car.setStoppedTicks(delayTicks);
+		car.setHandover(meso.handoverDistance(path, distance));
+		cars.add(behind != null ? cars.indexOf(behind) : cars.size(), car);
+		car.setAhead(ahead);
+		car.setBehind(behind);
+		if (ahead != null) {
+			ahead.setBehind(car);
+		}
+		if (behind != null) {
+			behind.setAhead(car);
 		} else {
-			System.out.println("GameUI is null, cannot remove car from pane. Check initialization.");
+			pathTails.put(path, car);
 		}
+		events.publish(GameEvents.Type.CAR_SPAWNED, car);
+		return true;
 	}
 
 	/**
-	 * Checks the proximity of a given car to all cars ahead of it on the same path.
-	 * If a car ahead is stopped at a red traffic light the current car will also
-	 * stop. If the way is clear, the current car will continue moving.
+	 * Cuts the paths into links for the meso region, taking over the queues of
+	 * the previous network after the level changed.
+	 *
+	 * @return the number of queued cars whose links are gone, which are dropped
+	 *         like the cars of a removed path.
+	 */
+	private int buildMeso() {
+		MesoNetwork old = meso;
+		meso = new MesoNetwork(paths, getTrafficLights(), mesoRegion[0], mesoRegion[1], mesoRegion[2],
+				mesoRegion[3], timers);
+		int dropped = old != null ? meso.takeOver(old, tickCount) : 0;
+		for (Car car : cars) {
+			car.setHandover(meso.handoverDistance(car.getPath(), car.getDistance()));
+		}
+		return dropped;
+	}
+
+	/**
+	 * Cuts the links again after paths or lights changed, if traffic is queued.
+	 *
+	 * @return the number of queued cars dropped with their links.
+	 */
+	private int mesoChanged() {
+		return meso != null ? buildMeso() : 0;
+	}
+
+	/**
+	 * Returns the stretches of a path near the traffic lights, finding them on
+	 * first use.
+	 *
+	 * @param path A path of the level.
+	 * @return the stretches.
+	 */
+	private LightZones zonesFor(Path path) {
+		if (zoneLights == null) {
+			zoneLights = getTrafficLights();
+		}
+		LightZones zones = lightZones.get(path); // No lambda, as this runs for every car
+		if (zones == null) {
+			zones = new LightZones(path, zoneLights);
+			lightZones.put(path, zones);
+			if (nearZones.length < zones.size()) {
+				nearZones = new int[zones.size()];
+			}
+		}
+		return zones;
+	}
+
+	/**
+	 * Forgets the stretches near the lights after a light was added or removed.
+	 */
+	private void lightsChanged() {
+		lightZones.clear();
+		zoneLights = null;
+		for (Car car : cars) {
+			car.setLightZone(0);
+		}
+		mesoChanged(); // The light cuts the paths passing it; every queued car keeps its path, so none is dropped
+	}
+
+	/**
+	 * Checks the proximity of a given car to the car directly ahead of it on the
+	 * same path. If that car is stopped at a red traffic light the current car
+	 * will also stop. If the way is clear, the current car will continue moving.
+	 * Cars keep their order on a path, so the car ahead is the last one spawned
+	 * on the path before the current car that is still in the game.
 	 *
 	 * @param currentCar The car whose proximity to other cars is being checked.
+	 * @return the car ahead the current car stopped behind, or null.
 	 */
-	private void checkCarProximity(Car currentCar) {
-		int mama = cars.indexOf(currentCar);
-		for (int i = 0; i < mama; i++) {
-			if (isOnSamePath(currentCar, cars.get(i))) {
-				if (currentCar.isBehind(cars.get(i)) && cars.get(i).isStopped()) {
-					currentCar.stopCar();
-				} else {
-					currentCar.startCar();
-					currentCar.setStopped(false);
+	private Car checkCarProximity(Car currentCar) {
+		Car ahead = currentCar.getAhead();
+		if (ahead == null) {
+			return null;
+		}
+		if (currentCar.isBehind(ahead) && ahead.isStopped()) {
+			currentCar.stopCar();
+			return ahead;
+		}
+		currentCar.startCar();
+		return null;
+	}
 
-				}
+	/**
+	 * Appends a car to the cars of its path.
+	 *
+	 * @param car The car, behind every other car on its path.
+	 */
+	private void linkToPath(Car car) {
+		Car tail = pathTails.put(car.getPath(), car);
+		car.setAhead(tail);
+		if (tail != null) {
+			tail.setBehind(car);
+		}
+	}
+
+	/**
+	 * Takes a car that left the game off its entry, the wait-for graph, its
+	 * platoon and the cars of its path.
+	 *
+	 * @param car The car.
+	 */
+	private void carLeft(Car car) {
+		leaveEntry(car);
+		waitGraph.removed(car);
+		if (car.getPlatoon() != null) {
+			car.getPlatoon().remove(car);
+		}
+		Car ahead = car.getAhead();
+		Car behind = car.getBehind();
+		if (ahead != null) {
+			ahead.setBehind(behind);
+		}
+		if (behind != null) {
+			behind.setAhead(ahead);
+		} else if (ahead != null) {
+			pathTails.put(car.getPath(), ahead);
+		} else {
+			pathTails.remove(car.getPath());
+		}
+		car.setAhead(null);
+		car.setBehind(null);
+	}
+
+	/**
+	 * Spawns every car whose arrival time has been reached. The scheduler is
+	 * created on first use so that it sees all paths of the loaded level. Paths
+	 * without a demand line share the classic rate of one car per spawn interval
+	 * with the spawn chance, split evenly between them and not affected by the
+	 * paths that declare their own demand. Waiting cars are released
+	 * first so that they keep their place ahead of new arrivals, and a new arrival
+	 * joins the backlog of its entry when the start of its path is occupied.
+	 */
+	private void spawnDueCars() {
+		if (spawnScheduler == null) {
+			return; // The level has no paths
+		}
+
+		for (int i = waitingEntries.size() - 1; i >= 0; i--) {
+			EntryQueue entry = waitingEntries.get(i);
+			closeFullEntry(entry);
+			if (entry.release(simulationTime)) {
+				spawnCar(entry);
+			}
+			if (entry.getBacklogLength() == 0) {
+				waitingEntries.remove(i);
+			}
+		}
+
+		Path path;
+		while ((path = spawnScheduler.pollDue()) != null) {
+			EntryQueue entry = entries.get(path);
+			closeFullEntry(entry);
+			if (entry.admit(simulationTime)) {
+				spawnCar(entry);
+			} else if (entry.getBacklogLength() == 1) {
+				waitingEntries.add(entry); // First car in the backlog of this entry
 			}
 		}
 	}
 
 	/**
-	 * Determines if two cars are on the same path. This can be used to manage
-	 * interactions such as stopping due to a traffic light or other cars.
+	 * Creates the spawn scheduler and the entry of every path.
 	 *
-	 * @param car1 The first car to compare.
-	 * @param car2 The second car to compare.
-	 * @return true if both cars are on the same path, otherwise false.
+	 * @return false if the level has no paths to spawn cars on.
 	 */
-	private boolean isOnSamePath(Car car1, Car car2) {
-		return car1.getPath() == car2.getPath();
+	private boolean createSpawnScheduler() {
+		return createSpawnScheduler(trafficStartTime);
 	}
 
 	/**
-	 * Spawns a car on a randomly selected path from the available paths.
+	 * Creates the spawn scheduler with the first arrivals drawn from the given
+	 * time on, and an entry for every path that does not have one yet.
+	 *
+	 * @param startTime The simulated time from which arrivals are drawn.
+	 * @return false if the level has no paths to spawn cars on.
 	 */
-	private void spawnCar() {
+	private boolean createSpawnScheduler(double startTime) {
 		if (paths.isEmpty()) {
 			System.out.println("No paths available to spawn cars.");
+			trafficStarted = false;
+			return false;
+		}
+		int undeclared = 0; // Paths that share the classic rate
+		for (int index : paths.keySet()) {
+			if (!demands.containsKey(index)) {
+				undeclared++;
+			}
+		}
+		DemandProfile defaultDemand = new DemandProfile(spawnChance / spawnInterval / Math.max(1, undeclared));
+		if (spawnScheduler != null) {
+			spawnScheduler.cancel();
+		}
+		spawnScheduler = new SpawnScheduler(paths, demands, defaultDemand, startTime, random, timers);
+		paths.forEach((index, path) -> entries.putIfAbsent(path, new EntryQueue(path, index)));
+		linkSharedStarts();
+		return true;
+	}
+
+	/**
+	 * Tells every entry about the entries of the other paths that start within
+	 * the clearance of its start, so that cars of different paths never enter on
+	 * top of each other.
+	 */
+	private void linkSharedStarts() {
+		Map<Long, List<EntryQueue>> cells = new HashMap<>(); // Entries by start cell of the clearance size
+		for (EntryQueue entry : entries.values()) {
+			cells.computeIfAbsent(startCell(entry.getPath(), 0, 0), key -> new ArrayList<>()).add(entry);
+		}
+		for (EntryQueue entry : entries.values()) {
+			Path path = entry.getPath();
+			List<EntryQueue> shared = new ArrayList<>();
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					for (EntryQueue other : cells.getOrDefault(startCell(path, dx, dy), Collections.emptyList())) {
+						double x = other.getPath().getStartX() - path.getStartX();
+						double y = other.getPath().getStartY() - path.getStartY();
+						if (other != entry && x * x + y * y < EntryQueue.CLEARANCE * EntryQueue.CLEARANCE) {
+							shared.add(other);
+						}
+					}
+				}
+			}
+			entry.setSharedStart(shared.isEmpty() ? Collections.emptyList() : shared);
+		}
+	}
+
+	private static long startCell(Path path, int dx, int dy) {
+		long cellX = (long) Math.floor(path.getStartX() / EntryQueue.CLEARANCE) + dx;
+		long cellY = (long) Math.floor(path.getStartY() / EntryQueue.CLEARANCE) + dy;
+		return (cellX << 32) ^ (cellY & 0xffffffffL);
+	}
+
+	/**
+	 * Removes a car from the entry of its path, if it is still the last car that
+	 * entered there.
+	 *
+	 * @param car The car leaving the game.
+	 */
+	private void leaveEntry(Car car) {
+		EntryQueue entry = entries.get(car.getPath());
+		if (entry != null) {
+			entry.left(car);
+		}
+	}
+
+	/**
+	 * Closes the entry of a path that starts in a meso link while that link is
+	 * full, so arrivals wait in the backlog as they do behind a car.
+	 *
+	 * @param entry The entry.
+	 */
+	private void closeFullEntry(EntryQueue entry) {
+		if (meso != null) {
+			int link = meso.getMesoEntry(entry.getPath());
+			entry.setClosed(link >= 0 && meso.isFull(link));
+		}
+	}
+
+	/**
+	 * Spawns a car at the start of the path guarded by the given entry. On a
+	 * path that starts in a meso link the car only joins the link's queue.
+	 *
+	 * @param entry The entry the new car passes through.
+	 */
+	private void spawnCar(EntryQueue entry) {
+		int link = meso != null ? meso.getMesoEntry(entry.getPath()) : -1;
+		if (link >= 0) {
+			meso.enter(link, nextCarId++, tickCount, 0, tickCount);
 			return;
 		}
-		List<Integer> keys = new ArrayList<>(paths.keySet());
-		Random random = new Random();
-		int randomKeyIndex = random.nextInt(keys.size());
-		int pathKey = keys.get(randomKeyIndex);
-		Path path = paths.get(pathKey);
-		Car newCar = new Car(path);
+		Car newCar = new Car(entry.getPath());
+		newCar.setSpawnTick(tickCount);
+		newCar.setId(nextCarId++);
+		if (meso != null) {
+			newCar.setHandover(meso.handoverDistance(entry.getPath(), 0));
+		}
+		entry.entered(newCar);
 		cars.add(newCar);
-		gameUI.addCarToPane(newCar); // Add the new car to the game UI
+		linkToPath(newCar);
+		events.publish(GameEvents.Type.CAR_SPAWNED, newCar);
 	}
 
 	/**
-	 * Singleton accessor for the Game instance. This method ensures that only one
-	 * instance of the Game class is created throughout the application. If an
-	 * instance already exists, it returns that existing instance. If no instance
-	 * exists, it creates a new one using the specified grid dimensions.
+	 * Writes the complete simulation state to a snapshot buffer: counters and
+	 * clock, spawn schedule and backlogs, every car in list order, the state of
+	 * every traffic light and signal plan, the meso link queues and the random
+	 * number state. The level itself is not written; it is loaded again from its
+	 * file when the snapshot is restored.
 	 *
-	 * @param gridWidth  the width of the game grid, used to initialize the game
-	 *                   instance if one does not exist.
-	 * @param gridHeight the height of the game grid, used to initialize the game
-	 *                   instance if one does not exist.
-	 * @return the single instance of the Game class.
+	 * @param buffer The buffer receiving the state. It must have room for
+	 *               {@link #stateSize()} bytes.
 	 */
-	public static Game getInstance(double gridWidth, double gridHeight) {
-		if (instance == null) {
-			if (instance == null) {
-				instance = new Game(gridWidth, gridHeight);
+	public void writeState(ByteBuffer buffer) {
+		Map<Path, Integer> pathIndices = new HashMap<>();
+		paths.forEach((index, path) -> pathIndices.put(path, index));
+		Map<Car, Integer> lastCarIndices = new HashMap<>(); // Only the last car of each entry needs an index
+		entries.values().forEach(entry -> {
+			if (entry.getLastSpawned() != null) {
+				lastCarIndices.put(entry.getLastSpawned(), -1);
+			}
+		});
+
+		buffer.putDouble(simulationTime);
+		buffer.putLong(tickCount);
+		buffer.putInt(crashes);
+		buffer.putInt(carsArrived);
+		buffer.putDouble(totalTravelTime);
+		buffer.putInt(nextCarId);
+		buffer.put((byte) ((trafficStarted ? 1 : 0) | (gameOver ? 2 : 0) | (spawnScheduler != null ? 4 : 0)));
+		buffer.putDouble(trafficStartTime);
+
+		buffer.putInt(cars.size());
+		for (int i = 0; i < cars.size(); i++) {
+			Car car = cars.get(i);
+			if (lastCarIndices.containsKey(car)) {
+				lastCarIndices.put(car, i);
+			}
+			buffer.putInt(pathIndices.get(car.getPath()));
+			car.writeState(buffer);
+		}
+
+		if (spawnScheduler != null) {
+			spawnScheduler.writeState(buffer);
+			List<Integer> indices = new ArrayList<>(paths.keySet());
+			indices.sort(null);
+			for (int index : indices) {
+				EntryQueue entry = entries.get(paths.get(index));
+				Car lastCar = entry.getLastSpawned();
+				buffer.putInt(lastCar != null ? lastCarIndices.get(lastCar) : -1);
+				entry.writeState(buffer);
 			}
 		}
-		return instance;
+
+		for (MapElement element : elements) {
+			if (element instanceof TrafficLight) {
+				TrafficLight light = (TrafficLight) element;
+				buffer.put((byte) (light.isGreen() ? 1 : light.isAmber() ? 2 : 0));
+			}
+		}
+		buffer.putInt(signalPlans.size());
+		for (SignalPlan plan : signalPlans.values()) {
+			buffer.putInt(plan.getIndex());
+			plan.writeState(buffer);
+		}
+		for (PathStatistics statistics : getPathStatistics()) {
+			statistics.writeState(buffer);
+		}
+		buffer.put((byte) ((mesoRegion != null ? 1 : 0) | (meso != null ? 2 : 0)));
+		if (mesoRegion != null) {
+			for (double edge : mesoRegion) {
+				buffer.putDouble(edge);
+			}
+		}
+		if (meso != null) {
+			meso.writeState(buffer);
+		}
+		buffer.putLong(random.getState());
+	}
+
+	/**
+	 * Restores the state written by {@link #writeState(ByteBuffer)} into a game
+	 * that has loaded the same level. Cars present before the restore are
+	 * removed.
+	 *
+	 * @param buffer The buffer holding the state.
+	 */
+	public void readState(ByteBuffer buffer) {
+		for (Car car : cars) {
+			events.publish(GameEvents.Type.CAR_REMOVED, car);
+		}
+		cars.clear();
+		waitingEntries.clear();
+		signalPlans.values().forEach(SignalPlan::stop);
+
+		simulationTime = buffer.getDouble();
+		tickCount = buffer.getLong();
+		timers = new TimingWheel(tickCount - 1); // Pending timers are set again from the restored state
+		waitGraph.reset(timers);
+		clearPlatoons();
+		pathTails.clear();
+		crashes = buffer.getInt();
+		carsArrived = buffer.getInt();
+		totalTravelTime = buffer.getDouble();
+		nextCarId = buffer.getInt();
+		byte flags = buffer.get();
+		trafficStarted = (flags & 1) != 0;
+		gameOver = (flags & 2) != 0;
+		trafficStartTime = buffer.getDouble();
+
+		int carCount = buffer.getInt();
+		for (int i = 0; i < carCount; i++) {
+			Car car = new Car(paths.get(buffer.getInt()));
+			car.readState(buffer);
+			car.resumeTimers(timers);
+			cars.add(car);
+			linkToPath(car);
+		}
+
+		spawnScheduler = null;
+		if ((flags & 4) != 0 && createSpawnScheduler()) {
+			spawnScheduler.readState(buffer);
+			List<Integer> indices = new ArrayList<>(paths.keySet());
+			indices.sort(null);
+			for (int index : indices) {
+				EntryQueue entry = entries.get(paths.get(index));
+				int lastCar = buffer.getInt();
+				entry.readState(buffer, lastCar >= 0 ? cars.get(lastCar) : null);
+				if (entry.getBacklogLength() > 0) {
+					waitingEntries.add(entry);
+				}
+			}
+		}
+
+		for (MapElement element : elements) {
+			if (element instanceof TrafficLight) {
+				byte state = buffer.get();
+				if (state == 2) {
+					((TrafficLight) element).setAmber();
+				} else {
+					((TrafficLight) element).setGreen(state == 1);
+				}
+			}
+		}
+		List<TrafficLight> lights = getTrafficLights();
+		int planCount = buffer.getInt();
+		for (int i = 0; i < planCount; i++) {
+			int index = buffer.getInt();
+			getSignalPlan(index).readState(buffer, timers, lights);
+		}
+		for (PathStatistics statistics : getPathStatistics()) {
+			statistics.readState(buffer);
+		}
+		byte mesoFlags = buffer.get();
+		mesoRegion = null;
+		meso = null;
+		if ((mesoFlags & 1) != 0) {
+			mesoRegion = new double[4];
+			for (int i = 0; i < 4; i++) {
+				mesoRegion[i] = buffer.getDouble();
+			}
+		}
+		if ((mesoFlags & 2) != 0) {
+			buildMeso(); // Also sets where the restored cars are handed over
+			meso.readState(buffer);
+		}
+		random.setState(buffer.getLong()); // Last, as creating the scheduler draws random numbers
+	}
+
+	/**
+	 * Creates an independent copy of the game for looking ahead, without reading
+	 * the level file again. Roads, buildings, paths, demand and the stretches
+	 * near the lights are shared, as the simulation never changes them; the
+	 * lights and signal plans are copied, and the state is passed over with
+	 * {@link #writeState(ByteBuffer)}. The copy has no user interface,
+	 * recording, heatmap or replay, and never ends.
+	 *
+	 * @return the copy.
+	 */
+	public Game fork() {
+		Game copy = new Game(gridWidth, gridHeight);
+		copy.cellSize = cellSize;
+		copy.levelPath = levelPath;
+		copy.spawnInterval = spawnInterval;
+		copy.spawnChance = spawnChance;
+		copy.gridlockPolicy = gridlockPolicy;
+		copy.setWinConditions(Integer.MAX_VALUE, Integer.MAX_VALUE);
+		for (MapElement element : elements) {
+			if (element instanceof TrafficLight) {
+				TrafficLight light = ((TrafficLight) element).copy();
+				light.setEvents(copy.events);
+				copy.elements.add(light);
+			} else {
+				copy.elements.add(element);
+			}
+		}
+		copy.paths.putAll(paths);
+		copy.demands = demands;
+		for (SignalPlan plan : signalPlans.values()) {
+			copy.signalPlans.put(plan.getIndex(), plan.copy());
+		}
+		copy.lightZones.putAll(lightZones); // They refer to lights by their order, which the copy keeps
+		copy.nearZones = new int[nearZones.length];
+		ByteBuffer state = ByteBuffer.allocate(stateSize());
+		writeState(state);
+		state.flip();
+		copy.readState(state);
+		return copy;
+	}
+
+	/**
+	 * Returns an upper bound of the number of bytes {@link #writeState(ByteBuffer)}
+	 * needs for the current state.
+	 *
+	 * @return the snapshot size in bytes.
+	 */
+	public int stateSize() {
+		int size = 109 + cars.size() * 56 + paths.size() * 64 + elements.size() + signalPlans.size() * 20;
+		size += getBacklogLength() * 8;
+		if (meso != null) {
+			size += meso.stateSize();
+		}
+		for (PathStatistics statistics : getPathStatistics()) {
+			size += statistics.stateSize();
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the travel statistics of a path, creating them on first use.
+	 *
+	 * @param path A path of the level.
+	 * @return the statistics of the path.
+	 */
+	private PathStatistics statisticsFor(Path path) {
+		PathStatistics statistics = pathStatistics.get(path); // No lambda, as this runs for every arrival
+		if (statistics == null) {
+			statistics = new PathStatistics(-1);
+			for (Map.Entry<Integer, Path> entry : paths.entrySet()) {
+				if (entry.getValue() == path) {
+					statistics = new PathStatistics(entry.getKey());
+				}
+			}
+			pathStatistics.put(path, statistics);
+		}
+		return statistics;
+	}
+
+	/**
+	 * Returns the travel statistics of every path, ordered by path index.
+	 *
+	 * @return a new list of the statistics.
+	 */
+	public List<PathStatistics> getPathStatistics() {
+		List<Integer> indices = new ArrayList<>(paths.keySet());
+		indices.sort(null);
+		List<PathStatistics> result = new ArrayList<>();
+		for (int index : indices) {
+			result.add(statisticsFor(paths.get(index)));
+		}
+		return result;
+	}
+
+	/**
+	 * Describes the travel statistics of every path as a JSON array. Each entry
+	 * holds the travel time and delay percentiles in seconds and the histogram
+	 * buckets they were computed from, so the results of several runs can be
+	 * merged.
+	 *
+	 * @return the JSON text.
+	 */
+	public String pathStatisticsJson() {
+		StringBuilder sb = new StringBuilder("[");
+		for (PathStatistics statistics : getPathStatistics()) {
+			sb.append(sb.length() == 1 ? "" : ", ").append(statistics.toJson());
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * Turns the congestion heatmap on or off. Turning it on starts counting from
+	 * an empty heatmap.
+	 *
+	 * @param enabled true to collect congestion counts every tick.
+	 */
+	public void setHeatmapEnabled(boolean enabled) {
+		heatmap = enabled ? new CongestionHeatmap((int) gridWidth, (int) gridHeight, cellSize) : null;
+	}
+
+	/**
+	 * Starts streaming the position, speed and state of every car to a trajectory
+	 * file, replacing a recording already in progress.
+	 *
+	 * @param file The file to record to.
+	 * @throws IOException if the file cannot be created.
+	 */
+	public void startRecording(File file) throws IOException {
+		stopRecording();
+		recorder = new TrajectoryRecorder(file);
+	}
+
+	/**
+	 * Finishes the trajectory recording, if one is in progress.
+	 */
+	public void stopRecording() {
+		if (recorder == null) {
+			return;
+		}
+		try {
+			recorder.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		recorder = null;
+	}
+
+	/**
+	 * Returns the trajectory recording in progress.
+	 *
+	 * @return the recorder, or null while not recording.
+	 */
+	public TrajectoryRecorder getRecorder() {
+		return recorder;
+	}
+
+	/**
+	 * Turns the recording of the last seconds of the game for crash replays on or
+	 * off.
+	 *
+	 * @param enabled true to record a replay frame every tick.
+	 */
+	public void setReplayEnabled(boolean enabled) {
+		replay = enabled ? new ReplayBuffer() : null;
+	}
+
+	/**
+	 * Returns the replay buffer.
+	 *
+	 * @return the buffer, or null while replays are disabled.
+	 */
+	public ReplayBuffer getReplay() {
+		return replay;
+	}
+
+	/**
+	 * Returns the congestion heatmap.
+	 *
+	 * @return the heatmap, or null while it is disabled.
+	 */
+	public CongestionHeatmap getHeatmap() {
+		return heatmap;
+	}
+
+	/**
+	 * Seeds the random number source, so that runs of the same level with the same
+	 * seed produce the same traffic.
+	 *
+	 * @param seed The seed.
+	 */
+	public void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
+	public String getLevelPath() {
+		return levelPath;
+	}
+
+	public void setLevelPath(String levelPath) {
+		this.levelPath = levelPath;
 	}
 
 	/**
@@ -291,6 +1238,148 @@ public class Game {
 	 */
 	public void addElement(MapElement element) {
 		elements.add(element);
+		clearPlatoons(); // A new light may stand next to a follower
+		if (element instanceof TrafficLight) {
+			((TrafficLight) element).setEvents(events);
+			lightsChanged();
+		}
+		if (replay != null) {
+			replay.elementsChanged();
+		}
+	}
+
+	/**
+	 * Puts the map elements into the order of the level file, after a reload
+	 * removed and added some of them. Signal plans, snapshots and sessions refer
+	 * to the lights by their place in this order.
+	 *
+	 * @param order The same elements, in the order of their lines in the file.
+	 */
+	public void orderElements(List<MapElement> order) {
+		List<TrafficLight> before = getTrafficLights();
+		elements.clear();
+		elements.addAll(order);
+		if (!getTrafficLights().equals(before)) {
+			lightsChanged(); // Stretches refer to lights by their place
+		}
+		if (replay != null) {
+			replay.elementsChanged();
+		}
+	}
+
+	/**
+	 * Removes a map element, for example when the level file is reloaded. Cars
+	 * waiting at a removed traffic light drive on.
+	 *
+	 * @param element The element to remove.
+	 */
+	public void removeElement(MapElement element) {
+		elements.remove(element);
+		clearPlatoons();
+		if (replay != null) {
+			replay.elementsChanged();
+		}
+		if (element instanceof TrafficLight) {
+			TrafficLight light = (TrafficLight) element;
+			light.setEvents(null);
+			boolean wasGreen = light.isGreen();
+			light.setGreen(true);
+			cars.forEach(car -> car.checkTrafficLight(light, timers)); // Releases the cars stopped at it
+			light.setGreen(wasGreen);
+			lightsChanged();
+		}
+	}
+
+	/**
+	 * Replaces or removes the path with the given index while the game is running.
+	 * Cars on the old path, its spawn backlog and its statistics are dropped,
+	 * and the spawn schedule is rebuilt from the current time. Cars on other
+	 * paths are not affected.
+	 *
+	 * @param index The path index.
+	 * @param path  The new path, or null to remove the path.
+	 * @return the number of cars that were removed with the old path, driven or
+	 *         queued in meso links.
+	 */
+	public int replacePath(int index, Path path) {
+		Path old = paths.remove(index);
+		int removed = 0;
+		if (old != null) {
+			for (Car car : new ArrayList<>(cars)) {
+				if (car.getPath() == old) {
+					cars.remove(car);
+					carLeft(car);
+					events.publish(GameEvents.Type.CAR_REMOVED, car);
+					removed++;
+				}
+			}
+			waitingEntries.remove(entries.remove(old));
+			pathStatistics.remove(old);
+			lightZones.remove(old);
+		}
+		if (path != null) {
+			paths.put(index, path);
+		}
+		rebuildSpawnScheduler();
+		return removed + mesoChanged(); // Queued cars of the old path are dropped
+	}
+
+	/**
+	 * Replaces the demand declared in the level and rebuilds the spawn schedule.
+	 *
+	 * @param demands The new demand profiles, by path index.
+	 */
+	public void setDemands(Map<Integer, DemandProfile> demands) {
+		this.demands = new HashMap<>(demands);
+		rebuildSpawnScheduler();
+	}
+
+	/**
+	 * Replaces the signal plans declared in the level. The old plans stop and, if
+	 * traffic is running, the new ones start at their place in the cycle.
+	 *
+	 * @param plans The new plans, by plan index.
+	 */
+	public void setSignalPlans(Map<Integer, SignalPlan> plans) {
+		signalPlans.values().forEach(SignalPlan::stop);
+		signalPlans = new TreeMap<>(plans);
+		if (trafficStarted) {
+			startSignalPlans();
+		}
+	}
+
+	/**
+	 * Returns the signal plan with the given index, creating an empty one on
+	 * first use. Used by the level loader.
+	 *
+	 * @param index The plan index.
+	 * @return the plan.
+	 */
+	public SignalPlan getSignalPlan(int index) {
+		return signalPlans.computeIfAbsent(index, SignalPlan::new);
+	}
+
+	public Map<Integer, SignalPlan> getSignalPlans() {
+		return signalPlans;
+	}
+
+	/**
+	 * Draws new arrivals for every path from the current time on, after the paths
+	 * or their demand changed. Backlogs of unchanged paths are kept.
+	 */
+	private void rebuildSpawnScheduler() {
+		if (spawnScheduler != null) {
+			createSpawnScheduler(simulationTime);
+		}
+	}
+
+	/**
+	 * Returns the demand profiles declared in the level.
+	 *
+	 * @return the profiles, by path index.
+	 */
+	public Map<Integer, DemandProfile> getDemands() {
+		return demands;
 	}
 
 	/**
@@ -305,6 +1394,21 @@ public class Game {
 		return elements;
 	}
 
+	/**
+	 * Retrieves the traffic lights of the level in the order they were loaded.
+	 *
+	 * @return a new list holding every TrafficLight among the map elements.
+	 */
+	public List<TrafficLight> getTrafficLights() {
+		List<TrafficLight> lights = new ArrayList<>();
+		for (MapElement element : elements) {
+			if (element instanceof TrafficLight) {
+				lights.add((TrafficLight) element);
+			}
+		}
+		return lights;
+	}
+
 	/**
 	 * Adds a new path to the game with a specific index. This method stores the
 	 * path in a map where the key is the index and the value is the path itself.
@@ -322,6 +1426,18 @@ public class Game {
 		return paths.get(index);
 	}
 
+	/**
+	 * Returns the demand profile of a path, creating an empty one if the level has
+	 * not declared any demand for it yet. Used by the level loader for the Demand
+	 * and DemandPeak lines.
+	 *
+	 * @param index the identifier of the path.
+	 * @return the demand profile of the path.
+	 */
+	public DemandProfile getDemand(int index) {
+		return demands.computeIfAbsent(index, key -> new DemandProfile(0));
+	}
+
 	/**
 	 * Retrieves a map of all paths stored within the game. Each path is associated
 	 * with an integer index which acts as a unique identifier. This map allows for
@@ -355,6 +1471,139 @@ public class Game {
 		return carsArrived;
 	}
 
+	/**
+	 * Returns the average time arrived cars needed from spawning to the end of
+	 * their path.
+	 *
+	 * @return the mean travel time in simulated seconds, or 0 if no car has
+	 *         arrived yet.
+	 */
+	public double getMeanTravelTime() {
+		return carsArrived == 0 ? 0 : totalTravelTime / carsArrived;
+	}
+
+	/**
+	 * Returns the number of gridlocks found since the game was created.
+	 *
+	 * @return the gridlock count.
+	 */
+	public int getGridlockCount() {
+		return waitGraph.getGridlockCount();
+	}
+
+	/**
+	 * Simulates the part of the map inside a rectangle with link queues instead
+	 * of single cars, see {@link MesoNetwork}. Pass infinite edges to queue every
+	 * road. The links are cut when traffic starts, or right away if it runs.
+	 *
+	 * @param minX Left edge in pixels.
+	 * @param minY Top edge in pixels.
+	 * @param maxX Right edge in pixels.
+	 * @param maxY Bottom edge in pixels.
+	 * @return the number of queued cars dropped because their links left the
+	 *         region.
+	 */
+	public int setMesoRegion(double minX, double minY, double maxX, double maxY) {
+		mesoRegion = new double[] { minX, minY, maxX, maxY };
+		return mesoChanged();
+	}
+
+	/**
+	 * Returns the link queues of the meso region.
+	 *
+	 * @return the network, or null while no region is set or traffic has not
+	 *         started.
+	 */
+	public MesoNetwork getMeso() {
+		return meso;
+	}
+
+	/**
+	 * Returns the number of cars queued in meso links, which are not in the car
+	 * list.
+	 *
+	 * @return the count.
+	 */
+	public int getMesoVehicleCount() {
+		return meso != null ? meso.getVehicleCount() : 0;
+	}
+
+	/**
+	 * Returns the platoons of the last tick.
+	 *
+	 * @return the platoons, in the order they formed.
+	 */
+	public List<Platoon> getPlatoons() {
+		return platoons;
+	}
+
+	public WaitForGraph getWaitGraph() {
+		return waitGraph;
+	}
+
+	/**
+	 * Moves the cars with the kinematics kernel: their distances, speeds, next
+	 * stop lines and the cars ahead are put into its lanes, all cars are moved
+	 * at once, and each car is then placed at its new distance. The cars end up
+	 * where {@link Car#advance(int)} would have put them.
+	 *
+	 * @param ticks Length of the step in ticks.
+	 */
+	private void advanceLanes(int ticks) {
+		int count = cars.size();
+		kinematics.ensureCapacity(count);
+		for (int i = 0; i < count; i++) {
+			cars.get(i).setLane(i);
+		}
+		for (int i = 0; i < count; i++) {
+			Car car = cars.get(i);
+			Car ahead = car.getAhead();
+			int leader = ahead != null && ahead.getLane() < count && cars.get(ahead.getLane()) == ahead
+					? ahead.getLane()
+					: -1; // None, or in a meso link
+			kinematics.set(i, car.getDistance(), car.getCurrentSpeed(), car.getPath().getLength(),
+					zonesFor(car.getPath()).getStopLine(car), leader);
+		}
+		kinematics.step(count, ticks * TICK_SECONDS);
+		for (int i = count - 1; i >= 0; i--) { // Backwards, as finished cars are removed
+			Car car = cars.get(i);
+			if (car.advanceTo(kinematics.getProgress(i), ticks)) {
+				carCompleted(car);
+			}
+		}
+	}
+
+	/**
+	 * Moves the cars with a {@link KinematicsKernel} instead of one by one. The
+	 * game plays the same either way; the kernel also measures the gaps of every
+	 * car, which can be read after a step at the lane of the car, see
+	 * {@link Car#getLane()}.
+	 *
+	 * @param kinematics The kernel, or null to move the cars one by one.
+	 */
+	public void setKinematics(KinematicsKernel kinematics) {
+		this.kinematics = kinematics;
+	}
+
+	public KinematicsKernel getKinematics() {
+		return kinematics;
+	}
+
+	/**
+	 * Chooses what happens to gridlocks: they are always published, and under
+	 * {@link WaitForGraph.Policy#RELEASE} also broken up, so long unattended runs
+	 * keep flowing.
+	 *
+	 * @param gridlockPolicy The policy.
+	 */
+	public void setGridlockPolicy(WaitForGraph.Policy gridlockPolicy) {
+		this.gridlockPolicy = gridlockPolicy;
+	}
+
+	public WaitForGraph.Policy getGridlockPolicy() {
+		return gridlockPolicy;
+	}
+
 	public int getWinCount() {
 		return winCount;
 	}
@@ -363,4 +1612,62 @@ public class Game {
 		return maxCrashCount;
 	}
 
+	public double getSimulationTime() {
+		return simulationTime;
+	}
+
+	public long getTickCount() {
+		return tickCount;
+	}
+
+	public boolean isGameOver() {
+		return gameOver;
+	}
+
+	/**
+	 * Returns the number of cars waiting for the start of their path to clear.
+	 *
+	 * @return the total backlog over all entries.
+	 */
+	public int getBacklogLength() {
+		int total = 0;
+		for (EntryQueue entry : waitingEntries) {
+			total += entry.getBacklogLength();
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the average time cars released from a backlog had to wait.
+	 *
+	 * @return the mean backlog waiting time in simulated seconds, or 0 if no car
+	 *         has waited yet.
+	 */
+	public double getMeanBacklogWait() {
+		long released = 0;
+		double totalWait = 0;
+		for (EntryQueue entry : entries.values()) {
+			released += entry.getReleased();
+			totalWait += entry.getTotalWait();
+		}
+		return released == 0 ? 0 : totalWait / released;
+	}
+
+	/**
+	 * Returns the longest time any car has waited in a backlog.
+	 *
+	 * @return the maximum backlog waiting time in simulated seconds.
+	 */
+	public double getMaxBacklogWait() {
+		double maxWait = 0;
+		for (EntryQueue entry : entries.values()) {
+			maxWait = Math.max(maxWait, entry.getMaxWait());
+		}
+		return maxWait;
+	}
+
+	public Map<Path, EntryQueue> getEntries() {
+		return entries;
+	}
+
 }
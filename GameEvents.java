@@ -0,0 +1,152 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Event bus between the simulation and whatever watches it. The game publishes
+ * what happened during a tick into a batch, and at the end of the tick the
+ * batch is handed to every subscriber in turn and then cleared. The batch is
+ * reused, so publishing allocates nothing, and with no subscribers attached it
+ * costs nothing at all.
+ *
+ * Subscribers must not keep the batch. One that only acts now and then, like
+ * the user interface once per frame, copies what it needs and applies it
+ * later, so that ten ticks of spawns and arrivals become one update.
+ */
+public class GameEvents {
+
+	/**
+	 * What an event reports. Car events carry the car, light events the light.
+	 */
+	public enum Type {
+		CAR_SPAWNED, // A car entered the game
+		CAR_ARRIVED, // A car reached the end of its path
+		CAR_CRASHED, // A car was removed after a crash; one event per car
+		CAR_REMOVED, // A car was removed for another reason: a level reload, a restore or the end of the game
+		LIGHT_CHANGED, // A traffic light changed colour
+		GRIDLOCK, // A car that cannot move again without help; one event per car, the cars of a gridlock together
+		GAME_ENDED // The game was won or lost, see isWon()
+	}
+
+	/**
+	 * Receives the events of every tick.
+	 */
+	public interface Subscriber {
+
+		/**
+		 * Handles the events of one tick. The batch is only valid during the call.
+		 *
+		 * @param batch The events, in the order they happened.
+		 */
+		void onEvents(GameEvents batch);
+	}
+
+	private final List<Subscriber> subscribers = new ArrayList<>();
+	private Type[] types = new Type[64];
+	private MapElement[] subjects = new MapElement[64]; // The car or light of every event
+	private int size = 0;
+	private boolean won; // Result reported by GAME_ENDED
+	private long tick; // Tick the batch belongs to
+	private boolean delivering = false;
+
+	public void subscribe(Subscriber subscriber) {
+		subscribers.add(subscriber);
+	}
+
+	public void unsubscribe(Subscriber subscriber) {
+		subscribers.remove(subscriber);
+	}
+
+	/**
+	 * Adds an event to the batch of the current tick.
+	 *
+	 * @param type    The kind of event.
+	 * @param subject The car or traffic light concerned, or null.
+	 */
+	public void publish(Type type, MapElement subject) {
+		if (subscribers.isEmpty()) {
+			return; // Nobody listens, for example in headless runs
+		}
+		if (size == types.length) {
+			types = Arrays.copyOf(types, size * 2);
+			subjects = Arrays.copyOf(subjects, size * 2);
+		}
+		types[size] = type;
+		subjects[size] = subject;
+		size++;
+	}
+
+	/**
+	 * Publishes the end of the game.
+	 *
+	 * @param won true if the game was won.
+	 */
+	public void gameEnded(boolean won) {
+		this.won = won;
+		publish(Type.GAME_ENDED, null);
+	}
+
+	/**
+	 * Hands the batch to every subscriber and starts a new one. Subscribers must
+	 * not publish events themselves.
+	 *
+	 * @param tick The tick the events belong to.
+	 */
+	public void flush(long tick) {
+		if (size == 0 || delivering) {
+			return;
+		}
+		this.tick = tick;
+		delivering = true;
+		try {
+			for (int i = 0; i < subscribers.size(); i++) {
+				subscribers.get(i).onEvents(this);
+			}
+		} finally {
+			delivering = false;
+			Arrays.fill(subjects, 0, size, null); // Lets removed cars be collected
+			size = 0;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Type getType(int index) {
+		return types[index];
+	}
+
+	/**
+	 * Returns the car of a car event.
+	 *
+	 * @param index The event.
+	 * @return the car.
+	 */
+	public Car getCar(int index) {
+		return (Car) subjects[index];
+	}
+
+	/**
+	 * Returns the light of a LIGHT_CHANGED event.
+	 *
+	 * @param index The event.
+	 * @return the traffic light.
+	 */
+	public TrafficLight getLight(int index) {
+		return (TrafficLight) subjects[index];
+	}
+
+	public boolean isWon() {
+		return won;
+	}
+
+	public long getTick() {
+		return tick;
+	}
+}
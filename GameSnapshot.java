@@ -0,0 +1,99 @@
+package application;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Saves and restores a running game in a compact binary format. A snapshot
+ * starts with a small header holding the path of the level file, followed by
+ * the simulation state written by {@link Game#writeState(ByteBuffer)}. Restoring
+ * loads the level again and then puts every car, light, counter and the random
+ * number state back, so the restored game continues exactly like the original.
+ */
+public class GameSnapshot {
+	private static final int MAGIC = 0x5453494D; // "TSIM"
+	private static final short VERSION = 7;
+
+	/**
+	 * Captures the state of a game into a buffer ready to be written or kept in
+	 * memory.
+	 *
+	 * @param game The game to capture.
+	 * @return a buffer positioned at the start of the snapshot.
+	 */
+	public static ByteBuffer capture(Game game) {
+		byte[] levelPath = (game.getLevelPath() != null ? game.getLevelPath() : "").getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(10 + levelPath.length + game.stateSize());
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putInt(levelPath.length);
+		buffer.put(levelPath);
+		game.writeState(buffer);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Writes a snapshot of a game to a file, replacing the file if it exists.
+	 *
+	 * @param game The game to save.
+	 * @param file The file to write.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static void save(Game game, File file) throws IOException {
+		ByteBuffer buffer = capture(game);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Rebuilds a game from a snapshot. The level is loaded from the path stored in
+	 * the snapshot, so the level file must still exist. No user interface is
+	 * attached to the returned game.
+	 *
+	 * @param buffer A buffer positioned at the start of a snapshot.
+	 * @return the restored game.
+	 * @throws IOException if the buffer is not a snapshot or the level cannot be
+	 *                     loaded.
+	 */
+	public static Game restore(ByteBuffer buffer) throws IOException {
+		if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+			throw new IOException("Not a game snapshot or unsupported version.");
+		}
+		byte[] levelPath = new byte[buffer.getInt()];
+		buffer.get(levelPath);
+		String path = new String(levelPath, StandardCharsets.UTF_8);
+		if (path.isEmpty()) {
+			throw new FileNotFoundException("The snapshot does not name its level file.");
+		}
+
+		Game game = new Game(15, 15);
+		LevelLoader.loadLevel(game, path);
+		game.readState(buffer);
+		return game;
+	}
+
+	/**
+	 * Rebuilds a game from a snapshot file.
+	 *
+	 * @param file The snapshot file.
+	 * @return the restored game.
+	 * @throws IOException if the file cannot be read or is not a snapshot.
+	 */
+	public static Game load(File file) throws IOException {
+		return restore(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+	}
+}
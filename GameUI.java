@@ -1,21 +1,35 @@
 package application;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javafx.animation.AnimationTimer;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
 import javafx.application.Platform;
+import javafx.scene.Node;
 import javafx.scene.Scene;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
+import javafx.scene.transform.Affine;
 import javafx.scene.text.FontWeight;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 
 //Berat Metehan Çakmak 150123547
 //Eray Hoşavcıoğlu 150121005
@@ -24,17 +38,63 @@ import javafx.util.Duration;
  * Represents the graphical user interface for the game. It is responsible for
  * rendering all visual components like cars, traffic lights, and the game grid.
  * This class also handles user interactions and updates the display based on
- * changes in the game state.
+ * changes in the game state, which it learns from the game's event bus and
+ * applies once per frame.
  */
-public class GameUI {
+public final class GameUI implements GameEvents.Subscriber {
 	private Game game;
+	private Stage stage;
 	private Pane root;
+	private Pane world; // The map, zoomed and moved by the view transform, below the labels and buttons
+	private Pane mapLayer; // Roads, buildings and lights
+	private Pane carLayer; // Car rectangles, emptied while the map is zoomed out
+	private TrafficOverview overview; // Density bars or cell blocks drawn instead of cars when zoomed out
+	private final Affine view = new Affine(); // Map to window transform
+	private double zoom = 1; // Window pixels per map pixel
+	private double dragX; // Mouse position at the last drag event, for moving the map
+	private double dragY;
+	private static final double ZOOM_STEP = 1.25; // Zoom change per wheel notch or key press
+	private static final double MIN_ZOOM = 0.02;
+	private static final double MAX_ZOOM = 4;
+	private static final double CAR_ZOOM = 0.4; // Below this zoom cars are summed up per path segment
+	private static final double CELL_ZOOM = 0.12; // Below this zoom they are summed up per grid cell
 	private Scene scene;
 	private Rectangle background;
 	private AnimationTimer timer;
-	private Map<Car, Rectangle> carGraphics = new HashMap<>();
+	private final Set<Car> spawnedCars = new LinkedHashSet<>(); // Spawned since the last frame, not drawn yet
+	private final Set<Node> leftCarShapes = new HashSet<>(); // Rectangles of cars that left since the last frame
+	private boolean carsShown = false; // Whether every car has its rectangle on the car layer
+	private boolean lightsCovered = true; // Map nodes were added above the traffic lights
+	private boolean labelsChanged = true; // Score or crash count changed since the last frame
+	private boolean gameEnded = false; // The end of the game still has to be shown
+	private boolean gameWon;
+	private Map<MapElement, List<Node>> elementNodes = new HashMap<>(); // Nodes each map element added when drawn
+	private LevelReloader reloader; // Applies changes of the level file while the game runs
 	private Label scoreLabel;
 	private Label crashLabel;
+	private Label statsLabel; // Shows the selected speed and the achieved ticks per second
+	private HBox controls; // Speed and overlay buttons
+	private ImageView heatmapView; // Congestion overlay, one pixel per cell scaled up to the grid
+	private WritableImage heatmapImage;
+	private int[] heatmapPixels;
+	private int heatmapBucket = -1; // Last heatmap bucket drawn into the image
+	private AutopilotPolicy hintPolicy; // Searches the hints, created when the first one is asked for
+	private TrafficLight hintedLight; // Light the last hint marked, until it changes
+	private boolean hintSearching = false; // A hint is being searched, further requests are ignored until it is found
+	private final Set<TrafficLight> changedWhileSearching = new HashSet<>(); // A hint for these would be out of date
+	private ReplayView replayView; // Crash replay overlay, shown while the game is paused for it
+	private int speedMultiplier = 1; // Number of simulated seconds per real second, or MAX_SPEED
+	private static final int MAX_SPEED = 0; // Speed value meaning "as fast as the CPU allows"
+	private static final long MAX_SPEED_FRAME_BUDGET = 12_000_000; // Nanoseconds of ticking per frame in max mode
+	private static final int COARSE_STEP_SPEED = 16; // From this speed on the game simulates several ticks per step
+	private double tickBacklog = 0; // Simulated seconds owed to the game but not yet ticked
+	private final TimingWheel uiTimers = new TimingWheel(0); // Delayed UI actions, in ticks of real time
+	private double uiSeconds = 0; // Real seconds the animation timer has run, clock of uiTimers
+	private long ticksThisSecond = 0; // Ticks run since the ticks/second readout was last refreshed
+	private long statsWindowStart = 0; // Frame time at which the current readout window started
+	private static final File QUICKSAVE_FILE = new File(System.getProperty("user.dir"), "quicksave.tsim");
+	private static final File TRAJECTORY_FILE = new File(System.getProperty("user.dir"), "trajectory.ttrj");
+	private static final File STATISTICS_FILE = new File(System.getProperty("user.dir"), "path-statistics.json");
 	int a = 0;
 
 	/**
@@ -45,20 +105,67 @@ public class GameUI {
 	 */
 	public GameUI(Game game, Stage stage) {
 		this.game = game;
+		this.stage = stage;
 		game.setGridSize(15, 15);
 		root = new Pane();
 		scene = new Scene(root, 800, 800);
 		stage.setScene(scene);
+		stage.setOnCloseRequest(e -> closeHints());
+		scene.setOnKeyPressed(event -> {
+			if (event.getCode() == KeyCode.F5) {
+				saveSnapshot();
+			} else if (event.getCode() == KeyCode.F9) {
+				restoreSnapshot();
+			} else if (event.getCode() == KeyCode.H) {
+				toggleHeatmap();
+			} else if (event.getCode() == KeyCode.S) {
+				exportStatistics();
+			} else if (event.getCode() == KeyCode.R) {
+				toggleRecording();
+			} else if (event.getCode() == KeyCode.P) {
+				toggleReplay();
+			} else if (event.getCode() == KeyCode.A) {
+				showHint();
+			} else if (event.getCode() == KeyCode.EQUALS || event.getCode() == KeyCode.PLUS
+					|| event.getCode() == KeyCode.ADD) {
+				zoomAt(scene.getWidth() / 2, scene.getHeight() / 2, ZOOM_STEP);
+			} else if (event.getCode() == KeyCode.MINUS || event.getCode() == KeyCode.SUBTRACT) {
+				zoomAt(scene.getWidth() / 2, scene.getHeight() / 2, 1 / ZOOM_STEP);
+			} else if (event.getCode() == KeyCode.DIGIT0) {
+				resetView();
+			}
+		});
+		scene.setOnScroll(
+				event -> zoomAt(event.getX(), event.getY(), event.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP));
+		scene.setOnMousePressed(event -> {
+			dragX = event.getX();
+			dragY = event.getY();
+		});
+		scene.setOnMouseDragged(event -> {
+			if (event.isSecondaryButtonDown()) { // The left button is for the traffic lights
+				view.setTx(view.getTx() + event.getX() - dragX);
+				view.setTy(view.getTy() + event.getY() - dragY);
+			}
+			dragX = event.getX();
+			dragY = event.getY();
+		});
 
 		createLabels();
+		createSpeedControls();
+		game.setReplayEnabled(true);
 
 		game.createTraffic();
 		stage.show();
 		background = new Rectangle(0, 0, 800, 800);
 		background.setFill(Color.LIGHTBLUE);
 		root.getChildren().add(background);
+		createWorld();
+		for (Node overlay : new Node[] { scoreLabel, crashLabel, statsLabel, controls }) {
+			overlay.toFront(); // Above the map, which was added after them
+		}
 
 		initializeUI();
+		game.getEvents().subscribe(this);
 		createTraffic();
 	}
 
@@ -68,8 +175,82 @@ public class GameUI {
 	private void initializeUI() {
 		Rectangle rect = new Rectangle(0, 0, 800, 800); // Creating rectangle for the background
 		rect.setFill(Color.LIGHTBLUE);
-		root.getChildren().add(rect);
-		game.getElements().forEach(elem -> elem.draw(root));
+		mapLayer.getChildren().add(rect);
+		game.getElements().forEach(elem -> drawElement(elem));
+	}
+
+	/**
+	 * Creates the zoomable map below the labels and buttons: one layer for the
+	 * level, one for the cars, and the overview canvas that replaces the cars
+	 * when zoomed out.
+	 */
+	private void createWorld() {
+		mapLayer = new Pane();
+		carLayer = new Pane();
+		world = new Pane(mapLayer, carLayer);
+		for (Pane pane : new Pane[] { world, mapLayer, carLayer }) {
+			pane.setPickOnBounds(false); // Only the shapes themselves take clicks
+		}
+		world.getTransforms().add(view);
+		overview = new TrafficOverview(scene.getWidth(), scene.getHeight());
+		overview.setVisible(false);
+		root.getChildren().addAll(world, overview);
+	}
+
+	/**
+	 * Zooms the map while keeping the map point under the given window position
+	 * in place.
+	 *
+	 * @param x      Window position to zoom around.
+	 * @param y      Window position to zoom around.
+	 * @param factor The change of the zoom.
+	 */
+	private void zoomAt(double x, double y, double factor) {
+		double newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+		double mapX = (x - view.getTx()) / zoom;
+		double mapY = (y - view.getTy()) / zoom;
+		zoom = newZoom;
+		view.setMxx(zoom);
+		view.setMyy(zoom);
+		view.setTx(x - mapX * zoom);
+		view.setTy(y - mapY * zoom);
+	}
+
+	/**
+	 * Shows the map at its normal size again (0).
+	 */
+	private void resetView() {
+		zoom = 1;
+		view.setToIdentity();
+	}
+
+	/**
+	 * Draws a map element for the first time and remembers the nodes it added,
+	 * so that it can be removed again when the level is reloaded.
+	 *
+	 * @param element The element to draw.
+	 */
+	void drawElement(MapElement element) {
+		if (elementNodes.containsKey(element)) {
+			return; // Already on the pane
+		}
+		int before = mapLayer.getChildren().size();
+		element.draw(mapLayer);
+		lightsCovered |= !(element instanceof TrafficLight);
+		elementNodes.put(element,
+				new ArrayList<>(mapLayer.getChildren().subList(before, mapLayer.getChildren().size())));
+	}
+
+	/**
+	 * Removes the nodes of a map element that is no longer part of the level.
+	 *
+	 * @param element The removed element.
+	 */
+	void removeElement(MapElement element) {
+		List<Node> nodes = elementNodes.remove(element);
+		if (nodes != null) {
+			mapLayer.getChildren().removeAll(nodes);
+		}
 	}
 
 	/**
@@ -81,7 +262,7 @@ public class GameUI {
 			Line horizontalLine = new Line(0, i * game.getCellSize(), game.getGridWidth() * game.getCellSize(),
 					i * game.getCellSize());
 			horizontalLine.setStroke(Color.GRAY);
-			root.getChildren().add(horizontalLine);
+			mapLayer.getChildren().add(horizontalLine);
 		}
 
 		// Draw vertical grid lines
@@ -89,7 +270,7 @@ public class GameUI {
 			Line verticalLine = new Line(i * game.getCellSize(), 0, i * game.getCellSize(),
 					game.getGridHeight() * game.getCellSize());
 			verticalLine.setStroke(Color.GRAY);
-			root.getChildren().add(verticalLine);
+			mapLayer.getChildren().add(verticalLine);
 		}
 	}
 
@@ -108,53 +289,368 @@ public class GameUI {
 		root.getChildren().addAll(scoreLabel, crashLabel);
 	}
 
+	/**
+	 * Creates the time-acceleration buttons, the heatmap toggle and the label
+	 * that reports the achieved simulation rate.
+	 */
+	private void createSpeedControls() {
+		controls = new HBox(4);
+		controls.setLayoutX(420);
+		controls.setLayoutY(10);
+		int[] speeds = { 1, 4, 16, MAX_SPEED };
+		for (int speed : speeds) {
+			Button button = new Button(speed == MAX_SPEED ? "Max" : speed + "x");
+			button.setFont(Font.font("Arial", FontWeight.BOLD, 14));
+			button.setPrefWidth(54);
+			button.setOnAction(e -> setSpeed(speed));
+			controls.getChildren().add(button);
+		}
+		Button heatmapButton = new Button("Heatmap");
+		heatmapButton.setFont(Font.font("Arial", FontWeight.BOLD, 14));
+		heatmapButton.setOnAction(e -> toggleHeatmap());
+		controls.getChildren().add(heatmapButton);
+		Button hintButton = new Button("Hint");
+		hintButton.setFont(Font.font("Arial", FontWeight.BOLD, 14));
+		hintButton.setOnAction(e -> showHint());
+		controls.getChildren().add(hintButton);
+		root.getChildren().add(controls);
+
+		statsLabel = new Label();
+		statsLabel.setFont(Font.font("Arial", FontWeight.BOLD, 14));
+		statsLabel.setLayoutX(420);
+		statsLabel.setLayoutY(45);
+		root.getChildren().add(statsLabel);
+		updateStats(0);
+	}
+
+	/**
+	 * Marks the light the autopilot would toggle now (A). The search runs a few
+	 * seconds ahead on copies of the game in the background, so the game goes on
+	 * meanwhile and the light is marked once it is found; the mark goes away when
+	 * the light changes or the next hint is shown.
+	 */
+	private void showHint() {
+		if (hintSearching) {
+			return;
+		}
+		if (hintPolicy == null) {
+			hintPolicy = new AutopilotPolicy(AutopilotPolicy.DEFAULT_ROLLOUTS);
+		}
+		clearHint();
+		hintSearching = true;
+		changedWhileSearching.clear();
+		AutopilotPolicy policy = hintPolicy;
+		policy.suggestLater(game, light -> Platform.runLater(() -> {
+			if (policy != hintPolicy) {
+				return; // The game ended or was replaced meanwhile
+			}
+			hintSearching = false;
+			if (light != null && !changedWhileSearching.contains(light)) {
+				hintedLight = light;
+				light.setHinted(true);
+			}
+		}));
+	}
+
+	/**
+	 * Stops the threads of the hint search, when the game ends or its window is
+	 * closed or replaced.
+	 */
+	private void closeHints() {
+		if (hintPolicy != null) {
+			hintPolicy.close();
+			hintPolicy = null;
+		}
+		hintSearching = false;
+	}
+
+	private void clearHint() {
+		if (hintedLight != null) {
+			hintedLight.setHinted(false);
+			hintedLight = null;
+		}
+	}
+
+	/**
+	 * Shows or hides the congestion heatmap (H). While it is shown the game
+	 * collects congestion counts, and the overlay is redrawn once per completed
+	 * bucket into a single image rather than with a node per cell.
+	 */
+	private void toggleHeatmap() {
+		if (heatmapView != null) {
+			world.getChildren().remove(heatmapView);
+			heatmapView = null;
+			game.setHeatmapEnabled(false);
+			return;
+		}
+		game.setHeatmapEnabled(true);
+		CongestionHeatmap heatmap = game.getHeatmap();
+		heatmapImage = new WritableImage(heatmap.getCellsX(), heatmap.getCellsY());
+		heatmapPixels = new int[heatmap.getCellsX() * heatmap.getCellsY()];
+		heatmapBucket = -1;
+		heatmapView = new ImageView(heatmapImage);
+		heatmapView.setFitWidth(heatmap.getCellsX() * game.getCellSize());
+		heatmapView.setFitHeight(heatmap.getCellsY() * game.getCellSize());
+		heatmapView.setSmooth(false);
+		heatmapView.setMouseTransparent(true); // Keep the traffic lights clickable
+		world.getChildren().add(heatmapView);
+	}
+
+	/**
+	 * Draws the latest completed heatmap bucket if it has not been drawn yet.
+	 */
+	private void updateHeatmap() {
+		CongestionHeatmap heatmap = game.getHeatmap();
+		if (heatmapView == null || heatmap == null || heatmap.getBucketsCompleted() == heatmapBucket) {
+			return;
+		}
+		heatmapBucket = heatmap.getBucketsCompleted();
+		heatmap.render(heatmapPixels);
+		heatmapImage.getPixelWriter().setPixels(0, 0, heatmap.getCellsX(), heatmap.getCellsY(),
+				PixelFormat.getIntArgbInstance(), heatmapPixels, 0, heatmap.getCellsX());
+	}
+
+	/**
+	 * Changes how fast the simulation runs compared to real time.
+	 *
+	 * @param speed The new speed multiplier, or MAX_SPEED to run as fast as
+	 *              possible.
+	 */
+	private void setSpeed(int speed) {
+		speedMultiplier = speed;
+		tickBacklog = 0; // Do not carry time owed at the old speed over to the new one
+	}
+
+	/**
+	 * Refreshes the speed readout with the selected speed and the ticks per second
+	 * achieved during the last measuring window, together with the spawn backlog
+	 * of cars waiting for the start of their path to clear.
+	 *
+	 * @param ticksPerSecond The measured simulation rate.
+	 */
+	private void updateStats(double ticksPerSecond) {
+		String speed = speedMultiplier == MAX_SPEED ? "Max" : speedMultiplier + "x";
+		statsLabel.setText(String.format("Speed: %s  |  %.0f ticks/s%nQueued: %d  |  wait %.1fs (max %.1fs)", speed,
+				ticksPerSecond, game.getBacklogLength(), game.getMeanBacklogWait(), game.getMaxBacklogWait()));
+	}
+
+	/**
+	 * Saves the running game to the quicksave file (F5).
+	 */
+	private void saveSnapshot() {
+		try {
+			long start = System.nanoTime();
+			GameSnapshot.save(game, QUICKSAVE_FILE);
+			System.out.printf("Saved %d cars to %s in %.2f ms%n", game.getCars().size(), QUICKSAVE_FILE,
+					(System.nanoTime() - start) / 1e6);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Opens or closes the replay of the last crash (P). The game is paused while
+	 * the replay is shown. The replay draws the map at its normal size, so the
+	 * view is reset when it opens.
+	 */
+	private void toggleReplay() {
+		if (replayView != null) {
+			root.getChildren().remove(replayView);
+			replayView = null;
+			return;
+		}
+		ReplayBuffer replay = game.getReplay();
+		if (replay == null || replay.getFrameCount() == 0) {
+			return;
+		}
+		resetView();
+		replayView = new ReplayView(replay, game.getTrafficLights(), this::toggleReplay);
+		root.getChildren().add(replayView);
+	}
+
+	/**
+	 * Starts or stops recording car trajectories to the trajectory file (R).
+	 */
+	private void toggleRecording() {
+		TrajectoryRecorder recorder = game.getRecorder();
+		if (recorder != null) {
+			game.stopRecording();
+			System.out.println("Recorded " + recorder.getSamplesWritten() + " car samples to " + recorder.getFile());
+			return;
+		}
+		try {
+			game.startRecording(TRAJECTORY_FILE);
+			System.out.println("Recording trajectories to " + TRAJECTORY_FILE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes the travel time and delay statistics of every path to the statistics
+	 * file (S, and automatically when the game ends).
+	 */
+	void exportStatistics() {
+		try {
+			Files.write(STATISTICS_FILE.toPath(), game.pathStatisticsJson().getBytes(StandardCharsets.UTF_8));
+			System.out.println("Path statistics written to " + STATISTICS_FILE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Replaces the running game with the one in the quicksave file (F9). The
+	 * restored game gets a new user interface on the same stage.
+	 */
+	private void restoreSnapshot() {
+		if (!QUICKSAVE_FILE.exists()) {
+			System.out.println("No saved game found at " + QUICKSAVE_FILE);
+			return;
+		}
+		try {
+			Game restored = GameSnapshot.load(QUICKSAVE_FILE);
+			double gridWidth = restored.getGridWidth();
+			double gridHeight = restored.getGridHeight();
+			timer.stop();
+			if (reloader != null) {
+				reloader.stop();
+			}
+			closeHints();
+			GameUI restoredUI = new GameUI(restored, stage);
+			restored.setGridSize(gridWidth, gridHeight); // The new UI resets the grid to the default size
+			restored.checkAndSetGameUI(restoredUI);
+			restoredUI.speedMultiplier = speedMultiplier;
+			restoredUI.createTraffic();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Updates the text of the score and crash labels.
 	 */
 	private void updateLabels() {
 		scoreLabel.setText("Score: " + game.getCarsArrived() + "/" + game.getWinCount());
-		crashLabel.setText("Crashes: " + game.getCrashes() + "/" + game.getMaxCrashCount());
-		scoreLabel.toFront();
-		crashLabel.toFront();
+		crashLabel.setText("Crashes: " + game.getCrashes() + "/" + game.getMaxCrashCount()
+				+ (game.getCrashes() > 0 ? "  (P: replay)" : "")
+				+ (game.getGridlockCount() > 0 ? "  Gridlocks: " + game.getGridlockCount() : ""));
 	}
 
 	/**
-	 * Updates the entire UI, including map elements and cars.
+	 * Collects the events of a tick. Nothing is drawn here: cars spawned and
+	 * removed again before the next frame never get a rectangle, and the labels
+	 * are written at most once per frame.
+	 *
+	 * @param batch The events of the tick.
 	 */
-	private void updateUI() {
-		for (MapElement element : game.getElements()) {
-			if (element instanceof TrafficLight) {
-				TrafficLight light = (TrafficLight) element;
-				light.draw(root);
+	@Override
+	public void onEvents(GameEvents batch) {
+		for (int i = 0; i < batch.size(); i++) {
+			switch (batch.getType(i)) {
+			case CAR_SPAWNED:
+				spawnedCars.add(batch.getCar(i));
+				break;
+			case CAR_ARRIVED:
+			case CAR_CRASHED:
+				labelsChanged = true;
+				carLeft(batch.getCar(i));
+				break;
+			case CAR_REMOVED:
+				carLeft(batch.getCar(i));
+				break;
+			case GRIDLOCK:
+				labelsChanged = true;
+				break;
+			case GAME_ENDED:
+				gameEnded = true;
+				gameWon = batch.isWon();
+				break;
+			case LIGHT_CHANGED:
+				if (batch.getLight(i) == hintedLight) {
+					clearHint(); // The player followed the hint, or a plan switched the light
+				}
+				if (hintSearching) {
+					changedWhileSearching.add(batch.getLight(i));
+				}
+				break;
+			default:
+				break; // Lights show their new colour themselves
 			}
 		}
-		for (Car car : game.getCars()) {
-			car.draw(root);
-			updateCarPosition(car); // Update position for each car
+	}
+
+	/**
+	 * Notes that a car has left the game.
+	 *
+	 * @param car The car.
+	 */
+	private void carLeft(Car car) {
+		if (!spawnedCars.remove(car) && car.hasShape() && car.getCarShape().getParent() == carLayer) {
+			leftCarShapes.add(car.getCarShape());
 		}
-		updateLabels();
 	}
 
 	/**
-	 * Adds a car's visual representation to the pane.
-	 * 
-	 * @param car The car to add.
+	 * Applies the events collected since the last frame.
 	 */
-	public void addCarToPane(Car car) {
-		root.getChildren().add(car.getCarShape());
+	private void applyEvents() {
+		game.flushEvents(); // Events from outside the ticks, such as a reload
+		if (!leftCarShapes.isEmpty()) {
+			carLayer.getChildren().removeAll(leftCarShapes);
+			leftCarShapes.clear();
+		}
+		if (carsShown) {
+			for (Car car : spawnedCars) {
+				car.draw(carLayer);
+			}
+		}
+		spawnedCars.clear();
+		if (labelsChanged) {
+			updateLabels();
+			labelsChanged = false;
+		}
+		if (gameEnded) {
+			gameEnded = false;
+			closeHints();
+			exportStatistics();
+			displayEndGameScreen(gameWon);
+		}
 	}
 
 	/**
-	 * Updates the graphical representation of a car's position.
-	 * 
-	 * @param car The car to update.
+	 * Updates the entire UI, including map elements and cars. How cars are shown
+	 * depends on the zoom: close up every car has its rectangle, further out the
+	 * cars are summed up per path segment and, for whole networks, per grid cell.
 	 */
-	public void updateCarPosition(Car car) {
-		Rectangle carShape = carGraphics.get(car);
-		if (carShape != null) {
-			carShape.setX(car.getX());
-			carShape.setY(car.getY());
-			carShape.toFront();
+	private void updateUI() {
+		updateHeatmap();
+		if (lightsCovered) {
+			for (TrafficLight light : game.getTrafficLights()) {
+				light.draw(mapLayer); // Back on top, so they can be clicked
+			}
+			lightsCovered = false;
+		}
+		boolean detailed = zoom >= CAR_ZOOM;
+		carLayer.setVisible(detailed);
+		overview.setVisible(!detailed);
+		if (detailed && !carsShown) {
+			for (Car car : game.getCars()) { // Zoomed in: every car gets its rectangle back, placed once
+				car.draw(carLayer);
+			}
+		} else if (!detailed && carsShown) {
+			carLayer.getChildren().clear(); // Rectangles off the pane are not moved, so cars cost nothing to draw
+			leftCarShapes.clear();
+		}
+		carsShown = detailed;
+		applyEvents(); // Close up, cars move their own rectangles
+		if (detailed) {
+			return;
+		}
+		if (zoom >= CELL_ZOOM) {
+			overview.drawSegments(game, zoom, view.getTx(), view.getTy());
+		} else {
+			overview.drawCells(game, zoom, view.getTx(), view.getTy());
 		}
 	}
 
@@ -199,28 +695,29 @@ public class GameUI {
 
 		Platform.runLater(() -> {
 			root.getChildren().add(messagePane); // Add both the rectangle and label to the root
-			new Timeline(new KeyFrame(Duration.seconds(7), ae -> Platform.exit())).play();
+			long exitTick = uiTimers.getCurrentTick() + Math.round(7 / Game.TICK_SECONDS);
+			uiTimers.schedule(tick -> Platform.exit(), exitTick);
 		});
 	}
 
 	/**
-	 * Removes a car's graphical representation from the pane.
-	 * 
-	 * @param car The car to remove.
-	 */
-	public void removeCarFromPane(Car car) {
-		Rectangle carShape = car.getCarShape();
-		if (carShape != null && root.getChildren().contains(carShape)) {
-			Platform.runLater(() -> {
-				root.getChildren().remove(carShape);
-			});
-		}
-	}
-
-	/**
-	 * Initializes traffic and UI updates through an animation timer.
+	 * Initializes traffic and UI updates through an animation timer. Each frame
+	 * runs as many simulation ticks as the selected speed requires and then
+	 * draws only the latest state. In max mode the game ticks until the frame
+	 * budget is spent. Fast speeds run the ticks in longer steps, which the
+	 * swept collision test keeps safe.
 	 */
 	public void createTraffic() {
+		if (timer != null) {
+			return; // The timer is already running
+		}
+		if (game.getLevelPath() != null) {
+			try {
+				reloader = LevelReloader.start(game, this, new File(game.getLevelPath()));
+			} catch (IOException e) {
+				System.out.println("Level changes will not be reloaded: " + e.getMessage());
+			}
+		}
 		timer = new AnimationTimer() {
 
 			private long lastUpdate = 0;
@@ -229,15 +726,49 @@ public class GameUI {
 			public void handle(long now) {
 				if (a == 0) {
 					drawGrid();
+					lightsCovered = true;
 					for (MapElement element : game.getElements()) {
-						element.draw(root);
+						drawElement(element);
 					}
 				}
 				a++;
-				if (lastUpdate == 0 || now - lastUpdate >= 1_000_000) { // Update every 160 milliseconds
-					game.update();
-					updateUI(); // Update the UI to reflect changes
+				if (lastUpdate == 0) {
 					lastUpdate = now;
+					statsWindowStart = now;
+				}
+				double elapsed = Math.min((now - lastUpdate) / 1e9, 0.25); // Skip long pauses instead of catching up
+				lastUpdate = now;
+				uiSeconds += elapsed;
+				uiTimers.advanceTo((long) (uiSeconds / Game.TICK_SECONDS));
+
+				int ticks = 0;
+				if (replayView != null) {
+					replayView.advance(elapsed); // The game is paused while the replay is shown
+				} else if (speedMultiplier == MAX_SPEED) {
+					long frameEnd = System.nanoTime() + MAX_SPEED_FRAME_BUDGET;
+					do {
+						ticks += game.step(Game.MAX_STEP_TICKS);
+					} while (System.nanoTime() < frameEnd && !game.isGameOver());
+				} else {
+					tickBacklog += elapsed * speedMultiplier;
+					while (tickBacklog >= Game.TICK_SECONDS) {
+						int wanted = speedMultiplier >= COARSE_STEP_SPEED ? (int) (tickBacklog / Game.TICK_SECONDS) : 1;
+						int stepped = game.step(wanted);
+						if (stepped == 0) {
+							tickBacklog = 0; // The game is over
+							break;
+						}
+						tickBacklog -= stepped * Game.TICK_SECONDS;
+						ticks += stepped;
+					}
+				}
+				updateUI(); // Update the UI to reflect changes
+
+				ticksThisSecond += ticks;
+				if (now - statsWindowStart >= 1_000_000_000) {
+					updateStats(ticksThisSecond * 1e9 / (now - statsWindowStart));
+					ticksThisSecond = 0;
+					statsWindowStart = now;
 				}
 			}
 		};
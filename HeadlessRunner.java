@@ -0,0 +1,188 @@
+package application;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Locale;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Command line entry point that runs a level without any user interface. The
+ * JavaFX toolkit is never started, which makes it suitable for automated
+ * performance runs. It prints a JSON summary of the run to standard output.
+ *
+ * <pre>
+ * java application.HeadlessRunner --level levels/level1.txt --seed 7 --duration 1800 --policy fixed:12
+ * </pre>
+ *
+ * With --step-ticks the game simulates several ticks per step, up to
+ * {@link Game#MAX_STEP_TICKS}, which is faster but decides lights and queues
+ * less often than the game does on screen.
+ *
+ * With --meso all, or --meso x0,y0,x1,y1 for a block of cells, the roads in
+ * that part of the map are simulated as link queues, see {@link MesoNetwork},
+ * which runs networks far too large to drive car by car.
+ *
+ * With --kinematics vector the cars are moved by the kernel on the Vector API,
+ * see {@link KinematicsKernel}, if the JVM was started with
+ * --add-modules jdk.incubator.vector, and one by one otherwise; --kinematics
+ * scalar uses the kernel without vectors. The results are the same.
+ */
+public class HeadlessRunner {
+
+	public static void main(String[] args) {
+		String level = null;
+		long seed = 1;
+		double duration = 600; // Simulated seconds
+		String policyName = "manual";
+		String recordFile = null; // Trajectory file, if the run is recorded
+		int stepTicks = 1; // Ticks simulated per step
+		WaitForGraph.Policy gridlockPolicy = WaitForGraph.Policy.REPORT;
+		String mesoCells = null; // Meso region, "all" or a block of cells
+		String kinematics = "cars"; // How the cars are moved: cars, scalar or vector
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "--level":
+				level = args[i + 1];
+				break;
+			case "--seed":
+				seed = Long.parseLong(args[i + 1]);
+				break;
+			case "--duration":
+				duration = Double.parseDouble(args[i + 1]);
+				break;
+			case "--policy":
+				policyName = args[i + 1];
+				break;
+			case "--record":
+				recordFile = args[i + 1];
+				break;
+			case "--step-ticks":
+				stepTicks = Integer.parseInt(args[i + 1]);
+				break;
+			case "--gridlock":
+				gridlockPolicy = WaitForGraph.Policy.valueOf(args[i + 1].toUpperCase(Locale.ROOT));
+				break;
+			case "--meso":
+				mesoCells = args[i + 1];
+				break;
+			case "--kinematics":
+				kinematics = args[i + 1];
+				break;
+			default:
+				System.err.println("Unknown option: " + args[i]);
+				break;
+			}
+		}
+		if (level == null) {
+			System.err.println(
+					"Usage: HeadlessRunner --level <file> [--seed <n>] [--duration <seconds>] [--policy manual|fixed[:seconds]|autopilot[:rollouts]] [--record <file>] [--step-ticks <n>] [--gridlock report|release] [--meso all|x0,y0,x1,y1] [--kinematics cars|scalar|vector]");
+			System.exit(2);
+		}
+
+		Game game = new Game(15, 15);
+		try {
+			LevelLoader.loadLevel(game, level);
+		} catch (FileNotFoundException e) {
+			System.err.println("Level file not found: " + level);
+			System.exit(1);
+		}
+		game.setSeed(seed);
+		game.setWinConditions(Integer.MAX_VALUE, Integer.MAX_VALUE); // Always run for the full duration
+		game.setGridlockPolicy(gridlockPolicy);
+		if (mesoCells != null && !setMesoRegion(game, mesoCells)) {
+			System.err.println("Invalid meso region: " + mesoCells);
+			System.exit(2);
+		}
+		if (kinematics.equals("scalar")) {
+			game.setKinematics(new KinematicsKernel());
+		} else if (kinematics.equals("vector")) {
+			game.setKinematics(KinematicsKernel.vector());
+			if (game.getKinematics() == null) {
+				System.err.println("Vector API not available, moving the cars one by one");
+			}
+		}
+		LightPolicy policy = LightPolicy.forName(policyName);
+		game.createTraffic();
+		if (recordFile != null) {
+			try {
+				game.startRecording(new File(recordFile));
+			} catch (IOException e) {
+				System.err.println("Cannot record to " + recordFile + ": " + e.getMessage());
+				System.exit(1);
+			}
+		}
+
+		long ticks = Math.round(duration / Game.TICK_SECONDS);
+		long start = System.nanoTime();
+		for (long i = 0; i < ticks;) {
+			policy.apply(game);
+			i += game.step((int) Math.min(stepTicks, ticks - i));
+		}
+		policy.close();
+		game.stopRecording();
+		double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(String.format(Locale.ROOT,
+				"{\"level\": %s, \"seed\": %d, \"policy\": %s, \"duration\": %.1f, \"ticks\": %d, "
+						+ "\"arrivals\": %d, \"crashes\": %d, \"gridlocks\": %d, \"mesoVehicles\": %d, \"meanTravelTime\": %.3f, "
+						+ "\"backlog\": %d, \"meanBacklogWait\": %.3f, \"wallSeconds\": %.3f, \"ticksPerSecond\": %.1f, "
+						+ "\"paths\": %s}",
+				jsonString(level), seed, jsonString(policyName), game.getSimulationTime(), game.getTickCount(),
+				game.getCarsArrived(), game.getCrashes(), game.getGridlockCount(), game.getMesoVehicleCount(),
+				game.getMeanTravelTime(),
+				game.getBacklogLength(), game.getMeanBacklogWait(), wallSeconds, game.getTickCount() / wallSeconds,
+				game.pathStatisticsJson()));
+	}
+
+	/**
+	 * Sets the meso region of a game from the command line value.
+	 *
+	 * @param game  The game.
+	 * @param value "all", or the first and last column and row of a block of
+	 *              cells.
+	 * @return false if the value cannot be read.
+	 */
+	private static boolean setMesoRegion(Game game, String value) {
+		if (value.equals("all")) {
+			game.setMesoRegion(Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+					Double.POSITIVE_INFINITY);
+			return true;
+		}
+		String[] parts = value.split(",");
+		if (parts.length != 4) {
+			return false;
+		}
+		try {
+			double cell = game.getCellSize();
+			game.setMesoRegion(Integer.parseInt(parts[0].trim()) * cell, Integer.parseInt(parts[1].trim()) * cell,
+					(Integer.parseInt(parts[2].trim()) + 1) * cell, (Integer.parseInt(parts[3].trim()) + 1) * cell);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Quotes a string for use as a JSON value.
+	 *
+	 * @param value The string to quote.
+	 * @return the quoted and escaped string.
+	 */
+	static String jsonString(String value) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+}
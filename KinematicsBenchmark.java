@@ -0,0 +1,140 @@
+package application;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Command line benchmark of the {@link KinematicsKernel}s. For every car count
+ * it fills the lanes with random cars, a tenth of them stopped and most behind
+ * another car of the same path, and times steps of the scalar kernel and, if
+ * the JVM has the Vector API, of the vector kernel. It first checks that both
+ * leave the cars at the same distances with the same gaps. Each result is
+ * printed as one JSON line.
+ *
+ * <pre>
+ * java --add-modules jdk.incubator.vector application.KinematicsBenchmark 1000 100000 1000000
+ * </pre>
+ *
+ * Every kernel is warmed up before it is timed, and the best of several rounds
+ * is reported, so the figures show the steady state of the compiled loops.
+ */
+public class KinematicsBenchmark {
+	private static final int[] DEFAULT_COUNTS = { 1_000, 100_000, 1_000_000 };
+	private static final int PATHS = 64; // Paths the cars are spread over, to give them cars ahead
+	private static final double DT = Game.MAX_STEP_TICKS * Game.TICK_SECONDS;
+	private static final long ROUND_NANOS = 200_000_000; // Length of a timed round
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+		int[] counts = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : DEFAULT_COUNTS;
+		KinematicsKernel vector = KinematicsKernel.vector();
+		if (vector == null) {
+			System.err.println(
+					"Vector API not available, build the incubator folder and start with --add-modules jdk.incubator.vector");
+		}
+		for (int count : counts) {
+			KinematicsKernel scalar = new KinematicsKernel();
+			fill(scalar, count);
+			double scalarNanos = time(scalar, count);
+			report(scalar, count, scalarNanos, scalarNanos);
+			if (vector != null) {
+				fill(vector, count);
+				if (!sameResults(scalar, vector, count)) {
+					System.err.println("Vector kernel differs from the scalar kernel at " + count + " cars");
+					System.exit(1);
+				}
+				report(vector, count, time(vector, count), scalarNanos);
+			}
+		}
+	}
+
+	/**
+	 * Puts the same random cars into the lanes of a kernel for every call with
+	 * the same count.
+	 *
+	 * @param kernel The kernel.
+	 * @param count  The number of cars.
+	 */
+	private static void fill(KinematicsKernel kernel, int count) {
+		Random random = new Random(count);
+		kernel.ensureCapacity(count);
+		double[] lengths = new double[PATHS];
+		int[] tails = new int[PATHS]; // Last car put on every path
+		Arrays.fill(tails, -1);
+		for (int p = 0; p < PATHS; p++) {
+			lengths[p] = 500 + random.nextInt(4500);
+		}
+		for (int i = 0; i < count; i++) {
+			int p = random.nextInt(PATHS);
+			double progress = random.nextDouble() * lengths[p];
+			double speed = random.nextInt(10) == 0 ? 0 : 45;
+			double stopLine = random.nextInt(4) == 0 ? Double.POSITIVE_INFINITY : random.nextDouble() * lengths[p];
+			kernel.set(i, progress, speed, lengths[p], stopLine, tails[p]);
+			tails[p] = i;
+		}
+	}
+
+	/**
+	 * Times steps of a kernel. The lanes are filled again before each round,
+	 * outside the timing, so the cars do not all pile up at the end of their
+	 * paths.
+	 *
+	 * @param kernel The kernel, filled with the cars.
+	 * @param count  The number of cars.
+	 * @return the best time per car and step in nanoseconds.
+	 */
+	private static double time(KinematicsKernel kernel, int count) {
+		int steps = Math.max(1, 20_000_000 / count); // About 20 million cars per batch
+		run(kernel, count, steps); // Warm up, so the loops are compiled
+		run(kernel, count, steps);
+		double best = Double.POSITIVE_INFINITY;
+		for (int round = 0; round < ROUNDS; round++) {
+			fill(kernel, count);
+			long start = System.nanoTime();
+			long batches = 0;
+			long elapsed;
+			do {
+				run(kernel, count, steps);
+				batches++;
+				elapsed = System.nanoTime() - start;
+			} while (elapsed < ROUND_NANOS);
+			best = Math.min(best, (double) elapsed / (batches * steps * count));
+		}
+		return best;
+	}
+
+	private static void run(KinematicsKernel kernel, int count, int steps) {
+		for (int s = 0; s < steps; s++) {
+			kernel.step(count, DT);
+		}
+	}
+
+	/**
+	 * Takes one step with both kernels and compares every lane.
+	 *
+	 * @return true if every distance and gap is equal.
+	 */
+	private static boolean sameResults(KinematicsKernel scalar, KinematicsKernel vector, int count) {
+		fill(scalar, count);
+		scalar.step(count, DT);
+		vector.step(count, DT);
+		for (int i = 0; i < count; i++) {
+			if (Double.compare(scalar.getProgress(i), vector.getProgress(i)) != 0
+					|| Double.compare(scalar.getStopGap(i), vector.getStopGap(i)) != 0
+					|| Double.compare(scalar.getLeaderGap(i), vector.getLeaderGap(i)) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void report(KinematicsKernel kernel, int count, double nanos, double scalarNanos) {
+		System.out.println(String.format(Locale.ROOT,
+				"{\"kernel\":\"%s\",\"cars\":%d,\"nanosPerCar\":%.3f,\"carsPerSecond\":%.0f,\"speedup\":%.2f}",
+				kernel.getName(), count, nanos, 1e9 / nanos, scalarNanos / nanos));
+	}
+}
@@ -0,0 +1,173 @@
+package application;
+
+import java.util.Arrays;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Moves many cars at once from arrays with one entry per car, one array per
+ * quantity, instead of from the cars themselves. A step adds speed times time
+ * to the progress of every car, stops it at the end of its path, and then
+ * measures how far each car is from its next stop line and from the car ahead
+ * of it.
+ *
+ * This class does the work one car after the other and is the reference: the
+ * arithmetic is the same as in {@link Car#advance(int)}, so the cars end up at
+ * the very same distances. {@link #vector()} gives the kernel built on the
+ * Vector API, VectorKinematicsKernel in the incubator source folder, when it
+ * was compiled and the JVM has the module.
+ */
+public class KinematicsKernel {
+	private static final String VECTOR_MODULE = "jdk.incubator.vector";
+	protected double[] progress = new double[0]; // Distance along the path
+	protected double[] speed = new double[0]; // Pixels per second, 0 for a stopped car
+	protected double[] length = new double[0]; // Length of the path, progress stops there
+	protected double[] stopLine = new double[0]; // Distance of the next stop line, infinity if there is none
+	protected int[] leader = new int[0]; // Lane of the car ahead, the car itself if there is none
+	protected double[] leaderFar = new double[0]; // Infinity if there is no car ahead, else 0, added to the gap
+	protected double[] stopGap = new double[0]; // Stop line less progress, negative past the line
+	protected double[] leaderGap = new double[0]; // Progress of the car ahead less progress
+
+	/**
+	 * Creates the kernel built on the Vector API, if the JVM was started with
+	 * the incubator module; it is looked up at run time so that the rest of
+	 * the game compiles and runs without it.
+	 *
+	 * @return the vector kernel, or null if it is not available.
+	 */
+	public static KinematicsKernel vector() {
+		if (!ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+			return null; // Incubator modules are only resolved when asked for with --add-modules
+		}
+		try {
+			return (KinematicsKernel) Class.forName("application.VectorKinematicsKernel").getDeclaredConstructor()
+					.newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null; // Built without the incubator source folder
+		}
+	}
+
+	/**
+	 * Returns a name for the kernel, for reports.
+	 *
+	 * @return the name.
+	 */
+	public String getName() {
+		return "scalar";
+	}
+
+	/**
+	 * Makes room for a number of cars, keeping the lanes already set.
+	 *
+	 * @param count The number of cars.
+	 */
+	public void ensureCapacity(int count) {
+		if (count <= progress.length) {
+			return;
+		}
+		int capacity = Math.max(count, progress.length * 2);
+		progress = Arrays.copyOf(progress, capacity);
+		speed = Arrays.copyOf(speed, capacity);
+		length = Arrays.copyOf(length, capacity);
+		stopLine = Arrays.copyOf(stopLine, capacity);
+		leader = Arrays.copyOf(leader, capacity);
+		leaderFar = Arrays.copyOf(leaderFar, capacity);
+		stopGap = Arrays.copyOf(stopGap, capacity);
+		leaderGap = Arrays.copyOf(leaderGap, capacity);
+	}
+
+	/**
+	 * Sets the lane of a car.
+	 *
+	 * @param lane     The lane, below the capacity.
+	 * @param progress The distance along the path.
+	 * @param speed    The speed in pixels per second, 0 if the car is stopped.
+	 * @param length   The length of the path.
+	 * @param stopLine The distance of the next stop line, or infinity.
+	 * @param leader   The lane of the car ahead, or -1 if there is none.
+	 */
+	public void set(int lane, double progress, double speed, double length, double stopLine, int leader) {
+		this.progress[lane] = progress;
+		this.speed[lane] = speed;
+		this.length[lane] = length;
+		this.stopLine[lane] = stopLine;
+		this.leader[lane] = leader >= 0 ? leader : lane; // Gathers itself, so every lane can be gathered
+		this.leaderFar[lane] = leader >= 0 ? 0 : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Moves every car by a time step and measures the gaps after it.
+	 *
+	 * @param count The number of lanes in use.
+	 * @param dt    The time step in seconds.
+	 */
+	public void step(int count, double dt) {
+		move(0, count, dt);
+		measureStops(0, count);
+		measureLeaders(0, count); // After every car moved, as it uses the progress of the car ahead
+	}
+
+	/**
+	 * Moves the cars of a range of lanes, the work of {@link #step} before the
+	 * gaps.
+	 *
+	 * @param from The first lane.
+	 * @param to   The lane after the last.
+	 * @param dt   The time step in seconds.
+	 */
+	protected void move(int from, int to, double dt) {
+		for (int i = from; i < to; i++) {
+			progress[i] = Math.min(progress[i] + speed[i] * dt, length[i]);
+		}
+	}
+
+	/**
+	 * Measures how far the cars of a range of lanes are from their stop lines.
+	 *
+	 * @param from The first lane.
+	 * @param to   The lane after the last.
+	 */
+	protected void measureStops(int from, int to) {
+		for (int i = from; i < to; i++) {
+			stopGap[i] = stopLine[i] - progress[i];
+		}
+	}
+
+	/**
+	 * Measures how far the cars of a range of lanes are behind the cars ahead.
+	 *
+	 * @param from The first lane.
+	 * @param to   The lane after the last.
+	 */
+	protected void measureLeaders(int from, int to) {
+		for (int i = from; i < to; i++) {
+			leaderGap[i] = progress[leader[i]] - progress[i] + leaderFar[i];
+		}
+	}
+
+	public double getProgress(int lane) {
+		return progress[lane];
+	}
+
+	/**
+	 * Returns how far a car is from its next stop line after the last step.
+	 *
+	 * @param lane The lane.
+	 * @return the distance, negative once the car is past the line, infinity if
+	 *         there is none.
+	 */
+	public double getStopGap(int lane) {
+		return stopGap[lane];
+	}
+
+	/**
+	 * Returns how far a car is behind the car ahead of it after the last step.
+	 *
+	 * @param lane The lane.
+	 * @return the distance along the path, infinity if there is no car ahead.
+	 */
+	public double getLeaderGap(int lane) {
+		return leaderGap[lane];
+	}
+}
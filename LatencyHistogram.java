@@ -0,0 +1,193 @@
+package application;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * A fixed-size histogram of durations measured in ticks. Values below 32 get a
+ * bucket each; above that every power of two is split into 16 buckets, so any
+ * recorded value is known to within about 6 percent while the memory stays at
+ * 960 counters no matter how many values are recorded or how large they are.
+ * Histograms with the same layout can simply be added together, which makes
+ * the results of separate runs mergeable.
+ */
+public class LatencyHistogram {
+	private static final int LINEAR_BUCKETS = 32; // Values below this have a bucket each
+	private static final int SUB_BUCKETS = 16; // Buckets per power of two above that
+	public static final int BUCKET_COUNT = LINEAR_BUCKETS + 58 * SUB_BUCKETS;
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long totalCount = 0;
+	private long sum = 0;
+	private long max = 0;
+
+	/**
+	 * Records one value.
+	 *
+	 * @param value The duration in ticks; negative values count as 0.
+	 */
+	public void record(long value) {
+		value = Math.max(0, value);
+		counts[bucketOf(value)]++;
+		totalCount++;
+		sum += value;
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Adds every value recorded in another histogram to this one.
+	 *
+	 * @param other The histogram to merge in.
+	 */
+	public void merge(LatencyHistogram other) {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] += other.counts[i];
+		}
+		totalCount += other.totalCount;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Returns the value below which the given share of the recorded values lie.
+	 * The upper end of the bucket is returned, so the answer never understates
+	 * the real percentile by more than the bucket width.
+	 *
+	 * @param percentile A number between 0 and 100.
+	 * @return the percentile in ticks, or 0 if nothing was recorded.
+	 */
+	public long percentile(double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(highestValueIn(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Finds the bucket of a value.
+	 *
+	 * @param value A value of at least 0.
+	 * @return the bucket index.
+	 */
+	static int bucketOf(long value) {
+		if (value < LINEAR_BUCKETS) {
+			return (int) value;
+		}
+		int highestBit = 63 - Long.numberOfLeadingZeros(value);
+		int shift = highestBit - 4; // Leaves the top five bits, 16 to 31
+		return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * Returns the largest value that falls into a bucket.
+	 *
+	 * @param bucket The bucket index.
+	 * @return the upper end of the bucket.
+	 */
+	static long highestValueIn(int bucket) {
+		if (bucket < LINEAR_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+		long top = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((top + 1) << shift) - 1;
+	}
+
+	/**
+	 * Writes the histogram, skipping empty buckets.
+	 *
+	 * @param buffer The buffer receiving the histogram.
+	 */
+	public void writeState(ByteBuffer buffer) {
+		int used = 0;
+		for (long count : counts) {
+			if (count != 0) {
+				used++;
+			}
+		}
+		buffer.putLong(sum);
+		buffer.putLong(max);
+		buffer.putShort((short) used);
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			if (counts[i] != 0) {
+				buffer.putShort((short) i);
+				buffer.putLong(counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the contents with a histogram written by
+	 * {@link #writeState(ByteBuffer)}.
+	 *
+	 * @param buffer The buffer holding the histogram.
+	 */
+	public void readState(ByteBuffer buffer) {
+		Arrays.fill(counts, 0);
+		sum = buffer.getLong();
+		max = buffer.getLong();
+		totalCount = 0;
+		int used = buffer.getShort();
+		for (int i = 0; i < used; i++) {
+			int bucket = buffer.getShort();
+			counts[bucket] = buffer.getLong();
+			totalCount += counts[bucket];
+		}
+	}
+
+	/**
+	 * Returns an upper bound of the bytes {@link #writeState(ByteBuffer)} needs.
+	 *
+	 * @return the size in bytes.
+	 */
+	public int stateSize() {
+		int used = 0;
+		for (long count : counts) {
+			if (count != 0) {
+				used++;
+			}
+		}
+		return 18 + used * 10;
+	}
+
+	/**
+	 * Describes the histogram as a JSON object with its percentiles in seconds and
+	 * the non-empty buckets as [bucket, count] pairs, from which runs can be
+	 * merged again.
+	 *
+	 * @return the JSON text.
+	 */
+	public String toJson() {
+		StringBuilder buckets = new StringBuilder();
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			if (counts[i] != 0) {
+				buckets.append(buckets.length() == 0 ? "" : ", ").append('[').append(i).append(", ")
+						.append(counts[i]).append(']');
+			}
+		}
+		return String.format(Locale.ROOT,
+				"{\"count\": %d, \"mean\": %.3f, \"p50\": %.3f, \"p90\": %.3f, \"p99\": %.3f, \"max\": %.3f, \"buckets\": [%s]}",
+				totalCount, totalCount == 0 ? 0.0 : sum * Game.TICK_SECONDS / totalCount,
+				percentile(50) * Game.TICK_SECONDS, percentile(90) * Game.TICK_SECONDS,
+				percentile(99) * Game.TICK_SECONDS, max * Game.TICK_SECONDS, buckets);
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	public long getMax() {
+		return max;
+	}
+}
@@ -0,0 +1,255 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * An editable description of a level in the same terms as the level file:
+ * road tiles and buildings by grid cell, traffic lights by their end points and
+ * paths by their points. Every change records which cells, paths and lights it
+ * touched, so that views and validators can update only those parts.
+ */
+public class LevelDocument {
+	public static final double CELL_SIZE = 800.0 / 15.0; // Same cell size as MapElement
+	private int gridCellsX;
+	private int gridCellsY;
+	private int winCount = 10;
+	private int maxCrashes = 5;
+	private Map<Integer, int[]> roads = new TreeMap<>(); // Cell index to {type, rotation}
+	private Map<Integer, int[]> buildings = new TreeMap<>(); // Anchor cell index to {type, rotation, color}
+	private Map<Integer, double[]> lights = new TreeMap<>(); // Light id to {startX, startY, endX, endY}
+	private Map<Integer, List<double[]>> paths = new TreeMap<>(); // Path index to its points, first one is the MoveTo
+	private int nextLightId = 0;
+	private Set<Integer> dirtyCells = new HashSet<>();
+	private Set<Integer> dirtyPaths = new HashSet<>();
+	private Set<Integer> dirtyLights = new HashSet<>();
+
+	/**
+	 * Constructs an empty level.
+	 *
+	 * @param gridCellsX Number of cells across.
+	 * @param gridCellsY Number of cells down.
+	 */
+	public LevelDocument(int gridCellsX, int gridCellsY) {
+		this.gridCellsX = gridCellsX;
+		this.gridCellsY = gridCellsY;
+	}
+
+	public int cellIndex(int cellX, int cellY) {
+		return cellY * gridCellsX + cellX;
+	}
+
+	public boolean isInside(int cellX, int cellY) {
+		return cellX >= 0 && cellY >= 0 && cellX < gridCellsX && cellY < gridCellsY;
+	}
+
+	/**
+	 * Places a road tile on a cell, replacing any road tile already there.
+	 *
+	 * @param cellX    Column of the cell.
+	 * @param cellY    Row of the cell.
+	 * @param type     Road type as used by RoadTile.
+	 * @param rotation Rotation in degrees.
+	 */
+	public void setRoad(int cellX, int cellY, int type, int rotation) {
+		if (isInside(cellX, cellY)) {
+			roads.put(cellIndex(cellX, cellY), new int[] { type, rotation });
+			dirtyCells.add(cellIndex(cellX, cellY));
+		}
+	}
+
+	/**
+	 * Places a building with its top left corner on a cell, replacing any
+	 * building anchored there.
+	 *
+	 * @param cellX    Column of the anchor cell.
+	 * @param cellY    Row of the anchor cell.
+	 * @param type     Building type as used by Building.
+	 * @param rotation Rotation in degrees.
+	 * @param color    Color index as used by Building.
+	 */
+	public void setBuilding(int cellX, int cellY, int type, int rotation, int color) {
+		if (isInside(cellX, cellY)) {
+			buildings.put(cellIndex(cellX, cellY), new int[] { type, rotation, color });
+			dirtyCells.add(cellIndex(cellX, cellY));
+		}
+	}
+
+	/**
+	 * Removes the road tile and the building anchored on a cell.
+	 *
+	 * @param cellX Column of the cell.
+	 * @param cellY Row of the cell.
+	 */
+	public void clearCell(int cellX, int cellY) {
+		int cell = cellIndex(cellX, cellY);
+		boolean removed = roads.remove(cell) != null;
+		removed |= buildings.remove(cell) != null;
+		if (removed) {
+			dirtyCells.add(cell);
+		}
+	}
+
+	/**
+	 * Adds a traffic light.
+	 *
+	 * @param startX X coordinate of one end of the stop line, in pixels.
+	 * @param startY Y coordinate of one end of the stop line, in pixels.
+	 * @param endX   X coordinate of the other end of the stop line, in pixels.
+	 * @param endY   Y coordinate of the other end of the stop line, in pixels.
+	 * @return the id of the new light.
+	 */
+	public int addLight(double startX, double startY, double endX, double endY) {
+		int id = nextLightId++;
+		lights.put(id, new double[] { startX, startY, endX, endY });
+		dirtyLights.add(id);
+		return id;
+	}
+
+	public void removeLight(int id) {
+		if (lights.remove(id) != null) {
+			dirtyLights.add(id);
+		}
+	}
+
+	/**
+	 * Appends a point to a path, starting the path if it does not exist yet.
+	 *
+	 * @param pathIndex Index of the path.
+	 * @param x         X coordinate in pixels.
+	 * @param y         Y coordinate in pixels.
+	 */
+	public void addPathPoint(int pathIndex, double x, double y) {
+		paths.computeIfAbsent(pathIndex, index -> new ArrayList<>()).add(new double[] { x, y });
+		dirtyPaths.add(pathIndex);
+	}
+
+	public void removePath(int pathIndex) {
+		if (paths.remove(pathIndex) != null) {
+			dirtyPaths.add(pathIndex);
+		}
+	}
+
+	/**
+	 * Returns the cells changed since the last call and forgets them.
+	 *
+	 * @return the indices of the changed cells.
+	 */
+	public Set<Integer> takeDirtyCells() {
+		Set<Integer> taken = dirtyCells;
+		dirtyCells = new HashSet<>();
+		return taken;
+	}
+
+	/**
+	 * Returns the paths changed since the last call and forgets them.
+	 *
+	 * @return the indices of the changed paths.
+	 */
+	public Set<Integer> takeDirtyPaths() {
+		Set<Integer> taken = dirtyPaths;
+		dirtyPaths = new HashSet<>();
+		return taken;
+	}
+
+	/**
+	 * Returns the lights changed since the last call and forgets them.
+	 *
+	 * @return the ids of the changed lights.
+	 */
+	public Set<Integer> takeDirtyLights() {
+		Set<Integer> taken = dirtyLights;
+		dirtyLights = new HashSet<>();
+		return taken;
+	}
+
+	/**
+	 * Returns the cells a building covers: two by three cells for the large
+	 * types, three by two when they are turned sideways, and one cell for the
+	 * small type.
+	 *
+	 * @param anchor The anchor cell index of the building.
+	 * @return the indices of the covered cells inside the grid.
+	 */
+	public List<Integer> buildingCells(int anchor) {
+		List<Integer> cells = new ArrayList<>();
+		int[] building = buildings.get(anchor);
+		if (building == null) {
+			return cells;
+		}
+		int width = building[0] == 2 ? 1 : (building[1] == 90 || building[1] == 270 ? 3 : 2);
+		int height = building[0] == 2 ? 1 : (building[1] == 90 || building[1] == 270 ? 2 : 3);
+		int anchorX = anchor % gridCellsX;
+		int anchorY = anchor / gridCellsX;
+		for (int dy = 0; dy < height; dy++) {
+			for (int dx = 0; dx < width; dx++) {
+				if (isInside(anchorX + dx, anchorY + dy)) {
+					cells.add(cellIndex(anchorX + dx, anchorY + dy));
+				}
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * Writes the level in the text format read by LevelLoader.
+	 *
+	 * @return the contents of the level file.
+	 */
+	public String toText() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Metadata %d %d %d %d %d %d %d%n", Math.round(gridCellsX * CELL_SIZE),
+				Math.round(gridCellsY * CELL_SIZE), gridCellsX, gridCellsY, paths.size(), winCount, maxCrashes));
+		roads.forEach((cell, road) -> sb.append(String.format("RoadTile %d %d %d %d%n", road[0], road[1],
+				cell % gridCellsX, cell / gridCellsX)));
+		buildings.forEach((cell, building) -> sb.append(String.format("Building %d %d %d %d %d%n", building[0],
+				building[1], building[2], cell % gridCellsX, cell / gridCellsX)));
+		lights.values().forEach(light -> sb.append(String.format("TrafficLight %s %s %s %s%n", number(light[0]),
+				number(light[1]), number(light[2]), number(light[3]))));
+		paths.forEach((index, points) -> {
+			for (int i = 0; i < points.size(); i++) {
+				sb.append(String.format("Path %d %s %s %s%n", index, i == 0 ? "MoveTo" : "LineTo",
+						number(points.get(i)[0]), number(points.get(i)[1])));
+			}
+		});
+		return sb.toString();
+	}
+
+	/**
+	 * Formats a coordinate without a fraction when it is a whole number.
+	 */
+	private static String number(double value) {
+		return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+	}
+
+	public int getGridCellsX() {
+		return gridCellsX;
+	}
+
+	public int getGridCellsY() {
+		return gridCellsY;
+	}
+
+	public Map<Integer, int[]> getRoads() {
+		return roads;
+	}
+
+	public Map<Integer, int[]> getBuildings() {
+		return buildings;
+	}
+
+	public Map<Integer, double[]> getLights() {
+		return lights;
+	}
+
+	public Map<Integer, List<double[]>> getPaths() {
+		return paths;
+	}
+}
@@ -0,0 +1,340 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.control.ToggleGroup;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Polyline;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * An in-game editor for creating levels. The player places road tiles,
+ * buildings, traffic lights and paths on the grid and exports the result as a
+ * level file. Every edit is also sent to a {@link LevelValidator}, which checks
+ * the level in the background and reports problems and a preview of the
+ * traffic without ever holding up the user interface.
+ */
+public class LevelEditor {
+	private static final double CELL = LevelDocument.CELL_SIZE;
+	private static final String[] TOOLS = { "Straight road", "Curved road", "4-way junction", "3-way junction",
+			"Building", "Traffic light", "Path", "Erase" };
+	private Stage stage;
+	private LevelDocument document;
+	private LevelValidator validator;
+	private ToggleGroup toolGroup = new ToggleGroup();
+	private Pane cellLayer = new Pane(); // Road tiles and buildings
+	private Pane lightLayer = new Pane(); // Traffic lights
+	private Pane pathLayer = new Pane(); // Path previews, drawn on top
+	private Map<Integer, Pane> cellViews = new HashMap<>();
+	private Map<Integer, Pane> lightViews = new HashMap<>();
+	private Map<Integer, Polyline> pathViews = new HashMap<>();
+	private Label statusLabel = new Label("Place road tiles to start a level.");
+	private Label pathLabel = new Label();
+	private Button rotationButton = new Button();
+	private Button buildingButton = new Button();
+	private int rotation = 0;
+	private int buildingType = 0;
+	private int buildingColor = 0;
+	private int currentPath = 0;
+	private double[] lightStart; // First end of a traffic light being placed
+
+	/**
+	 * Constructs the editor for a new level of the given size and shows it on
+	 * the given stage. Boards larger than the window can be scrolled.
+	 *
+	 * @param stage      The primary stage of the application.
+	 * @param gridCellsX Number of cells across.
+	 * @param gridCellsY Number of cells down.
+	 */
+	public LevelEditor(Stage stage, int gridCellsX, int gridCellsY) {
+		this.stage = stage;
+		document = new LevelDocument(gridCellsX, gridCellsY);
+		validator = new LevelValidator(document.getGridCellsX(), document.getGridCellsY(),
+				report -> Platform.runLater(() -> showReport(report)));
+
+		Pane board = new Pane();
+		Rectangle background = new Rectangle(0, 0, gridCellsX * CELL, gridCellsY * CELL);
+		background.setFill(Color.LIGHTBLUE);
+		board.getChildren().addAll(background, cellLayer, lightLayer, pathLayer);
+		board.setPrefSize(gridCellsX * CELL, gridCellsY * CELL);
+		board.setOnMouseClicked(this::handleClick);
+
+		BorderPane root = new BorderPane();
+		root.setCenter(new ScrollPane(board));
+		root.setLeft(createToolbar());
+		statusLabel.setWrapText(true);
+		statusLabel.setPadding(new Insets(8));
+		statusLabel.setFont(Font.font("Arial", 14));
+		root.setBottom(statusLabel);
+
+		stage.setScene(new Scene(root, 1000, 900));
+		stage.setTitle("Traffic Control Simulator Level Editor");
+		stage.setOnCloseRequest(e -> validator.shutdown());
+		stage.show();
+	}
+
+	/**
+	 * Creates the column of tool and action buttons on the left.
+	 *
+	 * @return the toolbar.
+	 */
+	private VBox createToolbar() {
+		VBox toolbar = new VBox(6);
+		toolbar.setPadding(new Insets(10));
+		toolbar.setPrefWidth(190);
+		for (int i = 0; i < TOOLS.length; i++) {
+			ToggleButton toolButton = new ToggleButton(TOOLS[i]);
+			toolButton.setUserData(i);
+			toolButton.setToggleGroup(toolGroup);
+			toolButton.setPrefWidth(170);
+			toolButton.setSelected(i == 0);
+			toolbar.getChildren().add(toolButton);
+		}
+
+		rotationButton.setOnAction(e -> {
+			rotation = (rotation + 90) % 360;
+			updateToolbar();
+		});
+		buildingButton.setOnAction(e -> {
+			buildingType = (buildingType + 1) % 3;
+			buildingColor = (buildingColor + 1) % 4;
+			updateToolbar();
+		});
+		Button newPathButton = new Button("New path");
+		newPathButton.setOnAction(e -> {
+			currentPath = document.getPaths().isEmpty() ? 0
+					: document.getPaths().keySet().stream().mapToInt(Integer::intValue).max().getAsInt() + 1;
+			updateToolbar();
+		});
+		Button deletePathButton = new Button("Delete path");
+		deletePathButton.setOnAction(e -> {
+			int path = currentPath;
+			applyEdit(level -> level.removePath(path));
+		});
+		Button exportButton = new Button("Export level");
+		exportButton.setOnAction(e -> exportLevel());
+
+		for (Button button : new Button[] { rotationButton, buildingButton, newPathButton, deletePathButton,
+				exportButton }) {
+			button.setPrefWidth(170);
+		}
+		toolbar.getChildren().addAll(rotationButton, buildingButton, pathLabel, newPathButton, deletePathButton,
+				exportButton);
+		updateToolbar();
+		return toolbar;
+	}
+
+	/**
+	 * Refreshes the texts of the buttons that show the current settings.
+	 */
+	private void updateToolbar() {
+		rotationButton.setText("Rotation: " + rotation + "°");
+		buildingButton.setText("Building type: " + buildingType);
+		pathLabel.setText("Editing path " + currentPath);
+	}
+
+	/**
+	 * Applies the selected tool where the board was clicked.
+	 *
+	 * @param event The mouse click on the board.
+	 */
+	private void handleClick(MouseEvent event) {
+		int cellX = (int) (event.getX() / CELL);
+		int cellY = (int) (event.getY() / CELL);
+		double x = Math.round(event.getX());
+		double y = Math.round(event.getY());
+		int tool = toolGroup.getSelectedToggle() == null ? -1 : (Integer) toolGroup.getSelectedToggle().getUserData();
+		int r = rotation;
+		int type = buildingType;
+		int color = buildingColor;
+		int path = currentPath;
+
+		switch (tool) {
+		case 0:
+		case 1:
+		case 2:
+		case 3:
+			applyEdit(level -> level.setRoad(cellX, cellY, tool, r));
+			break;
+		case 4:
+			applyEdit(level -> level.setBuilding(cellX, cellY, type, r, color));
+			break;
+		case 5:
+			if (lightStart == null) {
+				lightStart = new double[] { x, y };
+				statusLabel.setText("Click the other end of the traffic light's stop line.");
+			} else {
+				double[] start = lightStart;
+				lightStart = null;
+				applyEdit(level -> level.addLight(start[0], start[1], x, y));
+			}
+			break;
+		case 6:
+			applyEdit(level -> level.addPathPoint(path, x, y));
+			break;
+		case 7:
+			applyEdit(level -> level.clearCell(cellX, cellY));
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Applies an edit to the editor's document, redraws what it changed, and
+	 * hands the same edit to the background validator.
+	 *
+	 * @param edit The change to make.
+	 */
+	private void applyEdit(Consumer<LevelDocument> edit) {
+		edit.accept(document);
+		validator.submit(edit);
+		for (int cell : document.takeDirtyCells()) {
+			redrawCell(cell);
+		}
+		for (int light : document.takeDirtyLights()) {
+			redrawLight(light);
+		}
+		for (int path : document.takeDirtyPaths()) {
+			redrawPath(path);
+		}
+	}
+
+	/**
+	 * Replaces the drawing of one cell with its current road tile and building.
+	 */
+	private void redrawCell(int cell) {
+		Pane old = cellViews.remove(cell);
+		if (old != null) {
+			cellLayer.getChildren().remove(old);
+		}
+		double x = (cell % document.getGridCellsX()) * CELL;
+		double y = (cell / document.getGridCellsX()) * CELL;
+		Pane view = new Pane();
+		int[] road = document.getRoads().get(cell);
+		if (road != null) {
+			new RoadTile(road[0], road[1], x, y).draw(view);
+		}
+		int[] building = document.getBuildings().get(cell);
+		if (building != null) {
+			new Building(building[0], building[1], building[2], x, y).draw(view);
+		}
+		if (!view.getChildren().isEmpty()) {
+			cellViews.put(cell, view);
+			cellLayer.getChildren().add(view);
+		}
+	}
+
+	/**
+	 * Replaces the drawing of one traffic light. A light can be removed again by
+	 * clicking it with the erase tool.
+	 */
+	private void redrawLight(int id) {
+		Pane old = lightViews.remove(id);
+		if (old != null) {
+			lightLayer.getChildren().remove(old);
+		}
+		double[] line = document.getLights().get(id);
+		if (line == null) {
+			return;
+		}
+		Pane view = new Pane();
+		new TrafficLight(line[0], line[1], line[2], line[3]).draw(view);
+		view.setOnMouseClicked(e -> {
+			if (toolGroup.getSelectedToggle() != null && (Integer) toolGroup.getSelectedToggle().getUserData() == 7) {
+				applyEdit(level -> level.removeLight(id));
+				e.consume();
+			}
+		});
+		lightViews.put(id, view);
+		lightLayer.getChildren().add(view);
+	}
+
+	/**
+	 * Replaces the drawing of one path with a dashed line through its points.
+	 */
+	private void redrawPath(int index) {
+		Polyline old = pathViews.remove(index);
+		if (old != null) {
+			pathLayer.getChildren().remove(old);
+		}
+		List<double[]> points = document.getPaths().get(index);
+		if (points == null) {
+			return;
+		}
+		Polyline line = new Polyline();
+		for (double[] point : points) {
+			line.getPoints().addAll(point[0], point[1]);
+		}
+		line.setStroke(Color.hsb(index * 67 % 360, 0.8, 0.8));
+		line.setStrokeWidth(2);
+		line.getStrokeDashArray().addAll(6.0, 4.0);
+		line.setMouseTransparent(true);
+		pathViews.put(index, line);
+		pathLayer.getChildren().add(line);
+	}
+
+	/**
+	 * Shows the latest report of the background validator.
+	 *
+	 * @param report The problems found and the preview summary.
+	 */
+	private void showReport(LevelValidator.Report report) {
+		if (report.getProblems().isEmpty()) {
+			statusLabel.setText(report.getPreview() != null ? report.getPreview() : "No problems found.");
+			return;
+		}
+		StringBuilder sb = new StringBuilder(report.getProblems().size() + " problem(s):");
+		List<String> problems = report.getProblems();
+		for (int i = 0; i < Math.min(5, problems.size()); i++) {
+			sb.append("\n").append(problems.get(i));
+		}
+		if (problems.size() > 5) {
+			sb.append("\n...");
+		}
+		statusLabel.setText(sb.toString());
+	}
+
+	/**
+	 * Asks for a file name and writes the level in the format read by
+	 * LevelLoader.
+	 */
+	private void exportLevel() {
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setTitle("Export Level File");
+		fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files", "*.txt"));
+		fileChooser.setInitialFileName("level.txt");
+		File file = fileChooser.showSaveDialog(stage);
+		if (file != null) {
+			try {
+				Files.writeString(file.toPath(), document.toText());
+				statusLabel.setText("Exported to " + file.getPath());
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,562 @@
+package application;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Command line tool that writes random but valid level files of any size, for
+ * scaling and stress tests. The same seed always gives the same level.
+ *
+ * <ul>
+ * <li>Roads run along randomly spaced rows and columns. Some of them are cut
+ * short at a crossing road, which gives three-way intersections and, where two
+ * cut roads meet, curves. Every road tile matches its neighbours.</li>
+ * <li>The blocks between the roads are filled with buildings of every type,
+ * leaving some cells empty.</li>
+ * <li>Paths enter at the edge of the map, drive on the right-hand lane, turn at
+ * some intersections with ArcTo curves and leave at another edge. Paths that
+ * start at the same road end take turns entering the map.</li>
+ * <li>Every intersection approach used by a path gets a traffic light, and
+ * optionally every intersection a signal plan and every path a demand.</li>
+ * </ul>
+ *
+ * <pre>
+ * java application.LevelGenerator --width 200 --height 200 --paths 50 --seed 7 --out levels/generated.txt
+ * </pre>
+ *
+ * Options: --width, --height (cells, default 15), --paths (default 4), --seed,
+ * --out (standard output if missing), --plans greenSeconds (0 for none),
+ * --demand carsPerMinute (0 for none), --win and --crashes.
+ */
+public class LevelGenerator {
+	private static final double CELL_SIZE = LevelDocument.CELL_SIZE;
+	private static final double LANE = CELL_SIZE / 4; // Distance of a lane from the middle of its road
+	private static final double STOP_GAP = 12; // Stop lines sit this far before the intersection, out of reach of crossing cars
+	private static final int MIN_GAP = 3; // Fewest cells between two parallel roads
+	private static final int MAX_GAP = 6;
+	private static final double CUT_SHARE = 0.6; // Share of roads that are tried to be cut short
+	private static final double BUILDING_DENSITY = 0.75; // Share of free cells that get a building
+	private static final double TURN_CHANCE = 0.3; // Chance that a path turns at an intersection where it may go on
+	private static final int MAX_TURNS = 3; // Turns a path makes by choice; forced turns at road ends come on top
+	private static final int NORTH = 0;
+	private static final int SOUTH = 2;
+	private static final int[] DX = { 0, 1, 0, -1 }; // Cell steps of the headings north, east, south, west
+	private static final int[] DY = { -1, 0, 1, 0 };
+	private static final int ROWS = 0; // Axis of the roads running east to west
+	private static final int COLUMNS = 1; // Axis of the roads running north to south
+
+	private final int width;
+	private final int height;
+	private final SimRandom random;
+	private final int[][] positions = new int[2][]; // Cell row of every row road, cell column of every column road
+	private final int[][] starts = new int[2][]; // First cell of every road along its axis
+	private final int[][] ends = new int[2][]; // Last cell of every road along its axis
+	private final int[][] lineAt = new int[2][]; // Road of every cell row / column, or -1
+	private byte[] exits; // Per cell, bit h set if the road leaves the cell with heading h
+	private final List<String> pathLines = new ArrayList<>();
+	private final Map<Integer, Integer> lights = new LinkedHashMap<>(); // Approach (cell * 4 + heading) to light number
+	private int pathCount = 0;
+
+	/**
+	 * Creates a generator for one level.
+	 *
+	 * @param width  Number of cells across.
+	 * @param height Number of cells down.
+	 * @param seed   The random seed.
+	 */
+	public LevelGenerator(int width, int height, long seed) {
+		if (width < 3 || height < 3) {
+			throw new IllegalArgumentException("Levels need at least 3 by 3 cells");
+		}
+		this.width = width;
+		this.height = height;
+		this.random = new SimRandom(seed);
+	}
+
+	/**
+	 * Generates the level and writes it in the format read by LevelLoader.
+	 *
+	 * @param out          Receives the level file.
+	 * @param paths        Number of paths.
+	 * @param planGreen    Green time of the generated signal plans in seconds, or
+	 *                     0 to leave the lights to the player.
+	 * @param carsPerMinute Demand of every path, or 0 for the default spawning.
+	 * @param winCount     Cars to arrive to win.
+	 * @param maxCrashes   Crashes that lose the game.
+	 * @throws IOException if the output cannot be written.
+	 */
+	public void generate(Writer out, int paths, double planGreen, double carsPerMinute, int winCount, int maxCrashes)
+			throws IOException {
+		placeRoads(ROWS, height);
+		placeRoads(COLUMNS, width);
+		cutRoads();
+		connectTiles();
+		for (int path = 0; path < paths; path++) {
+			addPath();
+		}
+
+		out.write(String.format("Metadata 800 800 %d %d %d %d %d%n", width, height, pathCount, winCount, maxCrashes));
+		writeRoads(out);
+		writeBuildings(out);
+		List<Integer> approaches = new ArrayList<>(lights.keySet());
+		for (int approach : approaches) {
+			writeLight(out, approach);
+		}
+		for (String line : pathLines) {
+			out.write(line);
+		}
+		if (planGreen > 0) {
+			writePlans(out, approaches, planGreen);
+		}
+		if (carsPerMinute > 0) {
+			for (int path = 0; path < pathCount; path++) {
+				out.write(String.format("Demand %d %s%n", path, number(carsPerMinute)));
+			}
+		}
+	}
+
+	/**
+	 * Places the roads of one axis at random gaps, each one across the whole map.
+	 *
+	 * @param axis   ROWS or COLUMNS.
+	 * @param across Number of cells the roads are spread over.
+	 */
+	private void placeRoads(int axis, int across) {
+		List<Integer> found = new ArrayList<>();
+		for (int position = 1 + random.nextInt(MIN_GAP); position < across - 1; position += MIN_GAP + 1
+				+ random.nextInt(MAX_GAP - MIN_GAP + 1)) {
+			found.add(position);
+		}
+		if (found.isEmpty()) {
+			found.add(across / 2); // Small maps still get one road
+		}
+		int along = axis == ROWS ? width : height;
+		positions[axis] = found.stream().mapToInt(Integer::intValue).toArray();
+		starts[axis] = new int[found.size()];
+		ends[axis] = new int[found.size()];
+		lineAt[axis] = new int[across];
+		java.util.Arrays.fill(lineAt[axis], -1);
+		for (int line = 0; line < found.size(); line++) {
+			ends[axis][line] = along - 1;
+			lineAt[axis][found.get(line)] = line;
+		}
+	}
+
+	/**
+	 * Cuts some roads short at a crossing road. Half of the time the crossing road
+	 * is cut at the same place as well, which turns the crossing into a curve.
+	 */
+	private void cutRoads() {
+		int attempts = (int) ((positions[ROWS].length + positions[COLUMNS].length) * CUT_SHARE);
+		for (int attempt = 0; attempt < attempts; attempt++) {
+			int axis = random.nextInt(2);
+			int line = random.nextInt(positions[axis].length);
+			int[] crossing = positions[1 - axis];
+			int at = crossing[random.nextInt(crossing.length)];
+			boolean atStart = random.nextBoolean();
+			if (cut(axis, line, at, atStart) && random.nextBoolean()) {
+				int other = lineAt[1 - axis][at];
+				int position = positions[axis][line];
+				// The crossing road keeps the side the cut road does not come from
+				cut(1 - axis, other, position, !(position > starts[1 - axis][other]
+						&& position < ends[1 - axis][other]) || random.nextBoolean());
+			}
+		}
+	}
+
+	/**
+	 * Moves one end of a road to a crossing road, if every road ending on the part
+	 * that goes away can do without it.
+	 *
+	 * @param axis    Axis of the road.
+	 * @param line    The road.
+	 * @param at      Cell along the road where it is to end now.
+	 * @param atStart true to move the start, false to move the end.
+	 * @return true if the road was cut.
+	 */
+	private boolean cut(int axis, int line, int at, boolean atStart) {
+		int start = atStart ? at : starts[axis][line];
+		int end = atStart ? ends[axis][line] : at;
+		if (end - start < 2 || !covers(1 - axis, lineAt[1 - axis][at], positions[axis][line])) {
+			return false; // Too short, or nothing to end on
+		}
+		int from = atStart ? starts[axis][line] : at + 1;
+		int to = atStart ? at - 1 : ends[axis][line];
+		for (int cell = from; cell <= to; cell++) {
+			int crossing = lineAt[1 - axis][cell];
+			if (crossing >= 0 && (starts[1 - axis][crossing] == positions[axis][line]
+					|| ends[1 - axis][crossing] == positions[axis][line])) {
+				return false; // A crossing road ends on the part that would go away
+			}
+		}
+		starts[axis][line] = start;
+		ends[axis][line] = end;
+		return true;
+	}
+
+	private boolean covers(int axis, int line, int cell) {
+		return line >= 0 && starts[axis][line] <= cell && ends[axis][line] >= cell;
+	}
+
+	/**
+	 * Works out in which directions the road leaves every road cell. A road that
+	 * reaches the edge of the map leaves it there.
+	 */
+	private void connectTiles() {
+		exits = new byte[width * height];
+		for (int line = 0; line < positions[ROWS].length; line++) {
+			int y = positions[ROWS][line];
+			for (int x = starts[ROWS][line]; x <= ends[ROWS][line]; x++) {
+				if (x < ends[ROWS][line] || x == width - 1) {
+					exits[y * width + x] |= 1 << 1; // East
+				}
+				if (x > starts[ROWS][line] || x == 0) {
+					exits[y * width + x] |= 1 << 3; // West
+				}
+			}
+		}
+		for (int line = 0; line < positions[COLUMNS].length; line++) {
+			int x = positions[COLUMNS][line];
+			for (int y = starts[COLUMNS][line]; y <= ends[COLUMNS][line]; y++) {
+				if (y < ends[COLUMNS][line] || y == height - 1) {
+					exits[y * width + x] |= 1 << SOUTH;
+				}
+				if (y > starts[COLUMNS][line] || y == 0) {
+					exits[y * width + x] |= 1 << NORTH;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a path from a random road end at the edge of the map. Paths that run in
+	 * a circle for too long are dropped and drawn again.
+	 */
+	private void addPath() {
+		List<int[]> entries = new ArrayList<>(); // {x, y, heading}
+		for (int line = 0; line < positions[ROWS].length; line++) {
+			if (starts[ROWS][line] == 0) {
+				entries.add(new int[] { 0, positions[ROWS][line], 1 });
+			}
+			if (ends[ROWS][line] == width - 1) {
+				entries.add(new int[] { width - 1, positions[ROWS][line], 3 });
+			}
+		}
+		for (int line = 0; line < positions[COLUMNS].length; line++) {
+			if (starts[COLUMNS][line] == 0) {
+				entries.add(new int[] { positions[COLUMNS][line], 0, SOUTH });
+			}
+			if (ends[COLUMNS][line] == height - 1) {
+				entries.add(new int[] { positions[COLUMNS][line], height - 1, NORTH });
+			}
+		}
+		for (int attempt = 0; attempt < 10 && !entries.isEmpty(); attempt++) {
+			int[] entry = entries.get(random.nextInt(entries.size()));
+			if (tracePath(entry[0], entry[1], entry[2])) {
+				return;
+			}
+		}
+		System.err.println("Could not find a route for path " + pathCount);
+	}
+
+	/**
+	 * Follows the roads from an entry to the edge of the map and records the path
+	 * and the intersection approaches it uses.
+	 *
+	 * @param x       Column of the entry cell.
+	 * @param y       Row of the entry cell.
+	 * @param heading Heading into the map.
+	 * @return false if the route did not leave the map in time.
+	 */
+	private boolean tracePath(int x, int y, int heading) {
+		List<String> lines = new ArrayList<>();
+		List<Integer> approaches = new ArrayList<>();
+		double[] point = edgePoint(x, y, heading, false);
+		lines.add(pathLine("MoveTo", point));
+		int turns = 0;
+		for (int steps = 0; steps < 4 * (width + height) * (MAX_TURNS + 2); steps++) {
+			int cell = y * width + x;
+			int cellExits = exits[cell];
+			if (Integer.bitCount(cellExits) >= 3) {
+				approaches.add(cell * 4 + heading);
+			}
+			int right = (heading + 1) % 4;
+			int left = (heading + 3) % 4;
+			boolean straight = (cellExits & (1 << heading)) != 0;
+			boolean canRight = (cellExits & (1 << right)) != 0;
+			boolean canLeft = (cellExits & (1 << left)) != 0;
+			int next = heading;
+			if ((!straight || (turns < MAX_TURNS && random.nextDouble() < TURN_CHANCE)) && (canRight || canLeft)) {
+				next = canRight && (!canLeft || random.nextBoolean()) ? right : left;
+				if (straight) {
+					turns++;
+				}
+			}
+			if (next != heading) {
+				lines.add(pathLine("LineTo", edgePoint(x, y, heading, false)));
+				double[] center = { (x + 0.5) * CELL_SIZE - DX[heading] * 2 * LANE + DX[next] * 2 * LANE,
+						(y + 0.5) * CELL_SIZE - DY[heading] * 2 * LANE + DY[next] * 2 * LANE };
+				double[] end = edgePoint(x, y, next, true);
+				lines.add(pathLine("ArcTo", center[0], center[1], end[0], end[1]));
+				heading = next;
+			}
+			x += DX[heading];
+			y += DY[heading];
+			if (x < 0 || y < 0 || x >= width || y >= height) {
+				lines.add(pathLine("LineTo", edgePoint(x - DX[heading], y - DY[heading], heading, true)));
+				for (String line : lines) {
+					pathLines.add(String.format("Path %d %s%n", pathCount, line));
+				}
+				for (int approach : approaches) {
+					lights.putIfAbsent(approach, lights.size());
+				}
+				pathCount++;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the point where the right-hand lane of a heading crosses the edge of
+	 * a cell.
+	 *
+	 * @param x       Column of the cell.
+	 * @param y       Row of the cell.
+	 * @param heading The heading of the lane.
+	 * @param leaving true for the edge the lane leaves the cell by, false for the
+	 *                one it enters by.
+	 * @return the point in pixels.
+	 */
+	private static double[] edgePoint(int x, int y, int heading, boolean leaving) {
+		double side = leaving ? 2 * LANE : -2 * LANE;
+		return new double[] { (x + 0.5) * CELL_SIZE + DX[heading] * side - DY[heading] * LANE,
+				(y + 0.5) * CELL_SIZE + DY[heading] * side + DX[heading] * LANE };
+	}
+
+	private static String pathLine(String command, double... values) {
+		StringBuilder sb = new StringBuilder(command);
+		for (double value : values) {
+			sb.append(' ').append(number(value));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes a road tile for every road cell, chosen by the directions the road
+	 * leaves the cell in.
+	 *
+	 * @param out The level file.
+	 * @throws IOException if the output cannot be written.
+	 */
+	private void writeRoads(Writer out) throws IOException {
+		for (int cell = 0; cell < exits.length; cell++) {
+			int mask = exits[cell];
+			if (mask == 0) {
+				continue;
+			}
+			int type;
+			int rotation;
+			boolean north = (mask & 1) != 0;
+			boolean east = (mask & 2) != 0;
+			boolean south = (mask & 4) != 0;
+			boolean west = (mask & 8) != 0;
+			switch (Integer.bitCount(mask)) {
+			case 4:
+				type = 2;
+				rotation = 0;
+				break;
+			case 3: // Three-way intersections are turned by their closed side
+				type = 3;
+				rotation = !north ? 0 : !east ? 90 : !south ? 180 : 270;
+				break;
+			case 2:
+				if (east && west || north && south) {
+					type = 0;
+					rotation = east ? 0 : 90;
+				} else { // Curves are turned by the corner they bend around
+					type = 1;
+					rotation = west && south ? 0 : east && south ? 90 : east ? 180 : 270;
+				}
+				break;
+			default:
+				type = 0;
+				rotation = east || west ? 0 : 90;
+				break;
+			}
+			out.write(String.format("RoadTile %d %d %d %d%n", type, rotation, cell % width, cell / width));
+		}
+	}
+
+	/**
+	 * Fills the blocks between the roads with buildings. Large buildings are
+	 * placed where their whole footprint is free, small ones elsewhere.
+	 *
+	 * @param out The level file.
+	 * @throws IOException if the output cannot be written.
+	 */
+	private void writeBuildings(Writer out) throws IOException {
+		BitSet taken = new BitSet(width * height);
+		for (int cell = 0; cell < exits.length; cell++) {
+			if (exits[cell] != 0) {
+				taken.set(cell);
+			}
+		}
+		for (int cell = taken.nextClearBit(0); cell < width * height; cell = taken.nextClearBit(cell + 1)) {
+			if (random.nextDouble() >= BUILDING_DENSITY) {
+				continue; // Left empty
+			}
+			int x = cell % width;
+			int y = cell / width;
+			int type = random.nextInt(3);
+			int rotation = 90 * random.nextInt(4);
+			int across = type == 2 ? 1 : (rotation == 90 || rotation == 270 ? 3 : 2); // As in LevelDocument
+			int down = type == 2 ? 1 : (rotation == 90 || rotation == 270 ? 2 : 3);
+			if (!isFree(taken, x, y, across, down)) {
+				type = 2; // Only room for a small one
+				across = 1;
+				down = 1;
+			}
+			for (int dy = 0; dy < down; dy++) {
+				taken.set((y + dy) * width + x, (y + dy) * width + x + across);
+			}
+			out.write(String.format("Building %d %d %d %d %d%n", type, rotation, random.nextInt(4), x, y));
+		}
+	}
+
+	private boolean isFree(BitSet taken, int x, int y, int across, int down) {
+		if (x + across > width || y + down > height) {
+			return false;
+		}
+		for (int dy = 0; dy < down; dy++) {
+			int first = (y + dy) * width + x;
+			if (taken.nextSetBit(first) >= 0 && taken.nextSetBit(first) < first + across) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the light of one intersection approach: a stop line across the lane,
+	 * a little before the intersection so that cars crossing it are not stopped.
+	 *
+	 * @param out      The level file.
+	 * @param approach The intersection cell times 4 plus the heading of the lane.
+	 * @throws IOException if the output cannot be written.
+	 */
+	private void writeLight(Writer out, int approach) throws IOException {
+		int cell = approach / 4;
+		int heading = approach % 4;
+		double baseX = (cell % width + 0.5) * CELL_SIZE - DX[heading] * (2 * LANE + STOP_GAP);
+		double baseY = (cell / width + 0.5) * CELL_SIZE - DY[heading] * (2 * LANE + STOP_GAP);
+		double reach = 2 * LANE - 4; // From the middle of the road to near its kerb
+		out.write(String.format("TrafficLight %s %s %s %s%n", number(baseX), number(baseY),
+				number(baseX - DY[heading] * reach), number(baseY + DX[heading] * reach)));
+	}
+
+	/**
+	 * Writes one signal plan per intersection, with the north-south lights green
+	 * in one phase and the east-west lights in the other. Offsets are random.
+	 *
+	 * @param out        The level file.
+	 * @param approaches The approaches in light order.
+	 * @param green      Green time in seconds.
+	 * @throws IOException if the output cannot be written.
+	 */
+	private void writePlans(Writer out, List<Integer> approaches, double green) throws IOException {
+		Map<Integer, List<List<Integer>>> groups = new LinkedHashMap<>(); // Cell to its two groups of lights
+		for (int light = 0; light < approaches.size(); light++) {
+			int approach = approaches.get(light);
+			groups.computeIfAbsent(approach / 4, cell -> List.of(new ArrayList<>(), new ArrayList<>()))
+					.get(approach % 2).add(light);
+		}
+		int plan = 0;
+		for (List<List<Integer>> phases : groups.values()) {
+			out.write(String.format("SignalPlan %d %d%n", plan, random.nextInt((int) (2 * green) + 1)));
+			for (List<Integer> phase : phases) {
+				if (!phase.isEmpty()) {
+					StringBuilder sb = new StringBuilder();
+					phase.forEach(light -> sb.append(' ').append(light));
+					out.write(String.format("SignalPhase %d %s 3 2%s%n", plan, number(green), sb));
+				}
+			}
+			plan++;
+		}
+	}
+
+	/**
+	 * Formats a coordinate to two decimals, without a fraction when it is a whole
+	 * number.
+	 */
+	private static String number(double value) {
+		double rounded = Math.round(value * 100) / 100.0;
+		return rounded == Math.rint(rounded) ? String.valueOf((long) rounded) : String.valueOf(rounded);
+	}
+
+	public static void main(String[] args) throws IOException {
+		int width = 15;
+		int height = 15;
+		int paths = 4;
+		long seed = 1;
+		String outFile = null; // Standard output if not given
+		double planGreen = 0;
+		double carsPerMinute = 0;
+		int winCount = 20;
+		int maxCrashes = 5;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "--width":
+				width = Integer.parseInt(args[i + 1]);
+				break;
+			case "--height":
+				height = Integer.parseInt(args[i + 1]);
+				break;
+			case "--paths":
+				paths = Integer.parseInt(args[i + 1]);
+				break;
+			case "--seed":
+				seed = Long.parseLong(args[i + 1]);
+				break;
+			case "--out":
+				outFile = args[i + 1];
+				break;
+			case "--plans":
+				planGreen = Double.parseDouble(args[i + 1]);
+				break;
+			case "--demand":
+				carsPerMinute = Double.parseDouble(args[i + 1]);
+				break;
+			case "--win":
+				winCount = Integer.parseInt(args[i + 1]);
+				break;
+			case "--crashes":
+				maxCrashes = Integer.parseInt(args[i + 1]);
+				break;
+			default:
+				System.err.println("Unknown option: " + args[i]);
+				break;
+			}
+		}
+
+		LevelGenerator generator = new LevelGenerator(width, height, seed);
+		try (Writer out = outFile != null ? Files.newBufferedWriter(Paths.get(outFile), StandardCharsets.UTF_8)
+				: new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+			generator.generate(out, paths, planGreen, carsPerMinute, winCount, maxCrashes);
+		}
+	}
+}
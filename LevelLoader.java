@@ -10,7 +10,13 @@ import java.util.Scanner;
 /**
  * Handles the loading of game levels from external text files. This class
  * parses the text file to create and place game elements like roads, buildings,
- * paths and traffic lights according to specified configurations.
+ * paths and traffic lights according to specified configurations. Optional
+ * "Demand index carsPerMinute" and "DemandPeak index start end carsPerMinute"
+ * lines set the arrival rate of a path and its peaks in simulated seconds.
+ * "SignalPlan plan offset" and "SignalPhase plan green amber allRed light..."
+ * lines declare fixed time plans for the traffic lights, see {@link SignalPlan}.
+ * Besides MoveTo and LineTo, paths take "Path index QuadTo controlX controlY x y"
+ * and "Path index ArcTo centerX centerY x y" curves.
  */
 public class LevelLoader {
 
@@ -18,7 +24,28 @@ public class LevelLoader {
 
 		File file = new File(filePath);
 		Scanner scanner = new Scanner(file);
+		game.setLevelPath(filePath);
+		load(game, scanner);
+	}
+
+	/**
+	 * Loads a level from text held in memory, for example a level that is still
+	 * being edited.
+	 *
+	 * @param game The game instance to populate.
+	 * @param text The contents of a level file.
+	 */
+	public static void loadLevelText(Game game, String text) {
+		load(game, new Scanner(text));
+	}
 
+	/**
+	 * Reads the metadata line and then every element line of a level.
+	 *
+	 * @param game    The game instance to populate.
+	 * @param scanner The scanner reading the level; it is closed afterwards.
+	 */
+	private static void load(Game game, Scanner scanner) {
 		if (scanner.hasNextLine()) {
 			String metadataLine = scanner.nextLine();
 			parseMetadata(game, metadataLine);
@@ -29,8 +56,6 @@ public class LevelLoader {
 			parseLine(game, line);
 		}
 		scanner.close();
-		game.getPaths().forEach((index, path) -> {
-		});
 	}
 
 	/**
@@ -78,7 +103,7 @@ public class LevelLoader {
 					int colorIndex = Integer.parseInt(tokens[3]);
 					double x = Double.parseDouble(tokens[4]) * game.getCellSize();
 					double y = Double.parseDouble(tokens[5]) * game.getCellSize();
-					game.addElement(new Building(typeIndex, rotation, colorIndex, x, y));
+					addElement(game, new Building(typeIndex, rotation, colorIndex, x, y), line);
 
 				} else {
 					System.out.println("Invalid Building line format: " + line);
@@ -90,7 +115,7 @@ public class LevelLoader {
 					int rotation = Integer.parseInt(tokens[2]);
 					double x = Double.parseDouble(tokens[3]) * game.getCellSize();
 					double y = Double.parseDouble(tokens[4]) * game.getCellSize();
-					game.addElement(new RoadTile(typeIndex, rotation, x, y));
+					addElement(game, new RoadTile(typeIndex, rotation, x, y), line);
 
 				} else {
 					System.out.println("Invalid RoadTile line format: " + line);
@@ -102,7 +127,7 @@ public class LevelLoader {
 					double startY = Double.parseDouble(tokens[2]);
 					double endX = Double.parseDouble(tokens[3]);
 					double endY = Double.parseDouble(tokens[4]);
-					game.addElement(new TrafficLight(startX, startY, endX, endY));
+					addElement(game, new TrafficLight(startX, startY, endX, endY), line);
 				} else {
 					System.out.println("Invalid TrafficLight line format: " + line);
 				}
@@ -111,6 +136,53 @@ public class LevelLoader {
 
 				handlePath(game, tokens);
 				break;
+			case "Demand":
+				if (tokens.length >= 3) {
+					// Cars per minute arriving at the start of the path
+					int pathIndex = Integer.parseInt(tokens[1]);
+					double carsPerMinute = Double.parseDouble(tokens[2]);
+					game.getDemand(pathIndex).setBaseRate(carsPerMinute / 60.0);
+				} else {
+					System.out.println("Invalid Demand line format: " + line);
+				}
+				break;
+			case "DemandPeak":
+				if (tokens.length >= 5) {
+					// Window in simulated seconds and its rate in cars per minute
+					int pathIndex = Integer.parseInt(tokens[1]);
+					double start = Double.parseDouble(tokens[2]);
+					double end = Double.parseDouble(tokens[3]);
+					double carsPerMinute = Double.parseDouble(tokens[4]);
+					game.getDemand(pathIndex).addPeak(start, end, carsPerMinute / 60.0);
+				} else {
+					System.out.println("Invalid DemandPeak line format: " + line);
+				}
+				break;
+			case "SignalPlan":
+				if (tokens.length >= 3) {
+					// Offset of the cycle in simulated seconds
+					game.getSignalPlan(Integer.parseInt(tokens[1])).setOffset(Double.parseDouble(tokens[2]));
+				} else {
+					System.out.println("Invalid SignalPlan line format: " + line);
+				}
+				break;
+			case "SignalPhase":
+				if (tokens.length >= 6) {
+					// Stage times in simulated seconds, then the lights that are green together
+					int[] lights = new int[tokens.length - 5];
+					for (int i = 0; i < lights.length; i++) {
+						lights[i] = Integer.parseInt(tokens[i + 5]);
+					}
+					try {
+						game.getSignalPlan(Integer.parseInt(tokens[1])).addPhase(Double.parseDouble(tokens[2]),
+								Double.parseDouble(tokens[3]), Double.parseDouble(tokens[4]), lights);
+					} catch (IllegalArgumentException e) {
+						System.out.println(e.getMessage() + ": " + line);
+					}
+				} else {
+					System.out.println("Invalid SignalPhase line format: " + line);
+				}
+				break;
 			default:
 				System.out.println("Invalid line format: " + line);
 				break;
@@ -120,6 +192,18 @@ public class LevelLoader {
 		}
 	}
 
+	/**
+	 * Adds an element to the game and remembers the line it was loaded from.
+	 *
+	 * @param game    The game instance where the element is added.
+	 * @param element The new element.
+	 * @param line    The line of the level file describing the element.
+	 */
+	private static void addElement(Game game, MapElement element, String line) {
+		element.setLevelLine(line.trim());
+		game.addElement(element);
+	}
+
 	/**
 	 * Handles path commands in the level configuration, creating or modifying path
 	 * elements for the game.
@@ -131,6 +215,11 @@ public class LevelLoader {
 	private static void handlePath(Game game, String[] tokens) {
 		if (tokens.length < 5)
 			return; // Must have at least 5 tokens: Path, index, command, x, y
+		boolean curve = "QuadTo".equals(tokens[2]) || "ArcTo".equals(tokens[2]);
+		if (curve && tokens.length < 7) {
+			System.out.println("Invalid " + tokens[2] + " line format: " + String.join(" ", tokens));
+			return; // Curves also need the end point
+		}
 
 		int pathIndex = Integer.parseInt(tokens[1]);
 		Path path = game.getPath(pathIndex);
@@ -146,6 +235,10 @@ public class LevelLoader {
 			path.moveTo(x, y);
 		} else if ("LineTo".equals(command)) {
 			path.lineTo(x, y);
+		} else if ("QuadTo".equals(command)) {
+			path.quadTo(x, y, Double.parseDouble(tokens[5]), Double.parseDouble(tokens[6])); // x, y is the control point
+		} else if ("ArcTo".equals(command)) {
+			path.arcTo(x, y, Double.parseDouble(tokens[5]), Double.parseDouble(tokens[6])); // x, y is the centre
 		}
 	}
 
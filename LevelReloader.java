@@ -0,0 +1,215 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javafx.application.Platform;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Watches the level file of a running game and applies every saved change
+ * without restarting. The new file is parsed into a scratch game and compared
+ * with the live one: only the tiles, buildings and lights whose lines changed
+ * are removed or added, and only changed paths are replaced. Cars on paths that
+ * did not change keep driving. The elements are then put back into the order
+ * of the file, as signal plans and snapshots refer to lights by their place.
+ */
+public class LevelReloader {
+	private static final long SETTLE_MILLIS = 150; // Editors often write a file in several steps
+	private final Game game;
+	private final GameUI gameUI; // May be null when the game runs without a window
+	private final File file;
+	private final WatchService watcher;
+	private String lastText; // Contents of the level as it was last applied
+
+	/**
+	 * Starts watching the level file of a game.
+	 *
+	 * @param game   The running game.
+	 * @param gameUI The user interface of the game, or null.
+	 * @param file   The level file the game was loaded from.
+	 * @return the reloader, already watching.
+	 * @throws IOException if the directory of the file cannot be watched.
+	 */
+	public static LevelReloader start(Game game, GameUI gameUI, File file) throws IOException {
+		LevelReloader reloader = new LevelReloader(game, gameUI, file);
+		Thread thread = new Thread(reloader::watch, "Level reloader"); // Only once the reloader is complete
+		thread.setDaemon(true);
+		thread.start();
+		return reloader;
+	}
+
+	private LevelReloader(Game game, GameUI gameUI, File file) throws IOException {
+		this.game = game;
+		this.gameUI = gameUI;
+		this.file = file.getAbsoluteFile();
+		this.lastText = new String(Files.readAllBytes(this.file.toPath()), StandardCharsets.UTF_8);
+		watcher = FileSystems.getDefault().newWatchService();
+		this.file.getParentFile().toPath().register(watcher, StandardWatchEventKinds.ENTRY_MODIFY,
+				StandardWatchEventKinds.ENTRY_CREATE);
+	}
+
+	/**
+	 * Stops watching the file.
+	 */
+	public void stop() {
+		try {
+			watcher.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Body of the watcher thread. Waits for changes to the level file and hands
+	 * the new contents to the JavaFX thread, which runs the game.
+	 */
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = watcher.take();
+				boolean changed = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (file.getName().equals(String.valueOf(event.context()))) {
+						changed = true;
+					}
+				}
+				key.reset();
+				if (!changed) {
+					continue;
+				}
+				Thread.sleep(SETTLE_MILLIS);
+				WatchKey settled = watcher.poll(); // Events from the rest of the same save
+				if (settled != null) {
+					settled.pollEvents();
+					settled.reset();
+				}
+				String text;
+				try {
+					text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+				} catch (IOException e) {
+					continue; // The file is being replaced; the next event reads it again
+				}
+				if (gameUI != null) {
+					Platform.runLater(() -> apply(text));
+				} else {
+					apply(text);
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Stopped
+		}
+	}
+
+	/**
+	 * Applies a new version of the level to the running game.
+	 *
+	 * @param text The new contents of the level file.
+	 * @return a short description of what changed.
+	 */
+	public synchronized String apply(String text) {
+		if (text.equals(lastText)) {
+			return "unchanged";
+		}
+		Game parsed = new Game(game.getGridWidth(), game.getGridHeight());
+		LevelLoader.loadLevelText(parsed, text);
+		game.setWinConditions(parsed.winCount, parsed.maxCrashCount);
+
+		// Elements: identical lines stay, everything else is removed or added
+		List<TrafficLight> lightsBefore = game.getTrafficLights();
+		Map<String, List<MapElement>> live = new HashMap<>();
+		for (MapElement element : game.getElements()) {
+			live.computeIfAbsent(element.getLevelLine(), line -> new ArrayList<>()).add(element);
+		}
+		List<MapElement> added = new ArrayList<>();
+		List<MapElement> order = new ArrayList<>(); // Live elements in the order of the new file
+		for (MapElement element : parsed.getElements()) {
+			List<MapElement> same = live.get(element.getLevelLine());
+			if (same != null && !same.isEmpty()) {
+				order.add(same.remove(same.size() - 1));
+			} else {
+				added.add(element);
+				order.add(element);
+			}
+		}
+		int removedCount = 0;
+		for (List<MapElement> stale : live.values()) {
+			for (MapElement element : stale) {
+				game.removeElement(element);
+				if (gameUI != null) {
+					gameUI.removeElement(element);
+				}
+				removedCount++;
+			}
+		}
+		for (MapElement element : added) {
+			game.addElement(element);
+			if (gameUI != null) {
+				gameUI.drawElement(element);
+			}
+		}
+		game.orderElements(order); // Added elements were put at the end, but lights are referred to by their place
+
+		// Paths: only replace the ones whose points changed
+		Set<Integer> indices = new HashSet<>(game.getPaths().keySet());
+		indices.addAll(parsed.getPaths().keySet());
+		int changedPaths = 0;
+		int removedCars = 0;
+		for (int index : indices) {
+			Path oldPath = game.getPath(index);
+			Path newPath = parsed.getPath(index);
+			if (oldPath == null || newPath == null || !oldPath.sameShape(newPath)) {
+				removedCars += game.replacePath(index, newPath);
+				changedPaths++;
+			}
+		}
+		if (!linesStartingWith(text, "Demand").equals(linesStartingWith(lastText, "Demand"))) {
+			game.setDemands(parsed.getDemands());
+		}
+		boolean lightsChanged = !game.getTrafficLights().equals(lightsBefore); // Plans refer to lights by their place
+		if (lightsChanged || !linesStartingWith(text, "Signal").equals(linesStartingWith(lastText, "Signal"))) {
+			game.setSignalPlans(parsed.getSignalPlans());
+		}
+		lastText = text;
+
+		String summary = String.format("%d elements added, %d removed, %d paths changed, %d cars removed",
+				added.size(), removedCount, changedPaths, removedCars);
+		System.out.println("Reloaded " + file.getName() + ": " + summary);
+		return summary;
+	}
+
+	/**
+	 * Collects the lines of a level that start with a keyword, such as the demand
+	 * or signal plan lines, which are compared as a whole.
+	 *
+	 * @param text   The contents of a level file.
+	 * @param prefix The start of the keywords, for example "Demand" for Demand and
+	 *               DemandPeak lines.
+	 * @return the matching lines in file order.
+	 */
+	private static List<String> linesStartingWith(String text, String prefix) {
+		List<String> lines = new ArrayList<>();
+		for (String line : text.split("\\R")) {
+			if (line.startsWith(prefix)) {
+				lines.add(line.trim());
+			}
+		}
+		return lines;
+	}
+}
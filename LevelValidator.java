@@ -0,0 +1,347 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Checks a level while it is being edited, on a background thread. The
+ * validator keeps its own copy of the level and receives every edit through a
+ * queue, so the editor never waits for it. After each batch of edits only the
+ * affected cells, paths and lights are checked again, using indices of which
+ * paths, lights and buildings touch each cell. When the level has no problems a
+ * short headless simulation is run as a preview.
+ */
+public class LevelValidator {
+	public static final double PREVIEW_SECONDS = 60; // Simulated length of the preview run
+	private static final double LIGHT_REACH = 20; // Distance within which cars react to a light
+	private final LevelDocument level;
+	private final BlockingQueue<Consumer<LevelDocument>> edits = new LinkedBlockingQueue<>();
+	private final Consumer<Report> listener;
+	private final Thread worker;
+	private Map<Integer, Set<Integer>> cellPaths = new HashMap<>(); // Cell to the paths crossing it
+	private Map<Integer, Set<Integer>> pathCells = new HashMap<>(); // Path to the cells it crosses
+	private Map<Integer, Set<Integer>> cellBuildings = new HashMap<>(); // Cell to the buildings covering it
+	private Map<Integer, List<Integer>> buildingCells = new HashMap<>(); // Building to the cells it covers
+	private Map<Integer, Set<Integer>> cellLights = new HashMap<>(); // Cell to the lights centred in it
+	private Map<Integer, Integer> lightCells = new HashMap<>(); // Light to the cell of its centre
+	private Map<String, String> problems = new TreeMap<>(); // Problem key to its description
+
+	/**
+	 * The outcome of checking the level after a batch of edits.
+	 */
+	public static class Report {
+		private final List<String> problems;
+		private final String preview;
+
+		private Report(List<String> problems, String preview) {
+			this.problems = problems;
+			this.preview = preview;
+		}
+
+		public List<String> getProblems() {
+			return problems;
+		}
+
+		/**
+		 * Returns the summary of the preview run.
+		 *
+		 * @return the summary, or null if the level had problems or newer edits were
+		 *         waiting.
+		 */
+		public String getPreview() {
+			return preview;
+		}
+	}
+
+	/**
+	 * Constructs a validator and starts its worker thread.
+	 *
+	 * @param gridCellsX Number of cells across.
+	 * @param gridCellsY Number of cells down.
+	 * @param listener   Receives a report after every batch of edits. It is called
+	 *                   on the worker thread.
+	 */
+	public LevelValidator(int gridCellsX, int gridCellsY, Consumer<Report> listener) {
+		this.level = new LevelDocument(gridCellsX, gridCellsY);
+		this.listener = listener;
+		this.worker = new Thread(this::run, "level-validator");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Queues an edit. The same edit must also be applied to the editor's own
+	 * document so both stay identical.
+	 *
+	 * @param edit The change to make to the level.
+	 */
+	public void submit(Consumer<LevelDocument> edit) {
+		edits.add(edit);
+	}
+
+	/**
+	 * Stops the worker thread.
+	 */
+	public void shutdown() {
+		worker.interrupt();
+	}
+
+	/**
+	 * Worker loop: waits for an edit, applies every edit that has queued up
+	 * meanwhile, checks what they touched and reports.
+	 */
+	private void run() {
+		try {
+			while (true) {
+				edits.take().accept(level);
+				Consumer<LevelDocument> edit;
+				while ((edit = edits.poll()) != null) {
+					edit.accept(level);
+				}
+				revalidate();
+				List<String> found = new ArrayList<>(problems.values());
+				listener.accept(new Report(found, found.isEmpty() ? preview() : null));
+			}
+		} catch (InterruptedException e) {
+			// The editor was closed
+		}
+	}
+
+	/**
+	 * Checks again everything the latest edits may have affected.
+	 */
+	private void revalidate() {
+		Set<Integer> pathsToCheck = new HashSet<>();
+		Set<Integer> lightsToCheck = new HashSet<>();
+		Set<Integer> buildingsToCheck = new HashSet<>();
+
+		for (int path : level.takeDirtyPaths()) {
+			Set<Integer> oldCells = pathCells.getOrDefault(path, Set.of());
+			Set<Integer> newCells = cellsOf(level.getPaths().get(path));
+			for (int cell : oldCells) {
+				cellPaths.get(cell).remove(path);
+				lightsToCheck.addAll(lightsAround(cell));
+			}
+			for (int cell : newCells) {
+				cellPaths.computeIfAbsent(cell, key -> new HashSet<>()).add(path);
+				lightsToCheck.addAll(lightsAround(cell));
+			}
+			pathCells.put(path, newCells);
+			pathsToCheck.add(path);
+		}
+
+		for (int cell : level.takeDirtyCells()) {
+			pathsToCheck.addAll(cellPaths.getOrDefault(cell, Set.of())); // The road under them changed
+			buildingsToCheck.addAll(cellBuildings.getOrDefault(cell, Set.of()));
+			for (int covered : buildingCells.getOrDefault(cell, List.of())) {
+				cellBuildings.get(covered).remove(cell);
+				buildingsToCheck.addAll(cellBuildings.get(covered)); // They may no longer overlap
+			}
+			List<Integer> covered = level.buildingCells(cell);
+			for (int coveredCell : covered) {
+				cellBuildings.computeIfAbsent(coveredCell, key -> new HashSet<>()).add(cell);
+				buildingsToCheck.addAll(cellBuildings.get(coveredCell));
+			}
+			buildingCells.put(cell, covered);
+			buildingsToCheck.add(cell);
+		}
+
+		for (int light : level.takeDirtyLights()) {
+			Integer oldCell = lightCells.remove(light);
+			if (oldCell != null) {
+				cellLights.get(oldCell).remove(light);
+			}
+			double[] line = level.getLights().get(light);
+			if (line != null) {
+				int cell = cellAt((line[0] + line[2]) / 2, (line[1] + line[3]) / 2);
+				lightCells.put(light, cell);
+				cellLights.computeIfAbsent(cell, key -> new HashSet<>()).add(light);
+			}
+			lightsToCheck.add(light);
+		}
+
+		pathsToCheck.forEach(this::checkPath);
+		lightsToCheck.forEach(this::checkLight);
+		buildingsToCheck.forEach(this::checkBuilding);
+	}
+
+	/**
+	 * Reports a path if any part of it inside the grid runs off the road.
+	 */
+	private void checkPath(int path) {
+		String key = "path:" + path;
+		problems.remove(key);
+		if (!level.getPaths().containsKey(path)) {
+			return;
+		}
+		for (int cell : pathCells.get(path)) {
+			if (!level.getRoads().containsKey(cell)) {
+				problems.put(key, String.format("Path %d leaves the road at cell (%d, %d).", path,
+						cell % level.getGridCellsX(), cell / level.getGridCellsX()));
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Reports a traffic light that no car would ever react to, because no path
+	 * passes close enough to its centre.
+	 */
+	private void checkLight(int light) {
+		String key = "light:" + light;
+		problems.remove(key);
+		double[] line = level.getLights().get(light);
+		if (line == null) {
+			return;
+		}
+		double centerX = (line[0] + line[2]) / 2;
+		double centerY = (line[1] + line[3]) / 2;
+		int cell = lightCells.get(light);
+		for (int neighbour : neighbourhood(cell)) {
+			for (int path : cellPaths.getOrDefault(neighbour, Set.of())) {
+				if (distanceToPath(level.getPaths().get(path), centerX, centerY) < LIGHT_REACH) {
+					return;
+				}
+			}
+		}
+		problems.put(key, String.format("Traffic light at (%.0f, %.0f) is not on any path.", centerX, centerY));
+	}
+
+	/**
+	 * Reports a building that shares a cell with another building or a road.
+	 */
+	private void checkBuilding(int anchor) {
+		String key = "building:" + anchor;
+		problems.remove(key);
+		for (int cell : buildingCells.getOrDefault(anchor, List.of())) {
+			boolean shared = cellBuildings.get(cell).size() > 1;
+			if (shared || level.getRoads().containsKey(cell)) {
+				problems.put(key,
+						String.format("Building at cell (%d, %d) overlaps %s.", anchor % level.getGridCellsX(),
+								anchor / level.getGridCellsX(), shared ? "another building" : "a road"));
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Runs the level headless for a short time. The run is abandoned as soon as
+	 * newer edits are waiting, since its result would be out of date.
+	 *
+	 * @return a one line summary, or null if the run was abandoned.
+	 */
+	private String preview() {
+		if (level.getPaths().isEmpty()) {
+			return "Add a path to preview the traffic.";
+		}
+		Game game = new Game(level.getGridCellsX(), level.getGridCellsY());
+		LevelLoader.loadLevelText(game, level.toText());
+		game.setSeed(1);
+		game.setWinConditions(Integer.MAX_VALUE, Integer.MAX_VALUE);
+		game.createTraffic();
+		long ticks = Math.round(PREVIEW_SECONDS / Game.TICK_SECONDS);
+		for (long i = 0; i < ticks; i++) {
+			if (i % 60 == 0 && !edits.isEmpty()) {
+				return null;
+			}
+			game.tick();
+		}
+		return String.format("Preview (%.0f s): %d arrived, %d crashes, %d waiting to enter.", PREVIEW_SECONDS,
+				game.getCarsArrived(), game.getCrashes(), game.getBacklogLength());
+	}
+
+	/**
+	 * Collects the cells a path passes through by sampling it every quarter cell.
+	 * Points outside the grid, where cars enter and leave the map, are skipped.
+	 */
+	private Set<Integer> cellsOf(List<double[]> points) {
+		Set<Integer> cells = new HashSet<>();
+		if (points == null) {
+			return cells;
+		}
+		double step = LevelDocument.CELL_SIZE / 4;
+		for (int i = 0; i < points.size(); i++) {
+			double[] from = points.get(Math.max(0, i - 1));
+			double[] to = points.get(i);
+			int samples = Math.max(1, (int) Math.ceil(Math.hypot(to[0] - from[0], to[1] - from[1]) / step));
+			for (int s = 0; s <= samples; s++) {
+				double t = (double) s / samples;
+				int cell = cellAt(from[0] + (to[0] - from[0]) * t, from[1] + (to[1] - from[1]) * t);
+				if (cell >= 0) {
+					cells.add(cell);
+				}
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * Returns the index of the cell containing a point, or -1 outside the grid.
+	 */
+	private int cellAt(double x, double y) {
+		int cellX = (int) Math.floor(x / LevelDocument.CELL_SIZE);
+		int cellY = (int) Math.floor(y / LevelDocument.CELL_SIZE);
+		return level.isInside(cellX, cellY) ? level.cellIndex(cellX, cellY) : -1;
+	}
+
+	/**
+	 * Returns a cell and its eight neighbours inside the grid.
+	 */
+	private List<Integer> neighbourhood(int cell) {
+		List<Integer> cells = new ArrayList<>();
+		if (cell < 0) {
+			return cells;
+		}
+		int cellX = cell % level.getGridCellsX();
+		int cellY = cell / level.getGridCellsX();
+		for (int dy = -1; dy <= 1; dy++) {
+			for (int dx = -1; dx <= 1; dx++) {
+				if (level.isInside(cellX + dx, cellY + dy)) {
+					cells.add(level.cellIndex(cellX + dx, cellY + dy));
+				}
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * Returns the lights centred in a cell or its neighbours, which are the only
+	 * lights a path through the cell can serve.
+	 */
+	private Set<Integer> lightsAround(int cell) {
+		Set<Integer> found = new HashSet<>();
+		for (int neighbour : neighbourhood(cell)) {
+			found.addAll(cellLights.getOrDefault(neighbour, Set.of()));
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the shortest distance from a point to the lines of a path.
+	 */
+	private static double distanceToPath(List<double[]> points, double x, double y) {
+		double best = Double.POSITIVE_INFINITY;
+		for (int i = 1; i < points.size(); i++) {
+			double[] a = points.get(i - 1);
+			double[] b = points.get(i);
+			double dx = b[0] - a[0];
+			double dy = b[1] - a[1];
+			double lengthSquared = dx * dx + dy * dy;
+			double t = lengthSquared == 0 ? 0 : ((x - a[0]) * dx + (y - a[1]) * dy) / lengthSquared;
+			t = Math.max(0, Math.min(1, t));
+			best = Math.min(best, Math.hypot(a[0] + dx * t - x, a[1] + dy * t - y));
+		}
+		return best;
+	}
+}
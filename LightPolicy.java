@@ -0,0 +1,60 @@
+package application;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Controls the traffic lights when no player is clicking them, for example in
+ * headless runs. A policy is applied once before every simulation step.
+ */
+public interface LightPolicy {
+
+	/**
+	 * Leaves every light as it is, like a player who never clicks. As lights start
+	 * green, all traffic flows freely.
+	 */
+	LightPolicy MANUAL = game -> {
+	};
+
+	/**
+	 * Updates the traffic lights of the game for the coming tick.
+	 *
+	 * @param game The game whose lights are controlled.
+	 */
+	void apply(Game game);
+
+	/**
+	 * Stops the threads of the policy, if it has any, once it is no longer
+	 * applied.
+	 */
+	default void close() {
+	}
+
+	/**
+	 * Creates a policy from its command line name: "manual", "fixed" with an
+	 * optional period in seconds such as "fixed:15", or "autopilot" with an
+	 * optional number of rollouts per decision such as "autopilot:200".
+	 *
+	 * @param name The name of the policy.
+	 * @return the policy.
+	 * @throws IllegalArgumentException if the name is not known.
+	 */
+	static LightPolicy forName(String name) {
+		if (name.equals("manual")) {
+			return MANUAL;
+		}
+		if (name.equals("fixed")) {
+			return new FixedCyclePolicy(FixedCyclePolicy.DEFAULT_PERIOD);
+		}
+		if (name.startsWith("fixed:")) {
+			return new FixedCyclePolicy(Double.parseDouble(name.substring("fixed:".length())));
+		}
+		if (name.equals("autopilot")) {
+			return new AutopilotPolicy(AutopilotPolicy.DEFAULT_ROLLOUTS);
+		}
+		if (name.startsWith("autopilot:")) {
+			return new AutopilotPolicy(Integer.parseInt(name.substring("autopilot:".length())));
+		}
+		throw new IllegalArgumentException("Unknown light policy: " + name);
+	}
+}
@@ -0,0 +1,206 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * The stretches of one path on which a car is close enough to a traffic light
+ * to be stopped by it. A car only has to look at the lights whose stretch it
+ * is on, instead of at every element of the map; the start of the next
+ * stretch is its next stop line.
+ *
+ * Paths are polylines and cars are placed on them by straight interpolation,
+ * so the distances at which a segment comes within reach of a light are found
+ * exactly from a quadratic equation. Every stretch is widened by
+ * {@link #MARGIN}, so rounding can never leave out a light the car is near;
+ * the car itself still makes the exact check.
+ *
+ * Lights are referred to by their place among the lights of the game, so
+ * copies of a game made with {@link Game#fork()} share the stretches.
+ */
+public class LightZones {
+	private static final double REACH = 20; // Cars stop this close to a red light, as in Car
+	private static final double MARGIN = 0.5; // Added to both ends of every stretch, in pixels
+	private static final double CELL = 64; // Size of the grid the lights are sorted into while the stretches are found
+	private final double[] starts; // Stretches by start distance
+	private final double[] ends;
+	private final int[] orders; // Place of the light among the lights of the game, the order cars check them in
+
+	/**
+	 * Finds the stretches of a path near each light.
+	 *
+	 * @param path   The path.
+	 * @param lights The traffic lights of the game, in element order.
+	 */
+	public LightZones(Path path, List<TrafficLight> lights) {
+		Map<Long, List<Integer>> cells = new HashMap<>(); // Lights by grid cell
+		for (int i = 0; i < lights.size(); i++) {
+			cells.computeIfAbsent(cellKey((int) Math.floor(lights.get(i).getCenterX() / CELL),
+					(int) Math.floor(lights.get(i).getCenterY() / CELL)), key -> new ArrayList<>()).add(i);
+		}
+
+		List<double[]> found = new ArrayList<>(); // Start, end and light order of every stretch
+		double[] lastEnds = new double[lights.size()]; // End of the last stretch of every light, to join touching ones
+		int[] lastFound = new int[lights.size()];
+		Arrays.fill(lastFound, -1);
+		int pointCount = path.getPointCount();
+		for (int k = pointCount == 1 ? 0 : 1; k < pointCount; k++) {
+			double x1 = path.getPointX(k);
+			double y1 = path.getPointY(k);
+			double x0 = k > 0 ? path.getPointX(k - 1) : x1;
+			double y0 = k > 0 ? path.getPointY(k - 1) : y1;
+			double from = k > 0 ? path.getPointDistance(k - 1) : 0;
+			double length = path.getPointDistance(k) - from;
+			if (length <= 0) {
+				x0 = x1; // A jump, or a path of one point: the car stands on the vertex
+				y0 = y1;
+				length = 0;
+			}
+			int minCellX = (int) Math.floor((Math.min(x0, x1) - REACH) / CELL);
+			int maxCellX = (int) Math.floor((Math.max(x0, x1) + REACH) / CELL);
+			int minCellY = (int) Math.floor((Math.min(y0, y1) - REACH) / CELL);
+			int maxCellY = (int) Math.floor((Math.max(y0, y1) + REACH) / CELL);
+			for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+				for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+					List<Integer> cell = cells.get(cellKey(cellX, cellY));
+					if (cell == null) {
+						continue;
+					}
+					for (int order : cell) {
+						TrafficLight light = lights.get(order);
+						double[] reach = reach(x0, y0, x1, y1, length, light.getCenterX(), light.getCenterY());
+						if (reach == null) {
+							continue;
+						}
+						double start = from + reach[0] - MARGIN;
+						double end = from + reach[1] + MARGIN;
+						if (lastFound[order] >= 0 && start <= lastEnds[order]) {
+							found.get(lastFound[order])[1] = Math.max(end, lastEnds[order]); // Goes on from the last segment
+						} else {
+							lastFound[order] = found.size();
+							found.add(new double[] { start, end, order });
+						}
+						lastEnds[order] = found.get(lastFound[order])[1];
+					}
+				}
+			}
+		}
+
+		found.sort((a, b) -> Double.compare(a[0], b[0]));
+		starts = new double[found.size()];
+		ends = new double[found.size()];
+		orders = new int[found.size()];
+		for (int i = 0; i < found.size(); i++) {
+			starts[i] = found.get(i)[0];
+			ends[i] = found.get(i)[1];
+			orders[i] = (int) found.get(i)[2];
+		}
+	}
+
+	private static long cellKey(int cellX, int cellY) {
+		return ((long) cellX << 32) ^ (cellY & 0xffffffffL);
+	}
+
+	/**
+	 * Finds the part of a segment within reach of a light.
+	 *
+	 * @param x0      Start of the segment.
+	 * @param y0      Start of the segment.
+	 * @param x1      End of the segment.
+	 * @param y1      End of the segment.
+	 * @param length  Length of the segment, 0 for a single point.
+	 * @param centerX Centre of the light.
+	 * @param centerY Centre of the light.
+	 * @return the first and last distance from the start of the segment, or null
+	 *         if the segment stays out of reach.
+	 */
+	private static double[] reach(double x0, double y0, double x1, double y1, double length, double centerX,
+			double centerY) {
+		double offsetX = x0 - centerX;
+		double offsetY = y0 - centerY;
+		double near = offsetX * offsetX + offsetY * offsetY - REACH * REACH; // Below 0 at the start if in reach
+		if (length == 0) {
+			return near < 0 ? new double[] { 0, 0 } : null;
+		}
+		// |offset + s * direction|^2 = REACH^2 has its roots at -b -+ sqrt(b^2 - near)
+		double b = (offsetX * (x1 - x0) + offsetY * (y1 - y0)) / length;
+		double discriminant = b * b - near;
+		if (discriminant <= 0) {
+			return null;
+		}
+		double root = Math.sqrt(discriminant);
+		double first = Math.max(0, -b - root);
+		double last = Math.min(length, -b + root);
+		return first <= last ? new double[] { first, last } : null;
+	}
+
+	/**
+	 * Finds the stretches a car is on, ordered like the lights of the game, which
+	 * is the order the car has to check their lights in. The car remembers the
+	 * stretches it has passed, so the search starts where it stopped in the
+	 * last tick.
+	 *
+	 * @param car The car, on this path.
+	 * @param out Receives the stretches; must have room for {@link #size()}.
+	 * @return the number of stretches found, usually 0 or 1.
+	 */
+	public int zonesAt(Car car, int[] out) {
+		double distance = car.getDistance();
+		int first = Math.min(car.getLightZone(), starts.length);
+		while (first < starts.length && ends[first] <= distance) {
+			first++; // Cars only move forward, so the stretches passed stay passed
+		}
+		car.setLightZone(first);
+		int count = 0;
+		for (int i = first; i < starts.length && starts[i] <= distance; i++) {
+			if (ends[i] > distance) {
+				int j = count++;
+				while (j > 0 && orders[out[j - 1]] > orders[i]) { // Near two lights at once, which is rare
+					out[j] = out[j - 1];
+					j--;
+				}
+				out[j] = i;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the next stop line of a car, the start of the first stretch it has
+	 * not passed as of its last light check.
+	 *
+	 * @param car The car, on this path.
+	 * @return the distance of the stop line along the path, at or behind the car
+	 *         while it is on the stretch, or infinity past the last one.
+	 */
+	public double getStopLine(Car car) {
+		int zone = car.getLightZone();
+		return zone < starts.length ? starts[zone] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the light of a stretch.
+	 *
+	 * @param zone The stretch.
+	 * @return the place of the light among the lights of the game.
+	 */
+	public int getLightIndex(int zone) {
+		return orders[zone];
+	}
+
+	/**
+	 * Returns the number of stretches, which bounds the number of lights a car on
+	 * the path can be near at once.
+	 *
+	 * @return the stretch count.
+	 */
+	public int size() {
+		return starts.length;
+	}
+}
@@ -2,11 +2,13 @@ package application;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Optional;
 
 import javafx.application.Application;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.TextInputDialog;
 import javafx.scene.image.Image;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundImage;
@@ -25,10 +27,13 @@ import javafx.stage.Stage;
 
 /**
  * The entry point of the application, setting up the primary stage and scene.
- * It includes the main menu and manages the starting, importing, and (intended)
- * creation of game levels through user interactions.
+ * It includes the main menu and manages the starting, importing, and creation
+ * of game levels through user interactions.
  */
 public class Main extends Application {
+	private static final int MIN_GRID_CELLS = 5; // Smallest level the editor creates
+	private static final int MAX_GRID_CELLS = 60; // Largest level the editor creates
+
 	@Override
 	public void start(Stage primaryStage) {
 		// Create a VBox layout with vertical spacing between child elements
@@ -52,7 +57,7 @@ public class Main extends Application {
 			File file = fileChooser.showOpenDialog(primaryStage);
 			if (file != null) {
 				try {
-					Game game = Game.getInstance(15, 15); // Create a new game instance
+					Game game = new Game(15, 15); // Create a new game instance
 					GameUI gameUI = new GameUI(game, primaryStage); // Create a UI for the game
 					game.checkAndSetGameUI(gameUI); // Set the game UI
 					LevelLoader.loadLevel(game, file.getPath()); // Load the level from the selected file
@@ -74,7 +79,7 @@ public class Main extends Application {
 			if (file != null) {
 				// Load the level from the selected file
 				try {
-					Game game = Game.getInstance(15, 15); // Create a new game instance
+					Game game = new Game(15, 15); // Create a new game instance
 					GameUI gameUI = new GameUI(game, primaryStage); // Create a UI for the game
 					game.checkAndSetGameUI(gameUI); // Set the game UI
 					LevelLoader.loadLevel(game, file.getPath()); // Load the level from the selected file
@@ -85,12 +90,14 @@ public class Main extends Application {
 			}
 		});
 
-		// This button should trigger the level creation feature, allowing users to
-		// design and export maps as text files.
-		// However, this functionality has not been implemented in this version of the
-		// game.
+		// Set the action for the 'Create Level' button to open the level editor, where
+		// users design maps and export them as text files, after asking for the size
+		// of the new level
 		btnCreate.setOnAction(e -> {
-			System.out.println("This game doesn't have this feature yet.");
+			int[] size = askGridSize(primaryStage);
+			if (size != null) {
+				new LevelEditor(primaryStage, size[0], size[1]);
+			}
 		});
 
 		// Add buttons to the menu
@@ -114,6 +121,41 @@ public class Main extends Application {
 		primaryStage.show();
 	}
 
+	/**
+	 * Asks for the number of cells across and down of a new level, written as
+	 * "15x15", until a valid size is given or the dialog is cancelled.
+	 *
+	 * @param stage The stage that owns the dialog.
+	 * @return the cells across and down, or null if the dialog was cancelled.
+	 */
+	private int[] askGridSize(Stage stage) {
+		TextInputDialog dialog = new TextInputDialog("15x15");
+		dialog.initOwner(stage);
+		dialog.setTitle("New Level");
+		dialog.setHeaderText("Size of the new level in cells");
+		dialog.setContentText("Cells across x down (" + MIN_GRID_CELLS + " to " + MAX_GRID_CELLS + "):");
+		while (true) {
+			Optional<String> answer = dialog.showAndWait();
+			if (!answer.isPresent()) {
+				return null;
+			}
+			String[] parts = answer.get().trim().toLowerCase().split("\\s*x\\s*");
+			try {
+				if (parts.length == 2) {
+					int cellsX = Integer.parseInt(parts[0]);
+					int cellsY = Integer.parseInt(parts[1]);
+					if (cellsX >= MIN_GRID_CELLS && cellsY >= MIN_GRID_CELLS && cellsX <= MAX_GRID_CELLS
+							&& cellsY <= MAX_GRID_CELLS) {
+						return new int[] { cellsX, cellsY };
+					}
+				}
+			} catch (NumberFormatException e) {
+				// Asked again below
+			}
+			dialog.setHeaderText("\"" + answer.get() + "\" is not a valid size, enter it like 15x15");
+		}
+	}
+
 	/**
 	 * Configures a FileChooser to select level files from a specific directory.
 	 * 
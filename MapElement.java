@@ -14,6 +14,7 @@ public abstract class MapElement {
     protected double x; // The x-coordinate of the element on the map
     protected double y; // The y-coordinate of the element on the map
     protected final double cellSize = 800.0 / 15.0; // Size of each grid cell on the map
+    private String levelLine; // Line of the level file the element was loaded from, if any
 
     /**
      * Constructs a MapElement with specified coordinates.
@@ -33,4 +34,19 @@ public abstract class MapElement {
      * @param pane The pane on which the element is to be drawn.
      */
     public abstract void draw(Pane pane);
+
+    /**
+     * Returns the level file line that created this element. Two elements with
+     * the same line are identical, which lets a reloaded level be compared
+     * with the running one.
+     *
+     * @return the line, or null if the element was not loaded from a file.
+     */
+    public String getLevelLine() {
+        return levelLine;
+    }
+
+    public void setLevelLine(String levelLine) {
+        this.levelLine = levelLine;
+    }
 }
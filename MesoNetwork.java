@@ -0,0 +1,577 @@
+package application;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Queue based model of the roads, for networks too large to move every car on
+ * its own. Every path is cut into links at the traffic lights it passes, and a
+ * link inside the meso region holds its cars as a first in, first out queue
+ * instead of as Car objects. A car entering a link needs its free flow time to
+ * reach the end. It then leaves when the light at the end is green, the next
+ * link has room and the link's last departure is one headway ago, which is the
+ * saturation flow of a queue of cars starting at a green light.
+ *
+ * Vehicles are kept in plain arrays, and a link is only looked at when its
+ * first vehicle is due, on the game's timing wheel, or while that vehicle is
+ * held by a light or a full link. The work per tick grows with the number of
+ * departures and held queues, not with the number of vehicles on the roads.
+ *
+ * Links outside the region stay micro: cars there are ordinary Car objects. A
+ * car reaching a meso link is handed to its queue, and a vehicle leaving a
+ * meso link for a micro one becomes a car again as soon as there is room on
+ * the road. Paths do not share links, just as cars only follow cars of their
+ * own path in the micro model.
+ */
+public class MesoNetwork {
+	public static final double SPACING = EntryQueue.CLEARANCE; // Road length one queued car takes up
+	private static final double LIGHT_REACH = 20; // Cars stop this close to a red light, as in Car
+	private static final double SAMPLE_STEP = 2; // Distance between the points a path is looked at when it is cut
+	private static final int NONE = -1;
+
+	/**
+	 * Receives the vehicles that leave the meso links.
+	 */
+	public interface Exits {
+
+		/**
+		 * Handles a vehicle that reached the end of its path.
+		 *
+		 * @param path       The path.
+		 * @param spawnTick  The tick the vehicle entered the game.
+		 * @param delayTicks The time it lost against free flow, in ticks.
+		 */
+		void arrived(Path path, long spawnTick, int delayTicks);
+
+		/**
+		 * Turns a vehicle into a car at the start of a micro link.
+		 *
+		 * @param path       The path.
+		 * @param distance   The start of the link along the path.
+		 * @param id         The id of the vehicle.
+		 * @param spawnTick  The tick the vehicle entered the game.
+		 * @param delayTicks The time it lost against free flow, in ticks.
+		 * @return false if there is no room for the car yet.
+		 */
+		boolean enterMicro(Path path, double distance, int id, long spawnTick, int delayTicks);
+	}
+
+	/**
+	 * Timer that wakes a link when its first vehicle is due.
+	 */
+	private class Wake implements TimingWheel.Timer {
+		private final int link;
+
+		private Wake(int link) {
+			this.link = link;
+		}
+
+		@Override
+		public void expire(long tick) {
+			wakeHandles[link] = NONE;
+			active.set(link);
+		}
+	}
+
+	private final double minX; // Meso region in pixels
+	private final double minY;
+	private final double maxX;
+	private final double maxY;
+	private final TimingWheel wheel;
+	private final Map<Path, Integer> firstLinks = new HashMap<>(); // First link of every path; its links follow in order
+	private final int linkCount;
+	private final Path[] linkPaths;
+	private final double[] starts; // Distance along the path where every link starts
+	private final TrafficLight[] gates; // Light at the end of every link, null for the last link of a path
+	private final boolean[] meso; // Whether a link is queued rather than driven
+	private final int[] capacities; // Cars a meso link holds
+	private final long[] freeFlowTicks; // Time to drive a link without stopping
+	private final long headwayTicks = Math.round(SPACING / Car.SPEED / Game.TICK_SECONDS); // Between departures
+	private final long[] nextDepartures; // Tick from which a link may let its next vehicle go
+	private final int[][] queues; // Ring buffer of the vehicles of every link, created on first use
+	private final int[] heads;
+	private final int[] counts;
+	private final Wake[] wakes;
+	private final long[] wakeHandles;
+	private final BitSet active = new BitSet(); // Links whose first vehicle is due and waits for a light or room
+	private int[] ids = new int[64]; // Vehicle records, reused through the free list
+	private long[] spawnTicks = new long[64];
+	private long[] dueTicks = new long[64]; // Tick a vehicle reaches the end of its link
+	private int[] delays = new int[64];
+	private int[] nextFree = new int[64];
+	private int freeList = NONE;
+	private int used = 0;
+	private int vehicleCount = 0;
+
+	/**
+	 * Cuts the paths into links.
+	 *
+	 * @param paths  The paths of the level, by index.
+	 * @param lights The traffic lights of the level.
+	 * @param minX   Left edge of the meso region in pixels.
+	 * @param minY   Top edge of the meso region.
+	 * @param maxX   Right edge of the meso region.
+	 * @param maxY   Bottom edge of the meso region.
+	 * @param wheel  The timing wheel of the game.
+	 */
+	public MesoNetwork(Map<Integer, Path> paths, List<TrafficLight> lights, double minX, double minY, double maxX,
+			double maxY, TimingWheel wheel) {
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.wheel = wheel;
+
+		Map<Long, List<TrafficLight>> lightCells = new HashMap<>(); // Lights in reach of a cell of LIGHT_REACH pixels
+		for (TrafficLight light : lights) {
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					long key = cellKey(light.getCenterX() + dx * LIGHT_REACH, light.getCenterY() + dy * LIGHT_REACH);
+					lightCells.computeIfAbsent(key, cell -> new ArrayList<>()).add(light);
+				}
+			}
+		}
+		List<Path> linkPathList = new ArrayList<>();
+		List<Double> startList = new ArrayList<>();
+		List<TrafficLight> gateList = new ArrayList<>();
+		double[] point = new double[3];
+		for (Path path : new TreeMap<>(paths).values()) { // By index, so links are numbered the same in every run
+			firstLinks.put(path, linkPathList.size());
+			linkPathList.add(path);
+			startList.add(0.0);
+			TrafficLight inside = null; // Light whose reach the path is in
+			int segment = 0;
+			long cell = Long.MIN_VALUE;
+			List<TrafficLight> candidates = null; // Lights in reach of the cell, only looked up when the cell changes
+			for (double distance = 0; distance <= path.getLength(); distance += SAMPLE_STEP) {
+				segment = path.sample(distance, segment, point);
+				long key = cellKey(point[0], point[1]);
+				if (key != cell) {
+					cell = key;
+					candidates = lightCells.get(key);
+				}
+				TrafficLight near = nearLight(candidates, point[0], point[1]);
+				if (near != null && near != inside && distance > 0) {
+					gateList.add(near); // Ends the link before it
+					linkPathList.add(path);
+					startList.add(distance);
+				}
+				inside = near;
+			}
+			gateList.add(null);
+		}
+
+		linkCount = linkPathList.size();
+		linkPaths = linkPathList.toArray(new Path[0]);
+		starts = new double[linkCount];
+		gates = gateList.toArray(new TrafficLight[0]);
+		meso = new boolean[linkCount];
+		capacities = new int[linkCount];
+		freeFlowTicks = new long[linkCount];
+		nextDepartures = new long[linkCount];
+		queues = new int[linkCount][];
+		heads = new int[linkCount];
+		counts = new int[linkCount];
+		wakes = new Wake[linkCount];
+		wakeHandles = new long[linkCount];
+		Arrays.fill(wakeHandles, NONE);
+		for (int link = 0; link < linkCount; link++) {
+			starts[link] = startList.get(link);
+		}
+		for (int link = 0; link < linkCount; link++) {
+			double length = end(link) - starts[link];
+			linkPaths[link].sample(starts[link], 0, point);
+			meso[link] = point[0] >= minX && point[0] <= maxX && point[1] >= minY && point[1] <= maxY;
+			capacities[link] = Math.max(1, (int) (length / SPACING));
+			freeFlowTicks[link] = Math.round(length / Car.SPEED / Game.TICK_SECONDS);
+			wakes[link] = new Wake(link);
+		}
+	}
+
+	private static long cellKey(double x, double y) {
+		return ((long) Math.floor(x / LIGHT_REACH) << 32) ^ ((long) Math.floor(y / LIGHT_REACH) & 0xffffffffL);
+	}
+
+	/**
+	 * Finds a light close enough to stop a car at a point.
+	 *
+	 * @param candidates The lights in reach of the cell of the point, or null.
+	 * @param x          X coordinate of the point.
+	 * @param y          Y coordinate of the point.
+	 * @return the first light in reach, or null.
+	 */
+	private static TrafficLight nearLight(List<TrafficLight> candidates, double x, double y) {
+		if (candidates == null) {
+			return null;
+		}
+		for (int i = 0; i < candidates.size(); i++) {
+			TrafficLight light = candidates.get(i);
+			double dx = x - light.getCenterX();
+			double dy = y - light.getCenterY();
+			if (dx * dx + dy * dy < LIGHT_REACH * LIGHT_REACH) {
+				return light;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns where a link ends along its path.
+	 *
+	 * @param link The link.
+	 * @return the start of the next link, or the length of the path.
+	 */
+	private double end(int link) {
+		return isLast(link) ? linkPaths[link].getLength() : starts[link + 1];
+	}
+
+	private boolean isLast(int link) {
+		return link + 1 == linkCount || linkPaths[link + 1] != linkPaths[link];
+	}
+
+	/**
+	 * Returns the first link of a path if it is a meso link, so that cars
+	 * spawned on the path go straight into its queue.
+	 *
+	 * @param path The path.
+	 * @return the link, or -1 if cars enter the path as Car objects.
+	 */
+	public int getMesoEntry(Path path) {
+		Integer link = firstLinks.get(path);
+		return link != null && meso[link] ? link : NONE;
+	}
+
+	/**
+	 * Finds the meso link a car driving on a path reaches next.
+	 *
+	 * @param path     The path of the car.
+	 * @param distance The distance the car has travelled.
+	 * @return the link, or -1 if the rest of the path is micro.
+	 */
+	public int nextMesoLink(Path path, double distance) {
+		Integer first = firstLinks.get(path);
+		if (first == null) {
+			return NONE;
+		}
+		for (int link = first; link < linkCount && linkPaths[link] == path; link++) {
+			if (meso[link] && starts[link] >= distance) {
+				return link;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Returns the distance at which a car on a path is handed to a meso link.
+	 *
+	 * @param path     The path of the car.
+	 * @param distance The distance the car has travelled.
+	 * @return the start of the next meso link, or infinity if there is none.
+	 */
+	public double handoverDistance(Path path, double distance) {
+		int link = nextMesoLink(path, distance);
+		return link != NONE ? starts[link] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Checks whether a link holds as many cars as fit on it.
+	 *
+	 * @param link The link.
+	 * @return true if no further vehicle may enter from the link before it.
+	 */
+	public boolean isFull(int link) {
+		return counts[link] >= capacities[link];
+	}
+
+	/**
+	 * Puts a vehicle at the back of a meso link. The game only hands over cars
+	 * while {@link #isFull(int)} is false and holds them at the boundary
+	 * otherwise, so a link never takes more vehicles than fit on it.
+	 *
+	 * @param link       The link.
+	 * @param id         The id of the vehicle.
+	 * @param spawnTick  The tick the vehicle entered the game.
+	 * @param delayTicks The time it has lost so far, in ticks.
+	 * @param tick       The current tick.
+	 */
+	public void enter(int link, int id, long spawnTick, int delayTicks, long tick) {
+		int vehicle = allocate();
+		ids[vehicle] = id;
+		spawnTicks[vehicle] = spawnTick;
+		delays[vehicle] = delayTicks;
+		push(link, vehicle, tick + freeFlowTicks[link]);
+	}
+
+	/**
+	 * Lets every vehicle go that may leave its link in this tick. Links are
+	 * served from the last to the first, so a vehicle leaving a full link makes
+	 * room for the one behind it in the same tick.
+	 *
+	 * @param tick  The current tick.
+	 * @param exits Receives arrivals and vehicles entering micro links.
+	 */
+	public void step(long tick, Exits exits) {
+		for (int link = active.previousSetBit(linkCount - 1); link >= 0; link = active.previousSetBit(link - 1)) {
+			serve(link, tick, exits);
+		}
+	}
+
+	/**
+	 * Lets the first vehicle of a link go if it may, and waits for the next one
+	 * on the wheel. The link stays active while its first vehicle is held.
+	 *
+	 * @param link  The link.
+	 * @param tick  The current tick.
+	 * @param exits Receives the vehicle if it leaves the meso links.
+	 */
+	private void serve(int link, long tick, Exits exits) {
+		while (counts[link] > 0) {
+			int vehicle = queues[link][heads[link]];
+			long due = Math.max(dueTicks[vehicle], nextDepartures[link]);
+			if (due > tick) {
+				active.clear(link);
+				wakeHandles[link] = wheel.schedule(wakes[link], due);
+				return;
+			}
+			if (gates[link] != null && !gates[link].isGreen()) {
+				return; // Amber holds the queue too, as it does cars
+			}
+			int delay = delays[vehicle] + (int) (tick - dueTicks[vehicle]);
+			if (isLast(link)) {
+				exits.arrived(linkPaths[link], spawnTicks[vehicle], delay);
+			} else if (meso[link + 1]) {
+				if (isFull(link + 1)) {
+					return;
+				}
+			} else if (!exits.enterMicro(linkPaths[link], starts[link + 1], ids[vehicle], spawnTicks[vehicle],
+					delay)) {
+				return; // No room on the road yet
+			}
+			pop(link);
+			if (!isLast(link) && meso[link + 1]) {
+				delays[vehicle] = delay;
+				push(link + 1, vehicle, tick + freeFlowTicks[link + 1]);
+			} else {
+				free(vehicle);
+			}
+			nextDepartures[link] = tick + headwayTicks;
+		}
+		active.clear(link);
+	}
+
+	/**
+	 * Appends a vehicle to the queue of a link, and wakes the link when it is the
+	 * first vehicle there.
+	 *
+	 * @param link    The link.
+	 * @param vehicle The vehicle record.
+	 * @param due     The tick it reaches the end of the link.
+	 */
+	private void push(int link, int vehicle, long due) {
+		dueTicks[vehicle] = due;
+		int[] queue = queues[link];
+		if (queue == null || counts[link] == queue.length) {
+			int[] grown = new int[queue == null ? Math.min(capacities[link], 8) : queue.length * 2];
+			for (int i = 0; i < counts[link]; i++) {
+				grown[i] = queue[(heads[link] + i) % queue.length];
+			}
+			queues[link] = queue = grown;
+			heads[link] = 0;
+		}
+		queue[(heads[link] + counts[link]) % queue.length] = vehicle;
+		counts[link]++;
+		vehicleCount++;
+		if (counts[link] == 1 && !active.get(link)) {
+			wakeHandles[link] = wheel.schedule(wakes[link], Math.max(due, nextDepartures[link]));
+		}
+	}
+
+	private void pop(int link) {
+		heads[link] = (heads[link] + 1) % queues[link].length;
+		counts[link]--;
+		vehicleCount--;
+	}
+
+	private int allocate() {
+		if (freeList != NONE) {
+			int vehicle = freeList;
+			freeList = nextFree[vehicle];
+			return vehicle;
+		}
+		if (used == ids.length) {
+			int size = used * 2;
+			ids = Arrays.copyOf(ids, size);
+			spawnTicks = Arrays.copyOf(spawnTicks, size);
+			dueTicks = Arrays.copyOf(dueTicks, size);
+			delays = Arrays.copyOf(delays, size);
+			nextFree = Arrays.copyOf(nextFree, size);
+		}
+		return used++;
+	}
+
+	private void free(int vehicle) {
+		nextFree[vehicle] = freeList;
+		freeList = vehicle;
+	}
+
+	/**
+	 * Moves the vehicles of another network into this one, after the paths or
+	 * lights of the level changed. A vehicle keeps its place in the queue if its
+	 * path is unchanged and the link it was on starts in a meso link of this
+	 * network; others are dropped, like the cars of a replaced path. A link cut
+	 * shorter than before can end up holding more vehicles than fit on it; it
+	 * counts as full and takes no one else until enough have left.
+	 *
+	 * @param old  The network built before the change.
+	 * @param tick The current tick.
+	 * @return the number of vehicles dropped.
+	 */
+	public int takeOver(MesoNetwork old, long tick) {
+		int dropped = 0;
+		for (int link = 0; link < old.linkCount; link++) {
+			if (old.wakeHandles[link] != NONE) {
+				old.wheel.cancel(old.wakeHandles[link]);
+			}
+			int target = linkAt(old.linkPaths[link], old.starts[link]);
+			for (int i = 0; i < old.counts[link]; i++) {
+				int vehicle = old.queues[link][(old.heads[link] + i) % old.queues[link].length];
+				if (target == NONE || !meso[target]) {
+					dropped++;
+					continue;
+				}
+				int copy = allocate();
+				ids[copy] = old.ids[vehicle];
+				spawnTicks[copy] = old.spawnTicks[vehicle];
+				delays[copy] = old.delays[vehicle];
+				push(target, copy, Math.max(old.dueTicks[vehicle], tick));
+			}
+		}
+		return dropped;
+	}
+
+	/**
+	 * Finds the link of a path that contains a distance.
+	 *
+	 * @param path     The path.
+	 * @param distance The distance along it.
+	 * @return the link, or -1 if the path is not part of the network.
+	 */
+	private int linkAt(Path path, double distance) {
+		Integer first = firstLinks.get(path);
+		if (first == null) {
+			return NONE;
+		}
+		int link = first;
+		while (!isLast(link) && starts[link + 1] <= distance) {
+			link++;
+		}
+		return link;
+	}
+
+	/**
+	 * Writes the queue of every link to a snapshot buffer. The links themselves
+	 * are cut again from the level when the snapshot is restored.
+	 *
+	 * @param buffer The buffer receiving the state.
+	 */
+	public void writeState(ByteBuffer buffer) {
+		buffer.putInt(linkCount);
+		for (int link = 0; link < linkCount; link++) {
+			buffer.putLong(nextDepartures[link]);
+			buffer.putInt(counts[link]);
+			for (int i = 0; i < counts[link]; i++) {
+				int vehicle = queues[link][(heads[link] + i) % queues[link].length];
+				buffer.putInt(ids[vehicle]);
+				buffer.putLong(spawnTicks[vehicle]);
+				buffer.putLong(dueTicks[vehicle]);
+				buffer.putInt(delays[vehicle]);
+			}
+		}
+	}
+
+	/**
+	 * Restores the queues written by {@link #writeState(ByteBuffer)} into a
+	 * network cut from the same level. Every link with vehicles is looked at in
+	 * the next tick, which sets its wake timer again.
+	 *
+	 * @param buffer The buffer holding the state.
+	 */
+	public void readState(ByteBuffer buffer) {
+		int links = buffer.getInt();
+		if (links != linkCount) {
+			throw new IllegalStateException("Snapshot has " + links + " meso links, the level has " + linkCount);
+		}
+		for (int link = 0; link < linkCount; link++) {
+			nextDepartures[link] = buffer.getLong();
+			int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				int vehicle = allocate();
+				ids[vehicle] = buffer.getInt();
+				spawnTicks[vehicle] = buffer.getLong();
+				dueTicks[vehicle] = buffer.getLong();
+				delays[vehicle] = buffer.getInt();
+				active.set(link); // Before the push, which would set a timer otherwise
+				push(link, vehicle, dueTicks[vehicle]);
+			}
+		}
+	}
+
+	/**
+	 * Returns an upper bound of the number of bytes
+	 * {@link #writeState(ByteBuffer)} needs.
+	 *
+	 * @return the size in bytes.
+	 */
+	public int stateSize() {
+		return 4 + linkCount * 12 + vehicleCount * 24;
+	}
+
+	/**
+	 * Returns the number of vehicles in the meso links.
+	 *
+	 * @return the vehicle count.
+	 */
+	public int getVehicleCount() {
+		return vehicleCount;
+	}
+
+	/**
+	 * Returns the number of links the paths were cut into, micro ones included.
+	 *
+	 * @return the link count.
+	 */
+	public int getLinkCount() {
+		return linkCount;
+	}
+
+	/**
+	 * Returns the number of links whose cars are queued.
+	 *
+	 * @return the meso link count.
+	 */
+	public int getMesoLinkCount() {
+		int count = 0;
+		for (boolean queued : meso) {
+			count += queued ? 1 : 0;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the meso region the network was built for.
+	 *
+	 * @return minimum x, minimum y, maximum x and maximum y in pixels.
+	 */
+	public double[] getRegion() {
+		return new double[] { minX, minY, maxX, maxY };
+	}
+}
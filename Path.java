@@ -1,9 +1,13 @@
 package application;
 
+import java.util.Arrays;
+
 import javafx.geometry.Point2D;
+import javafx.scene.shape.ArcTo;
 import javafx.scene.shape.LineTo;
 import javafx.scene.shape.MoveTo;
 import javafx.scene.shape.PathElement;
+import javafx.scene.shape.QuadCurveTo;
 
 //Berat Metehan Çakmak 150123547
 //Eray Hoşavcıoğlu 150121005
@@ -11,12 +15,18 @@ import javafx.scene.shape.PathElement;
 /**
  * Defines the path that cars will follow. This class supports complex paths
  * with multiple segments, providing functionality to move cars smoothly along
- * these paths using MoveTo and LineTo commands.
+ * these paths using MoveTo and LineTo commands. QuadTo and ArcTo curves are
+ * flattened into short line segments when they are added, using the shared
+ * tables of {@link CurveTable}, so cars follow every kind of segment alike.
  */
 public class Path {
 	private javafx.scene.shape.Path path; // Represents the geometric path
 	private double length; // Total length of the path
 	private int currentSegment = 0; // Index of the current path segment being processed
+	private double[] pointsX = new double[8]; // X coordinates of every vertex, in insertion order
+	private double[] pointsY = new double[8]; // Y coordinates of every vertex, in insertion order
+	private double[] distances = new double[8]; // Distance along the path at which each vertex is reached
+	private int pointCount = 0; // Number of vertices stored in the arrays above
 
 	public Path() {
 		this.path = new javafx.scene.shape.Path(); // Initialize the Path object
@@ -35,6 +45,7 @@ public class Path {
 		if (path.getElements().size() == 1) {
 			this.length = 0; // Reset path length when first move is added
 		}
+		addPoint(x, y); // A move jumps to the new point without adding any length
 	}
 
 	/**
@@ -56,6 +67,132 @@ public class Path {
 
 		Point2D newPoint = new Point2D(x, y);
 		this.length += lastPoint.distance(newPoint); // Update path length based on the distance to the new point
+		addPoint(x, y);
+	}
+
+	/**
+	 * Adds a quadratic Bézier curve from the last point in the path to a new
+	 * point.
+	 *
+	 * @param controlX X coordinate of the control point.
+	 * @param controlY Y coordinate of the control point.
+	 * @param x        X coordinate of the endpoint of the curve.
+	 * @param y        Y coordinate of the endpoint of the curve.
+	 */
+	public void quadTo(double controlX, double controlY, double x, double y) {
+		if (path.getElements().isEmpty()) {
+			moveTo(x, y);
+			return;
+		}
+		Point2D lastPoint = getLastPoint();
+		path.getElements().add(new QuadCurveTo(controlX, controlY, x, y));
+		addCurve(CurveTable.quad(controlX - lastPoint.getX(), controlY - lastPoint.getY(), x - lastPoint.getX(),
+				y - lastPoint.getY()), lastPoint);
+	}
+
+	/**
+	 * Adds a circular arc around a centre from the last point in the path to a
+	 * new point, turning the shorter way round, like the curved road tiles.
+	 *
+	 * @param centerX X coordinate of the centre of the arc.
+	 * @param centerY Y coordinate of the centre of the arc.
+	 * @param x       X coordinate of the endpoint of the arc.
+	 * @param y       Y coordinate of the endpoint of the arc.
+	 */
+	public void arcTo(double centerX, double centerY, double x, double y) {
+		if (path.getElements().isEmpty()) {
+			moveTo(x, y);
+			return;
+		}
+		Point2D lastPoint = getLastPoint();
+		double relativeCenterX = centerX - lastPoint.getX();
+		double relativeCenterY = centerY - lastPoint.getY();
+		double radius = Math.hypot(relativeCenterX, relativeCenterY);
+		double sweep = CurveTable.sweep(relativeCenterX, relativeCenterY, x - lastPoint.getX(), y - lastPoint.getY());
+		path.getElements().add(new ArcTo(radius, radius, 0, x, y, false, sweep > 0));
+		addCurve(CurveTable.arc(relativeCenterX, relativeCenterY, x - lastPoint.getX(), y - lastPoint.getY()),
+				lastPoint);
+	}
+
+	/**
+	 * Appends the points of a flattened curve.
+	 *
+	 * @param table The curve, relative to its start.
+	 * @param start The start of the curve.
+	 */
+	private void addCurve(CurveTable table, Point2D start) {
+		double startLength = length;
+		for (int i = 0; i < table.getPointCount(); i++) {
+			length = startLength + table.getLength(i);
+			addPoint(start.getX() + table.getOffsetX(i), start.getY() + table.getOffsetY(i));
+		}
+	}
+
+	/**
+	 * Stores a vertex together with the distance along the path at which it is
+	 * reached, growing the backing arrays when they are full.
+	 *
+	 * @param x X coordinate of the vertex.
+	 * @param y Y coordinate of the vertex.
+	 */
+	private void addPoint(double x, double y) {
+		if (pointCount == pointsX.length) {
+			pointsX = Arrays.copyOf(pointsX, pointCount * 2);
+			pointsY = Arrays.copyOf(pointsY, pointCount * 2);
+			distances = Arrays.copyOf(distances, pointCount * 2);
+		}
+		pointsX[pointCount] = x;
+		pointsY[pointCount] = y;
+		distances[pointCount] = length;
+		pointCount++;
+	}
+
+	/**
+	 * Finds the position and heading at a given distance along the path. The
+	 * search starts at the segment hint so that a car moving forward only looks at
+	 * the segment it is on, which keeps the lookup constant time per tick.
+	 *
+	 * @param distance Distance travelled from the start of the path.
+	 * @param hint     Index of the segment the caller was on last time, or 0.
+	 * @param out      Array of at least 3 elements receiving x, y and the heading
+	 *                 in degrees. The heading is left unchanged on the zero
+	 *                 length jumps created by a second MoveTo.
+	 * @return the index of the segment containing the distance, to be passed back
+	 *         as the next hint.
+	 */
+	public int sample(double distance, int hint, double[] out) {
+		if (pointCount == 0) {
+			out[0] = 0;
+			out[1] = 0;
+			out[2] = 0;
+			return 0;
+		}
+		int segment = Math.max(1, Math.min(hint, pointCount - 1));
+		if (segment > 1 && distances[segment - 1] > distance) {
+			segment = 1; // The distance went backwards, search again from the start
+		}
+		while (segment < pointCount - 1 && distances[segment] < distance) {
+			segment++;
+		}
+		if (pointCount == 1) {
+			out[0] = pointsX[0];
+			out[1] = pointsY[0];
+			out[2] = 0;
+			return 0;
+		}
+		double x0 = pointsX[segment - 1];
+		double y0 = pointsY[segment - 1];
+		double x1 = pointsX[segment];
+		double y1 = pointsY[segment];
+		double segmentLength = distances[segment] - distances[segment - 1];
+		double t = segmentLength > 0 ? (distance - distances[segment - 1]) / segmentLength : 1;
+		t = Math.max(0, Math.min(1, t));
+		out[0] = x0 + (x1 - x0) * t;
+		out[1] = y0 + (y1 - y0) * t;
+		if (segmentLength > 0) {
+			out[2] = Math.toDegrees(Math.atan2(y1 - y0, x1 - x0));
+		}
+		return segment;
 	}
 
 	/**
@@ -74,6 +211,14 @@ public class Path {
 				LineTo lineTo = (LineTo) element;
 				currentSegment++;
 				return new Point2D(lineTo.getX(), lineTo.getY());
+			} else if (element instanceof QuadCurveTo) {
+				QuadCurveTo quadTo = (QuadCurveTo) element;
+				currentSegment++;
+				return new Point2D(quadTo.getX(), quadTo.getY());
+			} else if (element instanceof ArcTo) {
+				ArcTo arcTo = (ArcTo) element;
+				currentSegment++;
+				return new Point2D(arcTo.getX(), arcTo.getY());
 			}
 		}
 		return getLastPoint();
@@ -117,21 +262,14 @@ public class Path {
 	}
 
 	/**
-	 * Retrieves the last point added to the path, either as a MoveTo or LineTo
-	 * command. If the path is empty, returns a default point (0,0).
+	 * Retrieves the last point added to the path, the end of its last command. If
+	 * the path is empty, returns a default point (0,0).
 	 *
 	 * @return Point2D representing the last point on the path.
 	 */
 	private Point2D getLastPoint() {
-		if (!path.getElements().isEmpty()) {
-			PathElement element = path.getElements().get(path.getElements().size() - 1);
-			if (element instanceof MoveTo) {
-				MoveTo moveTo = (MoveTo) element;
-				return new Point2D(moveTo.getX(), moveTo.getY());
-			} else if (element instanceof LineTo) {
-				LineTo lineTo = (LineTo) element;
-				return new Point2D(lineTo.getX(), lineTo.getY());
-			}
+		if (pointCount > 0) {
+			return new Point2D(pointsX[pointCount - 1], pointsY[pointCount - 1]);
 		}
 		return new Point2D(0, 0); // Return a default point if path is empty
 	}
@@ -167,6 +305,47 @@ public class Path {
 		return this.length;
 	}
 
+	/**
+	 * Returns the number of vertices of the path. Segment i, as returned by
+	 * {@link #sample(double, int, double[])}, runs from vertex i - 1 to vertex i.
+	 *
+	 * @return the vertex count.
+	 */
+	public int getPointCount() {
+		return pointCount;
+	}
+
+	public double getPointX(int index) {
+		return pointsX[index];
+	}
+
+	public double getPointY(int index) {
+		return pointsY[index];
+	}
+
+	/**
+	 * Returns the distance along the path at which a vertex is reached. A segment
+	 * whose two vertices have the same distance is a jump made by a MoveTo.
+	 *
+	 * @param index The vertex.
+	 * @return the distance from the start of the path.
+	 */
+	public double getPointDistance(int index) {
+		return distances[index];
+	}
+
+	/**
+	 * Checks whether another path passes through exactly the same points.
+	 *
+	 * @param other The path to compare with.
+	 * @return true if both paths have the same vertices in the same order.
+	 */
+	public boolean sameShape(Path other) {
+		return pointCount == other.pointCount
+				&& Arrays.equals(pointsX, 0, pointCount, other.pointsX, 0, other.pointCount)
+				&& Arrays.equals(pointsY, 0, pointCount, other.pointsY, 0, other.pointCount);
+	}
+
 	/**
 	 * Prints details about each segment of the path.
 	 */
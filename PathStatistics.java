@@ -0,0 +1,90 @@
+package application;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Travel statistics of the cars that completed one path: how long they took
+ * from spawning to arrival, and how much of that time they spent stopped.
+ */
+public class PathStatistics {
+	private final int pathIndex;
+	private final LatencyHistogram travelTicks = new LatencyHistogram();
+	private final LatencyHistogram stoppedTicks = new LatencyHistogram();
+
+	public PathStatistics(int pathIndex) {
+		this.pathIndex = pathIndex;
+	}
+
+	/**
+	 * Records a car that reached the end of the path.
+	 *
+	 * @param car         The arrived car.
+	 * @param arrivalTick The tick in which it arrived.
+	 */
+	public void recordArrival(Car car, long arrivalTick) {
+		recordArrival(car.getSpawnTick(), car.getStoppedTicks(), arrivalTick);
+	}
+
+	/**
+	 * Records a vehicle that arrived from a meso link, where only its spawn tick
+	 * and its delay are kept.
+	 *
+	 * @param spawnTick    The tick the vehicle entered the game.
+	 * @param stoppedTicks Its time stopped or queued, in ticks.
+	 * @param arrivalTick  The tick it reached the end of the path.
+	 */
+	public void recordArrival(long spawnTick, int stoppedTicks, long arrivalTick) {
+		travelTicks.record(arrivalTick - spawnTick);
+		this.stoppedTicks.record(stoppedTicks);
+	}
+
+	/**
+	 * Adds the statistics of the same path from another run.
+	 *
+	 * @param other The statistics to merge in.
+	 */
+	public void merge(PathStatistics other) {
+		travelTicks.merge(other.travelTicks);
+		stoppedTicks.merge(other.stoppedTicks);
+	}
+
+	public void writeState(ByteBuffer buffer) {
+		travelTicks.writeState(buffer);
+		stoppedTicks.writeState(buffer);
+	}
+
+	public void readState(ByteBuffer buffer) {
+		travelTicks.readState(buffer);
+		stoppedTicks.readState(buffer);
+	}
+
+	public int stateSize() {
+		return travelTicks.stateSize() + stoppedTicks.stateSize();
+	}
+
+	/**
+	 * Describes the statistics as a JSON object.
+	 *
+	 * @return the JSON text.
+	 */
+	public String toJson() {
+		return String.format(Locale.ROOT, "{\"path\": %d, \"travelTime\": %s, \"delay\": %s}", pathIndex,
+				travelTicks.toJson(), stoppedTicks.toJson());
+	}
+
+	public int getPathIndex() {
+		return pathIndex;
+	}
+
+	public LatencyHistogram getTravelTicks() {
+		return travelTicks;
+	}
+
+	public LatencyHistogram getStoppedTicks() {
+		return stoppedTicks;
+	}
+}
@@ -0,0 +1,121 @@
+package application;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * A queue of stopped cars on one path that the game updates as one unit. The
+ * leader is checked every tick like any car. Each follower stopped behind the
+ * car directly ahead of it and is not near any traffic light; as long as the
+ * leader stays stopped nothing can change for the followers, so the game skips
+ * their proximity, light and wait checks. Stopped cars also need no collision
+ * tests among each other, which leaves congested maps with work per platoon
+ * rather than per car.
+ *
+ * A car that stops behind the last car of a platoon joins it, and a leader that
+ * does so brings its own platoon along. When the leader starts again, or a
+ * member leaves the game, the cars behind are checked on their own again and
+ * form new platoons as they stop.
+ */
+public final class Platoon {
+	private final Car leader;
+	private Car last;
+	private int size = 1;
+	private boolean held = true; // Whether the leader stayed stopped in the last tick it was checked
+	private boolean dissolved = false;
+
+	/**
+	 * Creates a platoon led by a stopped car.
+	 *
+	 * @param leader The first car of the platoon.
+	 */
+	public Platoon(Car leader) {
+		this.leader = leader;
+		this.last = leader;
+		leader.setPlatoon(this);
+	}
+
+	/**
+	 * Adds the car stopped directly behind the last car, together with the
+	 * platoon it leads, if any.
+	 *
+	 * @param car The car behind the last one.
+	 */
+	public void join(Car car) {
+		Platoon other = car.getPlatoon();
+		Car end = other != null ? other.last : car;
+		for (Car member = car;; member = member.getBehind()) {
+			member.setPlatoon(this);
+			size++;
+			if (member == end) {
+				break;
+			}
+		}
+		last = end;
+		if (other != null) {
+			other.dissolved = true; // Its cars now belong to this platoon
+		}
+	}
+
+	/**
+	 * Takes a car that leaves the game out of the platoon. The cars behind it no
+	 * longer have a stopped car directly ahead, so they are checked on their own
+	 * again.
+	 *
+	 * @param car A member of this platoon.
+	 */
+	public void remove(Car car) {
+		if (car == leader) {
+			dissolve();
+			return;
+		}
+		for (Car member = car; member != null && member.getPlatoon() == this; member = member.getBehind()) {
+			member.setPlatoon(null);
+			size--;
+		}
+		last = car.getAhead();
+		if (size == 1) {
+			dissolve(); // A leader alone needs no platoon
+		}
+	}
+
+	/**
+	 * Returns every car to being checked on its own.
+	 */
+	public void dissolve() {
+		for (Car member = leader; member != null && member.getPlatoon() == this; member = member.getBehind()) {
+			member.setPlatoon(null);
+		}
+		dissolved = true;
+	}
+
+	public Car getLeader() {
+		return leader;
+	}
+
+	public Car getLast() {
+		return last;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns whether the leader stayed stopped when it was last checked, so that
+	 * the followers can be skipped.
+	 *
+	 * @return true while the platoon holds together.
+	 */
+	public boolean isHeld() {
+		return held && !dissolved;
+	}
+
+	public void setHeld(boolean held) {
+		this.held = held;
+	}
+
+	public boolean isDissolved() {
+		return dissolved;
+	}
+}
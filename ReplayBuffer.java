@@ -0,0 +1,267 @@
+package application;
+
+import java.util.List;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Keeps the last few seconds of the game so that a crash can be watched again.
+ * Every tick the id, position, heading and state of each car and the colour of
+ * each traffic light, green, amber or red, are copied into preallocated ring buffers. The arrays only
+ * grow while the traffic is still building up; once they are large enough,
+ * recording a frame allocates nothing and the oldest frames are overwritten.
+ */
+public class ReplayBuffer {
+	public static final double REPLAY_SECONDS = 10.0; // Simulated time kept for replays
+	public static final byte LIGHT_RED = 0; // Colours of the lights in the frames
+	public static final byte LIGHT_GREEN = 1;
+	public static final byte LIGHT_AMBER = 2;
+	private final int frameCapacity;
+	private final long[] frameTicks; // Tick of each frame, indexed by frame slot
+	private final long[] frameStarts; // Position of the first car sample of each frame
+	private final int[] frameCars; // Number of car samples in each frame
+	private long framesWritten = 0;
+	private int sampleCapacity = 8192; // Always a power of two, so positions wrap with a mask
+	private long samplesWritten = 0; // Position of the next car sample, wrapped by sampleCapacity
+	private int[] ids = new int[sampleCapacity];
+	private float[] xs = new float[sampleCapacity];
+	private float[] ys = new float[sampleCapacity];
+	private float[] headings = new float[sampleCapacity];
+	private byte[] flags = new byte[sampleCapacity];
+	private int lightCount = 0;
+	private int[] lightIndices = new int[0]; // Positions of the traffic lights in the element list
+	private int elementCount = -1; // Size of the element list the light positions were found in
+	private byte[] lightStates = new byte[0]; // lightCount colours per frame slot
+	private long crashTick = -1; // Tick of the latest crash
+	private double crashX;
+	private double crashY;
+
+	/**
+	 * Constructs an empty replay buffer covering {@link #REPLAY_SECONDS}.
+	 */
+	public ReplayBuffer() {
+		frameCapacity = (int) Math.round(REPLAY_SECONDS / Game.TICK_SECONDS);
+		frameTicks = new long[frameCapacity];
+		frameStarts = new long[frameCapacity];
+		frameCars = new int[frameCapacity];
+	}
+
+	/**
+	 * Adds the state of the game after a tick as the newest frame.
+	 *
+	 * @param tick     The tick that was simulated.
+	 * @param cars     The cars in the game.
+	 * @param elements The map elements, of which the traffic lights are recorded.
+	 */
+	public void record(long tick, List<Car> cars, List<MapElement> elements) {
+		int slot = (int) (framesWritten % frameCapacity);
+		long oldestKept = framesWritten >= frameCapacity - 1 ? frameStarts[(slot + 1) % frameCapacity] : 0;
+		if (samplesWritten + cars.size() - oldestKept > sampleCapacity) {
+			grow(oldestKept, samplesWritten + cars.size() - oldestKept);
+		}
+
+		frameTicks[slot] = tick;
+		frameStarts[slot] = samplesWritten;
+		frameCars[slot] = cars.size();
+		for (int i = 0; i < cars.size(); i++) {
+			Car car = cars.get(i);
+			int sample = (int) (samplesWritten + i) & (sampleCapacity - 1);
+			ids[sample] = car.getId();
+			xs[sample] = (float) car.getPositionX();
+			ys[sample] = (float) car.getPositionY();
+			headings[sample] = (float) car.getHeading();
+			flags[sample] = car.getStateFlags();
+		}
+		samplesWritten += cars.size();
+
+		if (elements.size() != elementCount) {
+			findLights(elements); // Only happens while the level is being loaded
+		}
+		for (int light = 0; light < lightCount; light++) {
+			TrafficLight trafficLight = (TrafficLight) elements.get(lightIndices[light]);
+			lightStates[slot * lightCount + light] = trafficLight.isGreen() ? LIGHT_GREEN
+					: trafficLight.isAmber() ? LIGHT_AMBER : LIGHT_RED;
+		}
+		framesWritten++;
+	}
+
+	/**
+	 * Tells the buffer that map elements were added or removed, so that the
+	 * traffic lights are looked up again before the next frame.
+	 */
+	public void elementsChanged() {
+		elementCount = -1;
+	}
+
+	/**
+	 * Remembers where the traffic lights are in the element list.
+	 *
+	 * @param elements The map elements of the game.
+	 */
+	private void findLights(List<MapElement> elements) {
+		int lights = 0;
+		for (MapElement element : elements) {
+			if (element instanceof TrafficLight) {
+				lights++;
+			}
+		}
+		lightIndices = new int[lights];
+		lights = 0;
+		for (int i = 0; i < elements.size(); i++) {
+			if (elements.get(i) instanceof TrafficLight) {
+				lightIndices[lights++] = i;
+			}
+		}
+		if (lights != lightCount) {
+			lightCount = lights;
+			lightStates = new byte[lightCount * frameCapacity];
+		}
+		elementCount = elements.size();
+	}
+
+	/**
+	 * Enlarges the car sample ring, keeping the samples still referenced by a
+	 * frame at the same positions.
+	 *
+	 * @param oldest First sample position still in use.
+	 * @param needed Number of sample positions that must fit.
+	 */
+	private void grow(long oldest, long needed) {
+		int capacity = sampleCapacity;
+		while (capacity < needed) {
+			capacity *= 2;
+		}
+		int[] newIds = new int[capacity];
+		float[] newXs = new float[capacity];
+		float[] newYs = new float[capacity];
+		float[] newHeadings = new float[capacity];
+		byte[] newFlags = new byte[capacity];
+		for (long position = oldest; position < samplesWritten; position++) {
+			int from = (int) position & (sampleCapacity - 1);
+			int to = (int) position & (capacity - 1);
+			newIds[to] = ids[from];
+			newXs[to] = xs[from];
+			newYs[to] = ys[from];
+			newHeadings[to] = headings[from];
+			newFlags[to] = flags[from];
+		}
+		ids = newIds;
+		xs = newXs;
+		ys = newYs;
+		headings = newHeadings;
+		flags = newFlags;
+		sampleCapacity = capacity;
+	}
+
+	/**
+	 * Remembers where and when the latest crash happened.
+	 *
+	 * @param tick The tick of the crash.
+	 * @param x    The x-coordinate of the crash site.
+	 * @param y    The y-coordinate of the crash site.
+	 */
+	public void markCrash(long tick, double x, double y) {
+		crashTick = tick;
+		crashX = x;
+		crashY = y;
+	}
+
+	/**
+	 * Returns the number of frames available, the oldest having index 0.
+	 *
+	 * @return the frame count.
+	 */
+	public int getFrameCount() {
+		return (int) Math.min(framesWritten, frameCapacity);
+	}
+
+	/**
+	 * Converts a frame index, 0 being the oldest frame, into its ring slot.
+	 *
+	 * @param frame The frame index.
+	 * @return the slot.
+	 */
+	private int slot(int frame) {
+		return (int) ((framesWritten - getFrameCount() + frame) % frameCapacity);
+	}
+
+	/**
+	 * Returns the index of the newest frame recorded at or before a tick.
+	 *
+	 * @param tick The tick to look for.
+	 * @return the frame index, or 0 if the tick is older than every frame.
+	 */
+	public int frameAt(long tick) {
+		for (int frame = getFrameCount() - 1; frame > 0; frame--) {
+			if (frameTicks[slot(frame)] <= tick) {
+				return frame;
+			}
+		}
+		return 0;
+	}
+
+	public long getTick(int frame) {
+		return frameTicks[slot(frame)];
+	}
+
+	public int getCarCount(int frame) {
+		return frameCars[slot(frame)];
+	}
+
+	private int sample(int frame, int car) {
+		return (int) (frameStarts[slot(frame)] + car) & (sampleCapacity - 1);
+	}
+
+	public int getCarId(int frame, int car) {
+		return ids[sample(frame, car)];
+	}
+
+	public double getCarX(int frame, int car) {
+		return xs[sample(frame, car)];
+	}
+
+	public double getCarY(int frame, int car) {
+		return ys[sample(frame, car)];
+	}
+
+	public double getCarHeading(int frame, int car) {
+		return headings[sample(frame, car)];
+	}
+
+	public boolean isCarStopped(int frame, int car) {
+		return (flags[sample(frame, car)] & 1) != 0;
+	}
+
+	public int getLightCount() {
+		return lightCount;
+	}
+
+	/**
+	 * Returns the colour a traffic light showed in a frame.
+	 *
+	 * @param frame The frame index.
+	 * @param light The place of the light among the lights of the game.
+	 * @return {@link #LIGHT_GREEN}, {@link #LIGHT_AMBER} or {@link #LIGHT_RED}.
+	 */
+	public byte getLightState(int frame, int light) {
+		return lightStates[slot(frame) * lightCount + light];
+	}
+
+	/**
+	 * Returns the tick of the latest crash.
+	 *
+	 * @return the tick, or -1 if no crash has been recorded.
+	 */
+	public long getCrashTick() {
+		return crashTick;
+	}
+
+	public double getCrashX() {
+		return crashX;
+	}
+
+	public double getCrashY() {
+		return crashY;
+	}
+}
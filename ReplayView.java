@@ -0,0 +1,161 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.geometry.Point2D;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Overlay that plays back the frames of a {@link ReplayBuffer} on top of the
+ * paused game. It starts a few seconds before the latest crash, marks the crash
+ * site and lets the player scrub through the recorded frames with a slider.
+ */
+public final class ReplayView extends Pane {
+	private static final double LEAD_UP_SECONDS = 5.0; // Replay starts this long before the crash
+	private final ReplayBuffer replay;
+	private final List<Circle> lightMarkers = new ArrayList<>();
+	private final List<Rectangle> carShapes = new ArrayList<>(); // Reused from frame to frame
+	private final Pane carLayer = new Pane();
+	private final Circle crashMarker;
+	private final Slider slider;
+	private final Label timeLabel;
+	private final Button playButton;
+	private double frame; // Current frame, fractional while playing
+	private boolean playing = true;
+
+	/**
+	 * Constructs the replay overlay.
+	 *
+	 * @param replay  The recorded frames.
+	 * @param lights  The traffic lights of the level, in the order they were
+	 *                recorded.
+	 * @param onClose Called when the player closes the replay.
+	 */
+	public ReplayView(ReplayBuffer replay, List<TrafficLight> lights, Runnable onClose) {
+		this.replay = replay;
+		Rectangle shade = new Rectangle(0, 0, 800, 800);
+		shade.setFill(Color.rgb(255, 255, 255, 0.6));
+		getChildren().addAll(shade, carLayer);
+
+		for (TrafficLight light : lights) {
+			Point2D position = light.getPosition();
+			Circle marker = new Circle(position.getX(), position.getY(), 8);
+			marker.setStroke(Color.BLACK);
+			lightMarkers.add(marker);
+			getChildren().add(marker);
+		}
+
+		crashMarker = new Circle(replay.getCrashX(), replay.getCrashY(), 25);
+		crashMarker.setFill(Color.TRANSPARENT);
+		crashMarker.setStroke(Color.RED);
+		crashMarker.setStrokeWidth(3);
+		crashMarker.setVisible(replay.getCrashTick() >= replay.getTick(0));
+		getChildren().add(crashMarker);
+
+		HBox bar = new HBox(8);
+		bar.setLayoutX(20);
+		bar.setLayoutY(750);
+		playButton = new Button("Pause");
+		playButton.setOnAction(e -> setPlaying(!playing));
+		Button closeButton = new Button("Close");
+		closeButton.setOnAction(e -> onClose.run());
+		slider = new Slider(0, Math.max(0, replay.getFrameCount() - 1), 0);
+		slider.setPrefWidth(520);
+		slider.valueProperty().addListener((observable, oldValue, newValue) -> {
+			if (!playing) {
+				frame = Math.round(newValue.doubleValue());
+				showFrame((int) frame);
+			}
+		});
+		timeLabel = new Label();
+		timeLabel.setFont(Font.font("Arial", FontWeight.BOLD, 14));
+		bar.getChildren().addAll(playButton, closeButton, slider, timeLabel);
+		getChildren().add(bar);
+
+		int crashFrame = crashMarker.isVisible() ? replay.frameAt(replay.getCrashTick()) : replay.getFrameCount() - 1;
+		frame = Math.max(0, crashFrame - LEAD_UP_SECONDS / Game.TICK_SECONDS);
+		showFrame((int) frame);
+	}
+
+	/**
+	 * Moves the playback forward by the given real time.
+	 *
+	 * @param elapsed Seconds since the last call.
+	 */
+	public void advance(double elapsed) {
+		if (!playing) {
+			return;
+		}
+		frame += elapsed / Game.TICK_SECONDS;
+		if (frame >= replay.getFrameCount() - 1) {
+			frame = replay.getFrameCount() - 1;
+			setPlaying(false);
+		}
+		showFrame((int) frame);
+		slider.setValue((int) frame);
+	}
+
+	/**
+	 * Starts or pauses the playback. While paused the slider selects the frame.
+	 *
+	 * @param playing true to play.
+	 */
+	private void setPlaying(boolean playing) {
+		this.playing = playing;
+		playButton.setText(playing ? "Pause" : "Play");
+		if (playing && frame >= replay.getFrameCount() - 1) {
+			frame = 0; // Start again from the beginning
+		}
+	}
+
+	/**
+	 * Draws one recorded frame.
+	 *
+	 * @param index The frame index, 0 being the oldest.
+	 */
+	private void showFrame(int index) {
+		if (replay.getFrameCount() == 0) {
+			return;
+		}
+		int shown = Math.max(0, Math.min(index, replay.getFrameCount() - 1));
+		int carCount = replay.getCarCount(shown);
+		while (carShapes.size() < carCount) {
+			Rectangle shape = new Rectangle(0, 0, 20, 10);
+			shape.setArcWidth(5);
+			shape.setArcHeight(5);
+			carShapes.add(shape);
+			carLayer.getChildren().add(shape);
+		}
+		for (int i = 0; i < carShapes.size(); i++) {
+			Rectangle shape = carShapes.get(i);
+			shape.setVisible(i < carCount);
+			if (i < carCount) {
+				shape.setTranslateX(replay.getCarX(shown, i) - 10);
+				shape.setTranslateY(replay.getCarY(shown, i) - 5);
+				shape.setRotate(replay.getCarHeading(shown, i));
+				shape.setFill(replay.isCarStopped(shown, i) ? Color.DARKRED : Color.DODGERBLUE);
+			}
+		}
+		for (int i = 0; i < lightMarkers.size() && i < replay.getLightCount(); i++) {
+			byte state = replay.getLightState(shown, i);
+			lightMarkers.get(i).setFill(state == ReplayBuffer.LIGHT_GREEN ? Color.GREEN
+					: state == ReplayBuffer.LIGHT_AMBER ? Color.ORANGE : Color.RED); // As TrafficLight draws them
+		}
+		double seconds = (replay.getTick(shown) - replay.getCrashTick()) * Game.TICK_SECONDS;
+		timeLabel.setText(crashMarker.isVisible() ? String.format("%+.1f s", seconds)
+				: String.format("%.1f s", (shown - replay.getFrameCount() + 1) * Game.TICK_SECONDS));
+	}
+}
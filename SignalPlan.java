@@ -0,0 +1,253 @@
+package application;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * A fixed time signal plan for the lights of one intersection, declared in the
+ * level file. The plan cycles through its phases; in each phase one group of
+ * lights is green, then amber, and then every light of the plan is red for an
+ * all-red clearance time before the next phase starts. The offset shifts the
+ * cycle so that the plans of neighbouring intersections can be coordinated.
+ *
+ * <pre>
+ * SignalPlan plan offsetSeconds
+ * SignalPhase plan greenSeconds amberSeconds allRedSeconds light [light ...]
+ * </pre>
+ *
+ * Lights are numbered in the order of their lines in the level file. The plan
+ * runs on the game's timing wheel with one timer per stage change.
+ */
+public class SignalPlan implements TimingWheel.Timer {
+	private static final int GREEN = 0;
+	private static final int AMBER = 1;
+	private static final int ALL_RED = 2;
+	private final int index;
+	private double offset = 0; // Seconds by which the start of the cycle is delayed
+	private final List<Phase> phases = new ArrayList<>();
+	private TrafficLight[] lights = new TrafficLight[0]; // Every light of the plan
+	private TimingWheel wheel;
+	private int phase = 0; // Current phase
+	private int stage = GREEN; // Current stage of that phase
+	private long stageEnd = -1; // Tick at which the current stage ends, -1 while the plan is not running
+	private long timer = -1;
+
+	/**
+	 * One phase: the lights that are green together and how long each stage
+	 * lasts, in ticks.
+	 */
+	private static class Phase {
+		private final int[] lightIndices;
+		private final long[] stageTicks; // Green, amber and all-red
+		private TrafficLight[] lights;
+
+		private Phase(int[] lightIndices, long green, long amber, long allRed) {
+			this.lightIndices = lightIndices;
+			this.stageTicks = new long[] { green, amber, allRed };
+		}
+	}
+
+	/**
+	 * Constructs an empty plan.
+	 *
+	 * @param index The number of the plan in the level file.
+	 */
+	public SignalPlan(int index) {
+		this.index = index;
+	}
+
+	public void setOffset(double offset) {
+		this.offset = offset;
+	}
+
+	/**
+	 * Adds a phase at the end of the cycle.
+	 *
+	 * @param green        Green time in seconds, more than 0.
+	 * @param amber        Amber time in seconds.
+	 * @param allRed       All-red clearance time in seconds.
+	 * @param lightIndices The lights that are green in this phase, by their order
+	 *                     in the level file.
+	 */
+	public void addPhase(double green, double amber, double allRed, int[] lightIndices) {
+		if (green <= 0 || amber < 0 || allRed < 0) {
+			throw new IllegalArgumentException("Signal phase times must be positive");
+		}
+		phases.add(new Phase(lightIndices, ticks(green), ticks(amber), ticks(allRed)));
+	}
+
+	private static long ticks(double seconds) {
+		return Math.max(0, Math.round(seconds / Game.TICK_SECONDS));
+	}
+
+	/**
+	 * Starts running the plan. The position in the cycle follows from the tick
+	 * and the offset, so a plan started late is in step with one started at the
+	 * beginning of the game.
+	 *
+	 * @param wheel       The timing wheel of the game.
+	 * @param levelLights The traffic lights of the level, in file order.
+	 * @param tick        The current tick.
+	 */
+	public void start(TimingWheel wheel, List<TrafficLight> levelLights, long tick) {
+		resolve(wheel, levelLights);
+		if (phases.isEmpty()) {
+			return;
+		}
+		long cycle = 0;
+		for (Phase p : phases) {
+			cycle += p.stageTicks[GREEN] + p.stageTicks[AMBER] + p.stageTicks[ALL_RED];
+		}
+		long position = Math.floorMod(tick - ticks(offset), cycle);
+		phase = 0;
+		stage = GREEN;
+		while (position >= phases.get(phase).stageTicks[stage]) {
+			position -= phases.get(phase).stageTicks[stage];
+			nextStage();
+		}
+		stageEnd = tick + phases.get(phase).stageTicks[stage] - position;
+		show();
+		timer = wheel.schedule(this, stageEnd);
+	}
+
+	/**
+	 * Finds the lights of every phase.
+	 *
+	 * @param wheel       The timing wheel of the game.
+	 * @param levelLights The traffic lights of the level, in file order.
+	 */
+	private void resolve(TimingWheel wheel, List<TrafficLight> levelLights) {
+		this.wheel = wheel;
+		List<TrafficLight> all = new ArrayList<>();
+		for (Phase p : phases) {
+			List<TrafficLight> phaseLights = new ArrayList<>();
+			for (int light : p.lightIndices) {
+				if (light >= 0 && light < levelLights.size()) {
+					phaseLights.add(levelLights.get(light));
+					if (!all.contains(levelLights.get(light))) {
+						all.add(levelLights.get(light));
+					}
+				} else {
+					System.out.println("Signal plan " + index + " refers to missing traffic light " + light);
+				}
+			}
+			p.lights = phaseLights.toArray(new TrafficLight[0]);
+		}
+		lights = all.toArray(new TrafficLight[0]);
+		for (TrafficLight light : lights) {
+			light.setPlan(this);
+		}
+	}
+
+	/**
+	 * Stops the plan. Its lights keep their current colour.
+	 */
+	public void stop() {
+		if (wheel != null) {
+			wheel.cancel(timer);
+		}
+		stageEnd = -1;
+	}
+
+	/**
+	 * Moves to the next stage with a length above zero when the current one ends.
+	 *
+	 * @param tick The tick the stage ended in.
+	 */
+	@Override
+	public void expire(long tick) {
+		do {
+			nextStage();
+		} while (phases.get(phase).stageTicks[stage] == 0);
+		stageEnd = tick + phases.get(phase).stageTicks[stage];
+		show();
+		timer = wheel.schedule(this, stageEnd);
+	}
+
+	private void nextStage() {
+		if (++stage > ALL_RED) {
+			stage = GREEN;
+			phase = (phase + 1) % phases.size();
+		}
+	}
+
+	/**
+	 * Sets the lights to the current stage.
+	 */
+	private void show() {
+		for (TrafficLight light : lights) {
+			light.setGreen(false);
+		}
+		if (stage == GREEN) {
+			for (TrafficLight light : phases.get(phase).lights) {
+				light.setGreen(true);
+			}
+		} else if (stage == AMBER) {
+			for (TrafficLight light : phases.get(phase).lights) {
+				light.setAmber();
+			}
+		}
+	}
+
+	/**
+	 * Writes the position of the plan in its cycle to a snapshot buffer.
+	 *
+	 * @param buffer The buffer receiving the state.
+	 */
+	public void writeState(ByteBuffer buffer) {
+		buffer.putInt(phase);
+		buffer.putInt(stage);
+		buffer.putLong(stageEnd);
+	}
+
+	/**
+	 * Restores the position written by {@link #writeState(ByteBuffer)} and
+	 * continues the plan from there. The colours of the lights are restored with
+	 * the lights themselves.
+	 *
+	 * @param buffer      The buffer holding the state.
+	 * @param wheel       The timing wheel of the restored game.
+	 * @param levelLights The traffic lights of the level, in file order.
+	 */
+	public void readState(ByteBuffer buffer, TimingWheel wheel, List<TrafficLight> levelLights) {
+		stop();
+		resolve(wheel, levelLights);
+		phase = buffer.getInt();
+		stage = buffer.getInt();
+		stageEnd = buffer.getLong();
+		if (stageEnd >= 0 && phase < phases.size()) {
+			timer = wheel.schedule(this, stageEnd);
+		}
+	}
+
+	/**
+	 * Creates a plan with the same offset and phases that is not bound to any
+	 * lights yet, for a copy of the game.
+	 *
+	 * @return the new plan.
+	 */
+	public SignalPlan copy() {
+		SignalPlan copy = new SignalPlan(index);
+		copy.offset = offset;
+		for (Phase p : phases) {
+			copy.phases.add(new Phase(p.lightIndices, p.stageTicks[GREEN], p.stageTicks[AMBER], p.stageTicks[ALL_RED]));
+		}
+		return copy;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public int getPhaseCount() {
+		return phases.size();
+	}
+
+	public boolean isRunning() {
+		return stageEnd >= 0;
+	}
+}
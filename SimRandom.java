@@ -0,0 +1,64 @@
+package application;
+
+import java.util.Random;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Random number source of the simulation. It behaves like java.util.Random but
+ * keeps its whole state in a single long that can be read and written, so a
+ * saved game continues with exactly the same random numbers after it is
+ * restored. The numbers come from the SplitMix64 generator.
+ */
+public class SimRandom extends Random {
+	private static final long serialVersionUID = 1L;
+	private long state; // Assigned by setSeed, which the Random constructor calls
+
+	/**
+	 * Constructs a random number source seeded from the current time.
+	 */
+	public SimRandom() {
+		this(System.nanoTime());
+	}
+
+	/**
+	 * Constructs a random number source with a fixed seed, so that runs with the
+	 * same seed produce the same traffic.
+	 *
+	 * @param seed The seed.
+	 */
+	public SimRandom(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public synchronized void setSeed(long seed) {
+		state = seed;
+	}
+
+	@Override
+	protected int next(int bits) {
+		state += 0x9E3779B97F4A7C15L;
+		long z = state;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (int) (z >>> (64 - bits));
+	}
+
+	/**
+	 * Returns the internal state, to be stored in a snapshot. Cached values of
+	 * nextGaussian are not part of it, so the simulation does not use that
+	 * method.
+	 *
+	 * @return the state of the generator.
+	 */
+	public long getState() {
+		return state;
+	}
+
+	public void setState(long state) {
+		this.state = state;
+	}
+}
@@ -0,0 +1,323 @@
+package application;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Local HTTP server for driving many simulations from scripts. It only listens
+ * on the loopback address. Every session has its own game and runs it on its
+ * own thread, which is a virtual thread when the Java runtime supports them and
+ * an ordinary daemon thread otherwise. All answers are JSON.
+ *
+ * <pre>
+ * POST   /sessions?level=levels/level1.txt&amp;seed=7   create a session (or send the level text as the body)
+ * GET    /sessions                                  list the session ids
+ * POST   /sessions/{id}/step?ticks=600              run ticks and return the stats
+ * POST   /sessions/{id}/lights/{index}?green=true   set a light, or toggle it without "green"
+ * GET    /sessions/{id}/stats                       return the stats
+ * DELETE /sessions/{id}                             close the session
+ * </pre>
+ *
+ * <pre>
+ * java application.SimulationServer --port 8765
+ * </pre>
+ */
+public class SimulationServer {
+	public static final int DEFAULT_PORT = 8765;
+	public static final int MAX_SESSIONS = 1000; // Keeps the memory of the server bounded
+	public static final long MAX_STEP_TICKS = 60L * 60 * 60; // One simulated hour per request
+	private final Map<String, SimulationSession> sessions = new ConcurrentHashMap<>();
+	private final AtomicInteger sessionCount = new AtomicInteger(); // Sessions open or being created
+	private final AtomicLong nextId = new AtomicLong(1);
+	private final ThreadFactory sessionThreads = virtualThreadFactory();
+	private final HttpServer server;
+
+	/**
+	 * Creates the server on the loopback address. It does not accept requests
+	 * until {@link #start()} is called.
+	 *
+	 * @param port The port to listen on, or 0 for any free port.
+	 * @throws IOException if the port cannot be bound.
+	 */
+	public SimulationServer(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/sessions", this::handle);
+		server.setExecutor(requestExecutor());
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests and closes every session.
+	 */
+	public void stop() {
+		server.stop(0);
+		for (String id : sessions.keySet()) {
+			closeSession(id);
+		}
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Returns a factory for virtual threads, looked up by reflection so that the
+	 * game still runs on Java versions without them.
+	 *
+	 * @return the virtual thread factory, or a daemon thread factory.
+	 */
+	private static ThreadFactory virtualThreadFactory() {
+		try {
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "session-", 1L);
+			return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			AtomicLong count = new AtomicLong(1);
+			return work -> {
+				Thread thread = new Thread(work, "session-" + count.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			};
+		}
+	}
+
+	/**
+	 * Returns the executor for HTTP requests: a new virtual thread per request
+	 * where available, otherwise a pool of daemon threads.
+	 *
+	 * @return the executor.
+	 */
+	private ExecutorService requestExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+					.invoke(null, sessionThreads);
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			return Executors.newCachedThreadPool(sessionThreads);
+		}
+	}
+
+	/**
+	 * Routes a request below /sessions.
+	 *
+	 * @param exchange The request and its response.
+	 * @throws IOException if the response cannot be sent.
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		String method = exchange.getRequestMethod();
+		String[] parts = exchange.getRequestURI().getPath().split("/"); // "", "sessions", id, ...
+		Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+		try {
+			if (parts.length == 2) {
+				if ("POST".equals(method)) {
+					send(exchange, 201, createSession(query, exchange.getRequestBody()));
+				} else if ("GET".equals(method)) {
+					StringBuilder ids = new StringBuilder("[");
+					for (String id : sessions.keySet()) {
+						ids.append(ids.length() == 1 ? "" : ", ").append(HeadlessRunner.jsonString(id));
+					}
+					send(exchange, 200, "{\"sessions\": " + ids + "]}");
+				} else {
+					sendError(exchange, 405, "Method not allowed");
+				}
+				return;
+			}
+
+			SimulationSession session = sessions.get(parts[2]);
+			if (session == null) {
+				sendError(exchange, 404, "No session " + parts[2]);
+				return;
+			}
+			String action = parts.length > 3 ? parts[3] : "";
+			if (action.isEmpty() && "DELETE".equals(method)) {
+				closeSession(session.getId());
+				send(exchange, 200, "{\"closed\": " + HeadlessRunner.jsonString(session.getId()) + "}");
+			} else if ("step".equals(action) && "POST".equals(method)) {
+				long ticks = Long.parseLong(query.getOrDefault("ticks", "1"));
+				if (ticks < 0 || ticks > MAX_STEP_TICKS) {
+					sendError(exchange, 400, "ticks must be between 0 and " + MAX_STEP_TICKS);
+					return;
+				}
+				send(exchange, 200, session.step(ticks));
+			} else if ("lights".equals(action) && parts.length == 5 && "POST".equals(method)) {
+				String green = query.get("green");
+				send(exchange, 200,
+						session.setLight(Integer.parseInt(parts[4]), green == null ? null : Boolean.valueOf(green)));
+			} else if ("stats".equals(action) && "GET".equals(method)) {
+				send(exchange, 200, session.stats());
+			} else {
+				sendError(exchange, 404, "Unknown request " + method + " " + exchange.getRequestURI().getPath());
+			}
+		} catch (IllegalArgumentException e) {
+			sendError(exchange, 400, e.getMessage()); // Includes malformed numbers
+		} catch (Exception e) {
+			e.printStackTrace();
+			sendError(exchange, 500, String.valueOf(e));
+		}
+	}
+
+	/**
+	 * Creates a session from a level file named in the query, or from level text
+	 * sent as the request body.
+	 *
+	 * @param query The query parameters: level, seed.
+	 * @param body  The request body.
+	 * @return the JSON answer.
+	 * @throws IOException if the level cannot be read.
+	 */
+	private String createSession(Map<String, String> query, InputStream body) throws IOException {
+		if (!reserveSession()) {
+			throw new IllegalArgumentException("Too many sessions, the limit is " + MAX_SESSIONS);
+		}
+		boolean created = false;
+		try {
+			String answer = loadSession(query, body);
+			created = true;
+			return answer;
+		} finally {
+			if (!created) {
+				sessionCount.decrementAndGet(); // The level could not be loaded
+			}
+		}
+	}
+
+	/**
+	 * Takes one of the {@link #MAX_SESSIONS} places for a new session. The count
+	 * is raised only if it is still below the limit, so requests creating
+	 * sessions at the same time cannot pass it together.
+	 *
+	 * @return false if every place is taken.
+	 */
+	private boolean reserveSession() {
+		for (int count = sessionCount.get(); count < MAX_SESSIONS; count = sessionCount.get()) {
+			if (sessionCount.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes a session and gives its place back.
+	 *
+	 * @param id The session id.
+	 */
+	private void closeSession(String id) {
+		SimulationSession session = sessions.remove(id);
+		if (session != null) { // Not closed already by a request at the same time
+			sessionCount.decrementAndGet();
+			session.close();
+		}
+	}
+
+	/**
+	 * Loads the level of a new session and starts it, on a place already taken.
+	 *
+	 * @param query The query parameters: level, seed.
+	 * @param body  The request body.
+	 * @return the JSON answer.
+	 * @throws IOException if the level cannot be read.
+	 */
+	private String loadSession(Map<String, String> query, InputStream body) throws IOException {
+		String text = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+		String level = query.getOrDefault("level", "request body");
+		Game game = new Game(15, 15);
+		if (!text.isBlank()) {
+			LevelLoader.loadLevelText(game, text);
+		} else if (query.containsKey("level")) {
+			try {
+				LevelLoader.loadLevel(game, level);
+			} catch (FileNotFoundException e) {
+				throw new IllegalArgumentException("Level file not found: " + level);
+			}
+		} else {
+			throw new IllegalArgumentException("Send a level parameter or the level text as the body");
+		}
+		game.setSeed(Long.parseLong(query.getOrDefault("seed", "1")));
+
+		String id = Long.toString(nextId.getAndIncrement());
+		SimulationSession session = new SimulationSession(id, level, game, sessionThreads);
+		sessions.put(id, session);
+		return String.format("{\"id\": %s, \"lights\": %d, \"paths\": %d}", HeadlessRunner.jsonString(id),
+				game.getTrafficLights().size(), game.getPaths().size());
+	}
+
+	/**
+	 * Splits a raw query string into decoded parameters.
+	 *
+	 * @param rawQuery The query, or null.
+	 * @return the parameters by name.
+	 */
+	private static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> query = new HashMap<>();
+		if (rawQuery == null) {
+			return query;
+		}
+		for (String pair : rawQuery.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = equals < 0 ? pair : pair.substring(0, equals);
+			String value = equals < 0 ? "" : pair.substring(equals + 1);
+			query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return query;
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		send(exchange, status, "{\"error\": " + HeadlessRunner.jsonString(String.valueOf(message)) + "}");
+	}
+
+	/**
+	 * Sends a JSON response and closes the exchange.
+	 *
+	 * @param exchange The request and its response.
+	 * @param status   The HTTP status code.
+	 * @param json     The response body.
+	 * @throws IOException if the response cannot be sent.
+	 */
+	private static void send(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = DEFAULT_PORT;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if ("--port".equals(args[i])) {
+				port = Integer.parseInt(args[i + 1]);
+			} else {
+				System.err.println("Unknown option: " + args[i]);
+			}
+		}
+		SimulationServer server = new SimulationServer(port);
+		server.start();
+		System.out.println("Simulation server listening on http://127.0.0.1:" + server.getPort() + "/sessions");
+	}
+}
@@ -0,0 +1,138 @@
+package application;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * One simulation driven through the {@link SimulationServer}. Every session owns
+ * its own game, without a user interface, and a single thread that runs all
+ * work on that game, so requests for the same session never run at the same
+ * time while different sessions run in parallel.
+ */
+public class SimulationSession {
+	private final String id;
+	private final String level;
+	private final Game game;
+	private final ExecutorService thread;
+
+	/**
+	 * Creates a session for a loaded game.
+	 *
+	 * @param id            The id of the session.
+	 * @param level         Name of the level, reported in the stats.
+	 * @param game          The game, with its level already loaded.
+	 * @param threadFactory Creates the thread of the session.
+	 */
+	public SimulationSession(String id, String level, Game game, ThreadFactory threadFactory) {
+		this.id = id;
+		this.level = level;
+		this.game = game;
+		this.thread = Executors.newSingleThreadExecutor(threadFactory);
+		game.setWinConditions(Integer.MAX_VALUE, Integer.MAX_VALUE); // Sessions run until they are closed
+		game.createTraffic();
+	}
+
+	/**
+	 * Runs a piece of work on the thread of the session and waits for its result.
+	 *
+	 * @param work The work, which may use the game.
+	 * @return the result of the work.
+	 * @throws Exception whatever the work threw.
+	 */
+	private <T> T run(Callable<T> work) throws Exception {
+		try {
+			return thread.submit(work).get();
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+	}
+
+	/**
+	 * Advances the simulation.
+	 *
+	 * @param ticks Number of ticks to run.
+	 * @return the stats after the last tick.
+	 * @throws Exception if the simulation failed.
+	 */
+	public String step(long ticks) throws Exception {
+		return run(() -> {
+			for (long i = 0; i < ticks; i++) {
+				game.tick();
+			}
+			return statsJson();
+		});
+	}
+
+	/**
+	 * Toggles a traffic light, or sets it to a colour.
+	 *
+	 * @param index The index of the light, in level file order.
+	 * @param green The new colour, or null to toggle.
+	 * @return the stats after the change.
+	 * @throws Exception if there is no light with that index.
+	 */
+	public String setLight(int index, Boolean green) throws Exception {
+		return run(() -> {
+			List<TrafficLight> lights = game.getTrafficLights();
+			if (index < 0 || index >= lights.size()) {
+				throw new IllegalArgumentException("No traffic light " + index);
+			}
+			if (green == null) {
+				lights.get(index).toggle();
+			} else {
+				lights.get(index).setGreen(green);
+			}
+			return statsJson();
+		});
+	}
+
+	/**
+	 * Returns the current stats of the session.
+	 *
+	 * @return the stats as a JSON object.
+	 * @throws Exception if the session thread failed.
+	 */
+	public String stats() throws Exception {
+		return run(this::statsJson);
+	}
+
+	/**
+	 * Describes the state of the game. Only called on the session thread.
+	 *
+	 * @return the JSON object.
+	 */
+	private String statsJson() {
+		StringBuilder lights = new StringBuilder("[");
+		for (TrafficLight light : game.getTrafficLights()) {
+			lights.append(lights.length() == 1 ? "" : ", ").append(light.isGreen());
+		}
+		lights.append(']');
+		return String.format(Locale.ROOT,
+				"{\"id\": %s, \"level\": %s, \"ticks\": %d, \"time\": %.3f, \"cars\": %d, \"arrivals\": %d, "
+						+ "\"crashes\": %d, \"gridlocks\": %d, \"meanTravelTime\": %.3f, \"backlog\": %d, \"meanBacklogWait\": %.3f, "
+						+ "\"lights\": %s, \"paths\": %s}",
+				HeadlessRunner.jsonString(id), HeadlessRunner.jsonString(level), game.getTickCount(),
+				game.getSimulationTime(), game.getCars().size(), game.getCarsArrived(), game.getCrashes(),
+				game.getGridlockCount(), game.getMeanTravelTime(), game.getBacklogLength(), game.getMeanBacklogWait(), lights,
+				game.pathStatisticsJson());
+	}
+
+	/**
+	 * Stops the thread of the session. Work already submitted still finishes.
+	 */
+	public void close() {
+		thread.shutdown();
+	}
+
+	public String getId() {
+		return id;
+	}
+}
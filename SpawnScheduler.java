@@ -0,0 +1,184 @@
+package application;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Decides when and where new cars enter the game. Every path start is an entry
+ * with its own demand profile. The next arrival time of each entry is sampled
+ * ahead of time and set as a timer on the game's timing wheel for the tick in
+ * which it is due, so each arrival costs O(1). Arrivals that are due wait in
+ * order until the game collects them with {@link #pollDue()}.
+ *
+ * The arrivals of a tick are taken, and the arrivals after them drawn, in order
+ * of their time and then of their path index, never in the order the wheel
+ * runs the timers. That order depends on when each timer was set, which a
+ * restored game does not know, so it must not decide which path gets which
+ * random number.
+ */
+public class SpawnScheduler {
+	private List<Entry> entries = new ArrayList<>(); // Every entry in path index order, including idle ones
+	private ArrayDeque<Path> due = new ArrayDeque<>(); // Paths of the arrivals due so far, in arrival order
+	private PriorityQueue<Entry> expired = new PriorityQueue<>(); // Entries whose timer ran, by arrival time and index
+	private final TimingWheel wheel;
+	private Random random;
+
+	/**
+	 * A path start together with its demand and the time of its next arrival.
+	 */
+	private class Entry implements TimingWheel.Timer, Comparable<Entry> {
+		private final int index;
+		private final Path path;
+		private final DemandProfile demand;
+		private double nextArrival;
+		private long timer = -1; // Handle of the wheel timer of the next arrival
+
+		private Entry(int index, Path path, DemandProfile demand) {
+			this.index = index;
+			this.path = path;
+			this.demand = demand;
+		}
+
+		/**
+		 * Sets the timer for the next arrival, if there is one.
+		 */
+		private void schedule() {
+			if (nextArrival != Double.POSITIVE_INFINITY) {
+				timer = wheel.schedule(this, tickOf(nextArrival));
+			}
+		}
+
+		@Override
+		public void expire(long tick) {
+			expired.add(this); // Taken in order by collect()
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			return nextArrival != other.nextArrival ? Double.compare(nextArrival, other.nextArrival)
+					: Integer.compare(index, other.index);
+		}
+	}
+
+	/**
+	 * Constructs a scheduler for the given paths and samples the first arrival of
+	 * every entry. Paths without a demand profile use the default one.
+	 *
+	 * @param paths         The paths of the game, by index.
+	 * @param demands       The demand profiles declared in the level, by path
+	 *                      index.
+	 * @param defaultDemand The profile for paths without their own demand.
+	 * @param startTime     The simulated time at which spawning starts.
+	 * @param random        The random number source.
+	 * @param wheel         The timing wheel of the game.
+	 */
+	public SpawnScheduler(Map<Integer, Path> paths, Map<Integer, DemandProfile> demands,
+			DemandProfile defaultDemand, double startTime, Random random, TimingWheel wheel) {
+		this.random = random;
+		this.wheel = wheel;
+		List<Integer> indices = new ArrayList<>(paths.keySet());
+		indices.sort(null);
+		for (int index : indices) {
+			Entry entry = new Entry(index, paths.get(index), demands.getOrDefault(index, defaultDemand));
+			entry.nextArrival = entry.demand.nextArrival(startTime, random);
+			entries.add(entry);
+			entry.schedule();
+		}
+	}
+
+	/**
+	 * Returns the tick at the start of which an arrival time has been reached.
+	 *
+	 * @param time The simulated arrival time.
+	 * @return the first tick whose start time is not before it.
+	 */
+	private static long tickOf(double time) {
+		return (long) Math.ceil(time / Game.TICK_SECONDS - 1e-9); // Rounding errors must not delay a whole tick
+	}
+
+	/**
+	 * Writes the next arrival time of every entry to a snapshot buffer.
+	 *
+	 * @param buffer The buffer receiving the state.
+	 */
+	public void writeState(ByteBuffer buffer) {
+		buffer.putInt(entries.size());
+		for (Entry entry : entries) {
+			buffer.putInt(entry.index);
+			buffer.putDouble(entry.nextArrival);
+		}
+	}
+
+	/**
+	 * Restores the arrival times written by {@link #writeState(ByteBuffer)} and
+	 * sets the timers for them.
+	 *
+	 * @param buffer The buffer holding the state.
+	 */
+	public void readState(ByteBuffer buffer) {
+		cancel();
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			int index = buffer.getInt();
+			double nextArrival = buffer.getDouble();
+			for (Entry entry : entries) {
+				if (entry.index == index) {
+					entry.nextArrival = nextArrival;
+				}
+			}
+		}
+		for (Entry entry : entries) {
+			entry.schedule();
+		}
+	}
+
+	/**
+	 * Cancels the timers of every entry and forgets arrivals not yet collected,
+	 * before the scheduler is replaced or restored.
+	 */
+	public void cancel() {
+		for (Entry entry : entries) {
+			wheel.cancel(entry.timer);
+		}
+		expired.clear();
+		due.clear();
+	}
+
+	/**
+	 * Takes the arrivals whose timers ran, earliest first, and draws the arrival
+	 * after each. An entry whose next arrival falls in the current tick as well
+	 * is taken again.
+	 */
+	private void collect() {
+		Entry entry;
+		while ((entry = expired.poll()) != null) {
+			due.addLast(entry.path);
+			entry.nextArrival = entry.demand.nextArrival(entry.nextArrival, random);
+			if (entry.nextArrival != Double.POSITIVE_INFINITY && tickOf(entry.nextArrival) <= wheel.getCurrentTick()) {
+				expired.add(entry);
+			} else {
+				entry.schedule();
+			}
+		}
+	}
+
+	/**
+	 * Returns the path of the earliest arrival that has become due and not been
+	 * collected yet. The wheel must have been advanced to the current tick. Call
+	 * repeatedly until it returns null to collect every arrival of a tick.
+	 *
+	 * @return the path a car should be spawned on, or null if nothing is due.
+	 */
+	public Path pollDue() {
+		collect();
+		return due.pollFirst();
+	}
+}
@@ -0,0 +1,217 @@
+package application;
+
+import java.util.Arrays;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Hashed timing wheel that runs timed actions on a given tick. Every timer is
+ * put in the slot of its tick modulo the number of slots, so scheduling and
+ * cancelling cost O(1), and advancing one tick only looks at the timers of one
+ * slot. Timers more than one turn of the wheel ahead stay in their slot until
+ * their turn comes.
+ *
+ * Timers are kept in parallel arrays and linked by index, and released entries
+ * are reused, so once the arrays have grown to the largest number of pending
+ * timers the wheel allocates nothing.
+ */
+public class TimingWheel {
+	private static final int SLOTS = 512; // A power of two, about 8.5 seconds of ticks per turn
+	private static final int NONE = -1;
+
+	/**
+	 * An action run by the wheel when its tick is reached.
+	 */
+	public interface Timer {
+
+		/**
+		 * Runs the action.
+		 *
+		 * @param tick The tick the timer was set for.
+		 */
+		void expire(long tick);
+	}
+
+	private final int[] heads = new int[SLOTS + 1]; // First timer of every slot; the extra slot holds due timers
+	private final int[] tails = new int[SLOTS + 1]; // Last timer of every slot, new timers are appended
+	private Timer[] timers = new Timer[64];
+	private long[] deadlines = new long[64];
+	private int[] slots = new int[64]; // Slot each pending timer is linked into
+	private int[] next = new int[64];
+	private int[] previous = new int[64];
+	private int[] generations = new int[64]; // Changed on every release, so stale handles can be recognised
+	private int freeList = NONE; // Released entries, linked through next
+	private int used = 0; // Entries handed out at least once
+	private int pending = 0;
+	private long currentTick; // Last tick that has been run
+	private boolean running = false; // Whether the due timers of currentTick are being run
+
+	/**
+	 * Creates an empty wheel.
+	 *
+	 * @param startTick The tick the wheel starts at; the first tick run is the
+	 *                  one after it.
+	 */
+	public TimingWheel(long startTick) {
+		currentTick = startTick;
+		Arrays.fill(heads, NONE);
+		Arrays.fill(tails, NONE);
+	}
+
+	/**
+	 * Sets a timer for a tick. A timer for the current tick or an earlier one
+	 * runs on the next tick, or still in the current one if a timer of the
+	 * current tick sets it.
+	 *
+	 * @param timer The action to run.
+	 * @param tick  The tick to run it on.
+	 * @return a handle for {@link #cancel(long)}.
+	 */
+	public long schedule(Timer timer, long tick) {
+		int entry = allocate();
+		timers[entry] = timer;
+		if (running && tick <= currentTick) {
+			deadlines[entry] = currentTick;
+			link(entry, SLOTS); // Joins the timers being run
+		} else {
+			deadlines[entry] = Math.max(tick, currentTick + 1);
+			link(entry, (int) (deadlines[entry] & (SLOTS - 1)));
+		}
+		pending++;
+		return ((long) generations[entry] << 32) | entry;
+	}
+
+	/**
+	 * Cancels a timer that has not run yet. Handles of timers that already ran or
+	 * were cancelled are ignored.
+	 *
+	 * @param handle The handle returned by {@link #schedule(Timer, long)}.
+	 * @return true if the timer was pending.
+	 */
+	public boolean cancel(long handle) {
+		int entry = entryOf(handle);
+		if (entry == NONE) {
+			return false;
+		}
+		unlink(entry);
+		release(entry);
+		pending--;
+		return true;
+	}
+
+	/**
+	 * Runs every timer up to and including a tick, in tick order and, within a
+	 * tick, in the order they were set. The due timers of a tick are first moved
+	 * out of their slot, so a running timer may set or cancel any other timer.
+	 *
+	 * @param tick The tick to advance to.
+	 */
+	public void advanceTo(long tick) {
+		while (currentTick < tick) {
+			currentTick++;
+			int slot = (int) (currentTick & (SLOTS - 1));
+			for (int entry = heads[slot]; entry != NONE;) {
+				int following = next[entry];
+				if (deadlines[entry] <= currentTick) {
+					unlink(entry);
+					link(entry, SLOTS);
+				}
+				entry = following;
+			}
+			running = true;
+			while (heads[SLOTS] != NONE) {
+				int entry = heads[SLOTS];
+				Timer timer = timers[entry];
+				unlink(entry);
+				release(entry);
+				pending--;
+				timer.expire(currentTick);
+			}
+			running = false;
+		}
+	}
+
+	/**
+	 * Returns the tick a pending timer is set for.
+	 *
+	 * @param handle The handle of the timer.
+	 * @return the tick, or -1 if the timer is not pending.
+	 */
+	public long getDeadline(long handle) {
+		int entry = entryOf(handle);
+		return entry == NONE ? -1 : deadlines[entry];
+	}
+
+	public int getPendingCount() {
+		return pending;
+	}
+
+	public long getCurrentTick() {
+		return currentTick;
+	}
+
+	/**
+	 * Finds the entry of a handle.
+	 *
+	 * @param handle A handle returned by {@link #schedule(Timer, long)}.
+	 * @return the entry, or NONE if the timer is no longer pending.
+	 */
+	private int entryOf(long handle) {
+		int entry = (int) handle;
+		if (entry < 0 || entry >= used || generations[entry] != (int) (handle >>> 32) || timers[entry] == null) {
+			return NONE;
+		}
+		return entry;
+	}
+
+	private int allocate() {
+		if (freeList != NONE) {
+			int entry = freeList;
+			freeList = next[entry];
+			return entry;
+		}
+		if (used == timers.length) {
+			timers = Arrays.copyOf(timers, used * 2);
+			deadlines = Arrays.copyOf(deadlines, used * 2);
+			slots = Arrays.copyOf(slots, used * 2);
+			next = Arrays.copyOf(next, used * 2);
+			previous = Arrays.copyOf(previous, used * 2);
+			generations = Arrays.copyOf(generations, used * 2);
+		}
+		return used++;
+	}
+
+	private void link(int entry, int slot) {
+		slots[entry] = slot;
+		next[entry] = NONE;
+		previous[entry] = tails[slot];
+		if (tails[slot] == NONE) {
+			heads[slot] = entry;
+		} else {
+			next[tails[slot]] = entry;
+		}
+		tails[slot] = entry;
+	}
+
+	private void unlink(int entry) {
+		int slot = slots[entry];
+		if (previous[entry] == NONE) {
+			heads[slot] = next[entry];
+		} else {
+			next[previous[entry]] = next[entry];
+		}
+		if (next[entry] == NONE) {
+			tails[slot] = previous[entry];
+		} else {
+			previous[next[entry]] = previous[entry];
+		}
+	}
+
+	private void release(int entry) {
+		timers[entry] = null;
+		generations[entry]++;
+		next[entry] = freeList;
+		freeList = entry;
+	}
+}
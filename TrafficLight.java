@@ -13,7 +13,8 @@ import javafx.scene.shape.Line;
 /**
  * Simulates a traffic light at intersections. It can toggle between green and
  * red states and affects the flow of car traffic. Cars will react to the
- * light's current state to stop or proceed.
+ * light's current state to stop or proceed. Lights run by a {@link SignalPlan}
+ * also show amber between green and red, which cars treat like red.
  */
 public class TrafficLight extends MapElement {
 	private double startX;
@@ -21,6 +22,10 @@ public class TrafficLight extends MapElement {
 	private double endX;
 	private double endY;
 	private boolean isGreen; // Indicates if the traffic light is green
+	private boolean isAmber; // Shown by signal plans between green and red; cars stop as for red
+	private SignalPlan plan; // Plan that switches the light, null if only the player does
+	private GameEvents events; // Bus of the game the light belongs to, told about colour changes
+	private boolean hinted; // Marked as the light the autopilot would toggle next
 	private Circle light; // Visual representation of the traffic light
 	private Line line;
 
@@ -35,7 +40,14 @@ public class TrafficLight extends MapElement {
 		this.endX = endX;
 		this.endY = endY;
 		this.isGreen = true; // Initializes the light as green
+	}
 
+	/**
+	 * Creates the line and the clickable circle of the traffic light. They are
+	 * only created when the light is first drawn, so that a headless simulation
+	 * never needs JavaFX nodes.
+	 */
+	private void createVisuals() {
 		// Create the visual line element between start and end points
 		this.line = new Line(startX, startY, endX, endY);
 		this.line.setStrokeWidth(1);
@@ -44,8 +56,9 @@ public class TrafficLight extends MapElement {
 		// Calculate the center position for the traffic light
 		double centerX = (startX + endX) / 2;
 		double centerY = (startY + endY) / 2;
-		this.light = new Circle(centerX, centerY, 5, isGreen ? Color.GREEN : Color.RED);
+		this.light = new Circle(centerX, centerY, 5, colour());
 		this.light.setOnMouseClicked(this::toggleLight); // Add click event to change light color
+		showHint();
 	}
 
 	/**
@@ -56,6 +69,9 @@ public class TrafficLight extends MapElement {
 	 * @param pane the Pane where the traffic light will be drawn.
 	 */
 	public void draw(Pane pane) {
+		if (light == null) {
+			createVisuals();
+		}
 		if (!pane.getChildren().contains(line)) {
 			pane.getChildren().add(line);
 		}
@@ -73,8 +89,27 @@ public class TrafficLight extends MapElement {
 	 * @param event The mouse event that triggers this method.
 	 */
 	public void toggleLight(MouseEvent event) {
-		this.isGreen = !isGreen; // Toggle the state of the light
-		light.setFill(isGreen ? Color.GREEN : Color.RED); // Update the light's color based on the new state
+		toggle();
+	}
+
+	/**
+	 * Creates a light at the same place with the same colour, for a copy of the
+	 * game. The copy has no visuals, plan or event bus yet.
+	 *
+	 * @return the new light.
+	 */
+	public TrafficLight copy() {
+		TrafficLight copy = new TrafficLight(startX, startY, endX, endY);
+		copy.isGreen = isGreen;
+		copy.isAmber = isAmber;
+		return copy;
+	}
+
+	/**
+	 * Toggles the state of the traffic light between green and red.
+	 */
+	public void toggle() {
+		setGreen(!isGreen); // Toggle the state of the light
 	}
 
 	/**
@@ -86,6 +121,94 @@ public class TrafficLight extends MapElement {
 		return isGreen;
 	}
 
+	/**
+	 * Sets the state of the traffic light, for example when a saved game is
+	 * restored.
+	 *
+	 * @param isGreen true to make the light green, false to make it red.
+	 */
+	public void setGreen(boolean isGreen) {
+		if (events != null && (this.isGreen != isGreen || isAmber)) {
+			events.publish(GameEvents.Type.LIGHT_CHANGED, this);
+		}
+		this.isGreen = isGreen;
+		this.isAmber = false;
+		if (light != null) {
+			light.setFill(colour()); // Update the light's color based on the new state
+		}
+	}
+
+	/**
+	 * Shows amber: the light is no longer green and cars near it stop.
+	 */
+	public void setAmber() {
+		if (events != null && !isAmber) {
+			events.publish(GameEvents.Type.LIGHT_CHANGED, this);
+		}
+		this.isGreen = false;
+		this.isAmber = true;
+		if (light != null) {
+			light.setFill(colour());
+		}
+	}
+
+	public boolean isAmber() {
+		return isAmber;
+	}
+
+	/**
+	 * Hands the light to a signal plan.
+	 *
+	 * @param plan The plan.
+	 */
+	public void setPlan(SignalPlan plan) {
+		this.plan = plan;
+	}
+
+	/**
+	 * Returns whether a running signal plan switches the light, so that a long
+	 * red is part of its cycle rather than left by the player.
+	 *
+	 * @return true if the light's plan is running.
+	 */
+	public boolean isPlanned() {
+		return plan != null && plan.isRunning();
+	}
+
+	/**
+	 * Connects the light to the event bus of the game it is part of.
+	 *
+	 * @param events The bus, or null when the light is removed.
+	 */
+	public void setEvents(GameEvents events) {
+		this.events = events;
+	}
+
+	/**
+	 * Marks the light as the one to toggle next, or takes the mark away.
+	 *
+	 * @param hinted true to draw a ring around the light.
+	 */
+	public void setHinted(boolean hinted) {
+		this.hinted = hinted;
+		if (light != null) {
+			showHint();
+		}
+	}
+
+	public boolean isHinted() {
+		return hinted;
+	}
+
+	private void showHint() {
+		light.setStroke(hinted ? Color.BLUE : null);
+		light.setStrokeWidth(hinted ? 3 : 1);
+	}
+
+	private Color colour() {
+		return isGreen ? Color.GREEN : isAmber ? Color.ORANGE : Color.RED;
+	}
+
 	/**
 	 * Calculates and returns the position of the traffic light based on its start
 	 * and end coordinates.
@@ -94,6 +217,14 @@ public class TrafficLight extends MapElement {
 	 *         coordinates.
 	 */
 	public Point2D getPosition() {
-		return new Point2D((startX + endX) / 2, (startY + endY) / 2);
+		return new Point2D(getCenterX(), getCenterY());
+	}
+
+	public double getCenterX() {
+		return (startX + endX) / 2;
+	}
+
+	public double getCenterY() {
+		return (startY + endY) / 2;
 	}
 }
@@ -0,0 +1,170 @@
+package application;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Draws the traffic of a zoomed out map without a node per car. Depending on
+ * the zoom the cars are summed up per path segment, drawn as a bar coloured by
+ * how full the segment is, or per grid cell, drawn as a block coloured by the
+ * number of cars and the share of them that is stopped. Both are counted in a
+ * single pass over the cars into reused arrays and painted on one canvas that
+ * covers the window, so the cost of a frame depends on the number of segments
+ * or occupied cells and not on the number of cars.
+ */
+public final class TrafficOverview extends Canvas {
+	private static final double CAR_SPACING = 35.0; // Room a queued car takes up on a segment, in pixels
+	private static final double BAR_WIDTH = 6.0; // Width of a segment bar on screen, in pixels
+	private static final int LEVELS = 8; // Number of colour steps
+	private static final Color[] SEGMENT_COLORS = new Color[LEVELS]; // From free (green) to full (red)
+	private static final Color[][] CELL_COLORS = new Color[LEVELS][LEVELS]; // By stopped share, then by car count
+	private final Map<Path, int[]> segmentCounts = new HashMap<>(); // Cars per segment of every path
+	private int[] cellCars = new int[0]; // Cars per grid cell
+	private int[] cellStopped = new int[0]; // Stopped cars per grid cell
+	private int[] occupiedCells = new int[0]; // Cells counted in the current frame, to clear only those
+	private int occupiedCount = 0;
+
+	static {
+		for (int level = 0; level < LEVELS; level++) {
+			double share = (double) level / (LEVELS - 1);
+			SEGMENT_COLORS[level] = Color.hsb(120 * (1 - share), 0.9, 0.9, 0.85);
+			for (int count = 0; count < LEVELS; count++) {
+				CELL_COLORS[level][count] = Color.hsb(120 * (1 - share), 0.9, 0.9,
+						0.35 + 0.6 * count / (LEVELS - 1));
+			}
+		}
+	}
+
+	/**
+	 * Creates the overview canvas.
+	 *
+	 * @param width  Width of the window area it covers.
+	 * @param height Height of the window area it covers.
+	 */
+	public TrafficOverview(double width, double height) {
+		super(width, height);
+		setMouseTransparent(true); // Clicks go to the traffic lights underneath
+	}
+
+	/**
+	 * Paints the cars of a game as density bars along the path segments.
+	 *
+	 * @param game    The game.
+	 * @param zoom    Screen pixels per map pixel.
+	 * @param offsetX Screen position of the map origin.
+	 * @param offsetY Screen position of the map origin.
+	 */
+	public void drawSegments(Game game, double zoom, double offsetX, double offsetY) {
+		Map<Integer, Path> paths = game.getPaths();
+		if (segmentCounts.size() > paths.size()) {
+			segmentCounts.clear(); // Paths were replaced by a level reload
+		}
+		for (int[] counts : segmentCounts.values()) {
+			Arrays.fill(counts, 0);
+		}
+		List<Car> cars = game.getCars();
+		for (int i = 0; i < cars.size(); i++) {
+			Car car = cars.get(i);
+			int[] counts = segmentCounts.get(car.getPath());
+			if (counts == null || counts.length != car.getPath().getPointCount()) {
+				counts = new int[car.getPath().getPointCount()];
+				segmentCounts.put(car.getPath(), counts);
+			}
+			counts[car.getSegment()]++;
+		}
+
+		GraphicsContext gc = begin(zoom, offsetX, offsetY);
+		gc.setLineWidth(BAR_WIDTH / zoom);
+		for (Map.Entry<Path, int[]> entry : segmentCounts.entrySet()) {
+			Path path = entry.getKey();
+			int[] counts = entry.getValue();
+			for (int segment = 1; segment < counts.length; segment++) {
+				double length = path.getPointDistance(segment) - path.getPointDistance(segment - 1);
+				if (counts[segment] == 0 || length <= 0) {
+					continue; // Empty, or a jump between two parts of the path
+				}
+				double fill = Math.min(1.0, counts[segment] * CAR_SPACING / length);
+				gc.setStroke(SEGMENT_COLORS[(int) Math.round(fill * (LEVELS - 1))]);
+				gc.strokeLine(path.getPointX(segment - 1), path.getPointY(segment - 1), path.getPointX(segment),
+						path.getPointY(segment));
+			}
+		}
+	}
+
+	/**
+	 * Paints the cars of a game as one coloured block per occupied grid cell.
+	 *
+	 * @param game    The game.
+	 * @param zoom    Screen pixels per map pixel.
+	 * @param offsetX Screen position of the map origin.
+	 * @param offsetY Screen position of the map origin.
+	 */
+	public void drawCells(Game game, double zoom, double offsetX, double offsetY) {
+		int cellsX = (int) game.getGridWidth();
+		int cellsY = (int) game.getGridHeight();
+		double cellSize = game.getCellSize();
+		if (cellCars.length != cellsX * cellsY) {
+			cellCars = new int[cellsX * cellsY];
+			cellStopped = new int[cellsX * cellsY];
+			occupiedCount = 0;
+		}
+		for (int i = 0; i < occupiedCount; i++) {
+			cellCars[occupiedCells[i]] = 0;
+			cellStopped[occupiedCells[i]] = 0;
+		}
+		occupiedCount = 0;
+		List<Car> cars = game.getCars();
+		if (occupiedCells.length < cars.size()) {
+			occupiedCells = new int[Math.max(cars.size(), occupiedCells.length * 2)];
+		}
+		for (int i = 0; i < cars.size(); i++) {
+			Car car = cars.get(i);
+			int cellX = (int) (car.getPositionX() / cellSize);
+			int cellY = (int) (car.getPositionY() / cellSize);
+			if (cellX < 0 || cellY < 0 || cellX >= cellsX || cellY >= cellsY) {
+				continue; // Entering or leaving the map
+			}
+			int cell = cellY * cellsX + cellX;
+			if (cellCars[cell]++ == 0) {
+				occupiedCells[occupiedCount++] = cell;
+			}
+			if (car.isStopped()) {
+				cellStopped[cell]++;
+			}
+		}
+
+		GraphicsContext gc = begin(zoom, offsetX, offsetY);
+		for (int i = 0; i < occupiedCount; i++) {
+			int cell = occupiedCells[i];
+			int stoppedLevel = cellStopped[cell] * (LEVELS - 1) / cellCars[cell];
+			int countLevel = Math.min(cellCars[cell], LEVELS) - 1;
+			gc.setFill(CELL_COLORS[stoppedLevel][countLevel]);
+			gc.fillRect((cell % cellsX) * cellSize, (cell / cellsX) * cellSize, cellSize, cellSize);
+		}
+	}
+
+	/**
+	 * Clears the canvas and sets up the map to screen transform.
+	 *
+	 * @param zoom    Screen pixels per map pixel.
+	 * @param offsetX Screen position of the map origin.
+	 * @param offsetY Screen position of the map origin.
+	 * @return the graphics context to paint map coordinates with.
+	 */
+	private GraphicsContext begin(double zoom, double offsetX, double offsetY) {
+		GraphicsContext gc = getGraphicsContext2D();
+		gc.setTransform(1, 0, 0, 1, 0, 0);
+		gc.clearRect(0, 0, getWidth(), getHeight());
+		gc.setTransform(zoom, 0, 0, zoom, offsetX, offsetY);
+		return gc;
+	}
+}
@@ -0,0 +1,205 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Reads files written by {@link TrajectoryRecorder}. Opening a file only reads
+ * the small header of every chunk. A scan maps just the part of one column
+ * that covers the requested ticks, so the other columns and the chunks outside
+ * the time window are never loaded.
+ */
+public class TrajectoryReader implements AutoCloseable {
+	/**
+	 * The columns of a trajectory file, in the order they are stored in a chunk.
+	 */
+	public enum Column {
+		CAR_ID(4), X(4), Y(4), SPEED(4), FLAGS(1);
+
+		private final int width; // Bytes per sample
+
+		Column(int width) {
+			this.width = width;
+		}
+	}
+
+	/**
+	 * Receives the values of a column scan.
+	 */
+	public interface SampleVisitor {
+		/**
+		 * Called for every sample in the scanned window, in tick order.
+		 *
+		 * @param tick  The tick of the sample.
+		 * @param value The value of the scanned column.
+		 */
+		void sample(long tick, double value);
+	}
+
+	private final FileChannel channel;
+	private final double tickSeconds;
+	private int chunkCount = 0;
+	private long[] chunkPositions = new long[16];
+	private long[] firstTicks = new long[16];
+	private int[] tickCounts = new int[16];
+	private int[] sampleCounts = new int[16];
+
+	/**
+	 * Opens a trajectory file and indexes its chunks.
+	 *
+	 * @param file The file to read.
+	 * @throws IOException if the file cannot be read or is not a trajectory file.
+	 */
+	public TrajectoryReader(File file) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		ByteBuffer header = read(0, TrajectoryRecorder.FILE_HEADER_BYTES);
+		if (header.getInt() != TrajectoryRecorder.MAGIC || header.getShort() != TrajectoryRecorder.VERSION) {
+			channel.close();
+			throw new IOException("Not a trajectory file: " + file);
+		}
+		tickSeconds = header.getDouble();
+
+		long position = TrajectoryRecorder.FILE_HEADER_BYTES;
+		long size = channel.size();
+		while (position + TrajectoryRecorder.CHUNK_HEADER_BYTES <= size) {
+			ByteBuffer chunk = read(position, TrajectoryRecorder.CHUNK_HEADER_BYTES);
+			if (chunk.getInt() != TrajectoryRecorder.CHUNK_MAGIC) {
+				break; // The rest of the file was not completely written
+			}
+			if (chunkCount == chunkPositions.length) {
+				chunkPositions = Arrays.copyOf(chunkPositions, chunkCount * 2);
+				firstTicks = Arrays.copyOf(firstTicks, chunkCount * 2);
+				tickCounts = Arrays.copyOf(tickCounts, chunkCount * 2);
+				sampleCounts = Arrays.copyOf(sampleCounts, chunkCount * 2);
+			}
+			chunkPositions[chunkCount] = position;
+			firstTicks[chunkCount] = chunk.getLong();
+			tickCounts[chunkCount] = chunk.getInt();
+			sampleCounts[chunkCount] = chunk.getInt();
+			position += TrajectoryRecorder.CHUNK_HEADER_BYTES + 4L * (tickCounts[chunkCount] + 1)
+					+ 17L * sampleCounts[chunkCount];
+			chunkCount++;
+		}
+	}
+
+	/**
+	 * Visits the values of one column for every sample whose tick lies in
+	 * [fromTick, toTick).
+	 *
+	 * @param column   The column to read.
+	 * @param fromTick First tick of the window.
+	 * @param toTick   Tick after the last tick of the window.
+	 * @param visitor  Receives the values.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public void scan(Column column, long fromTick, long toTick, SampleVisitor visitor) throws IOException {
+		for (int c = 0; c < chunkCount; c++) {
+			long first = firstTicks[c];
+			int ticks = tickCounts[c];
+			if (first + ticks <= fromTick || first >= toTick) {
+				continue;
+			}
+			int startTick = (int) Math.max(0, fromTick - first);
+			int endTick = (int) Math.min(ticks, toTick - first);
+			ByteBuffer starts = read(chunkPositions[c] + TrajectoryRecorder.CHUNK_HEADER_BYTES, 4 * (ticks + 1));
+			int firstSample = starts.getInt(4 * startTick);
+			int endSample = starts.getInt(4 * endTick);
+			if (endSample == firstSample) {
+				continue;
+			}
+
+			long columnStart = chunkPositions[c] + TrajectoryRecorder.CHUNK_HEADER_BYTES + 4L * (ticks + 1);
+			for (Column before : Column.values()) {
+				if (before == column) {
+					break;
+				}
+				columnStart += (long) before.width * sampleCounts[c];
+			}
+			MappedByteBuffer values = channel.map(FileChannel.MapMode.READ_ONLY,
+					columnStart + (long) column.width * firstSample, (long) column.width * (endSample - firstSample));
+			int sample = firstSample;
+			for (int t = startTick; t < endTick; t++) {
+				int tickEnd = starts.getInt(4 * (t + 1));
+				for (; sample < tickEnd; sample++) {
+					visitor.sample(first + t, readValue(values, column));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the next value of a column from a mapped slice.
+	 *
+	 * @param values The mapped column slice.
+	 * @param column The column the slice belongs to.
+	 * @return the value.
+	 */
+	private static double readValue(ByteBuffer values, Column column) {
+		switch (column) {
+		case CAR_ID:
+			return values.getInt();
+		case FLAGS:
+			return values.get();
+		default:
+			return values.getFloat();
+		}
+	}
+
+	/**
+	 * Reads a small part of the file into a heap buffer.
+	 *
+	 * @param position File offset to read from.
+	 * @param length   Number of bytes to read.
+	 * @return the bytes, ready to be read.
+	 * @throws IOException if the file ends early.
+	 */
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of trajectory file");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Returns the first tick in the file.
+	 *
+	 * @return the tick, or 0 for an empty file.
+	 */
+	public long getFirstTick() {
+		return chunkCount == 0 ? 0 : firstTicks[0];
+	}
+
+	/**
+	 * Returns the tick after the last tick in the file.
+	 *
+	 * @return the tick, or 0 for an empty file.
+	 */
+	public long getEndTick() {
+		return chunkCount == 0 ? 0 : firstTicks[chunkCount - 1] + tickCounts[chunkCount - 1];
+	}
+
+	public double getTickSeconds() {
+		return tickSeconds;
+	}
+
+	public int getChunkCount() {
+		return chunkCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
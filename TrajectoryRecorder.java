@@ -0,0 +1,247 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Streams the position, speed and state of every car in every tick to a file
+ * for offline analysis. Samples are collected in column arrays in memory and
+ * written one chunk of ticks at a time by a background thread, which appends
+ * the chunk through a memory-mapped region of the file. The simulation only
+ * copies a few numbers per car; it waits for the writer only when the writer
+ * has fallen more than two chunks behind.
+ *
+ * <p>
+ * The file starts with a header (magic, version, tick length, ticks per
+ * chunk), followed by chunks. A chunk holds its first tick, tick count and
+ * sample count, the index of the first sample of every tick, and then the
+ * columns car id, x, y, speed and state flags, each stored contiguously. See
+ * {@link TrajectoryReader} for reading the file back.
+ */
+public class TrajectoryRecorder {
+	static final int MAGIC = 0x5454524A; // "TTRJ"
+	static final short VERSION = 1;
+	static final int FILE_HEADER_BYTES = 4 + 2 + 8 + 4;
+	static final int CHUNK_HEADER_BYTES = 4 + 8 + 4 + 4;
+	static final int CHUNK_MAGIC = 0x43484E4B; // "CHNK"
+	public static final int CHUNK_TICKS = 60; // Ticks per chunk, one simulated second
+	private final File file;
+	private final FileChannel channel;
+	private final BlockingQueue<Chunk> freeChunks = new ArrayBlockingQueue<>(3);
+	private final BlockingQueue<Chunk> fullChunks = new ArrayBlockingQueue<>(3);
+	private final Thread writer;
+	private Chunk current; // Chunk being filled by the simulation
+	private long position; // File offset at which the next chunk is written
+	private volatile IOException failure; // Set when the writer could not write a chunk
+	private volatile long samplesWritten = 0; // Updated by the writer thread
+	private boolean closed = false;
+
+	/**
+	 * Column arrays of one chunk. They grow to the largest number of samples seen
+	 * and are reused afterwards.
+	 */
+	private static class Chunk {
+		long firstTick;
+		int ticks = 0;
+		int samples = 0;
+		int[] tickStarts = new int[CHUNK_TICKS + 1];
+		int[] ids = new int[1024];
+		float[] xs = new float[1024];
+		float[] ys = new float[1024];
+		float[] speeds = new float[1024];
+		byte[] flags = new byte[1024];
+		boolean last = false; // Tells the writer to stop after this chunk
+
+		void ensureCapacity(int capacity) {
+			if (capacity > ids.length) {
+				int length = Math.max(capacity, ids.length * 2);
+				ids = Arrays.copyOf(ids, length);
+				xs = Arrays.copyOf(xs, length);
+				ys = Arrays.copyOf(ys, length);
+				speeds = Arrays.copyOf(speeds, length);
+				flags = Arrays.copyOf(flags, length);
+			}
+		}
+
+		int byteSize() {
+			return CHUNK_HEADER_BYTES + 4 * (ticks + 1) + samples * 17;
+		}
+	}
+
+	/**
+	 * Creates the file, replacing an existing one, and starts the writer thread.
+	 *
+	 * @param file The file to record to.
+	 * @throws IOException if the file cannot be created.
+	 */
+	public TrajectoryRecorder(File file) throws IOException {
+		this.file = file;
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+		header.putInt(MAGIC);
+		header.putShort(VERSION);
+		header.putDouble(Game.TICK_SECONDS);
+		header.putInt(CHUNK_TICKS);
+		header.flip();
+		channel.write(header, 0);
+		position = FILE_HEADER_BYTES;
+
+		freeChunks.add(new Chunk());
+		freeChunks.add(new Chunk());
+		current = new Chunk();
+		writer = new Thread(this::writeChunks, "Trajectory writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Adds the state of every car in one tick.
+	 *
+	 * @param tick The tick being recorded.
+	 * @param cars The cars in the game after the tick.
+	 */
+	public void record(long tick, List<Car> cars) {
+		if (closed) {
+			return;
+		}
+		Chunk chunk = current;
+		if (chunk.ticks == 0) {
+			chunk.firstTick = tick;
+		}
+		int start = chunk.samples;
+		chunk.ensureCapacity(start + cars.size());
+		for (int i = 0; i < cars.size(); i++) {
+			Car car = cars.get(i);
+			chunk.ids[start + i] = car.getId();
+			chunk.xs[start + i] = (float) car.getPositionX();
+			chunk.ys[start + i] = (float) car.getPositionY();
+			chunk.speeds[start + i] = (float) car.getCurrentSpeed();
+			chunk.flags[start + i] = car.getStateFlags();
+		}
+		chunk.samples = start + cars.size();
+		chunk.ticks++;
+		chunk.tickStarts[chunk.ticks] = chunk.samples;
+		if (chunk.ticks == CHUNK_TICKS) {
+			handOver(false);
+		}
+	}
+
+	/**
+	 * Passes the current chunk to the writer and takes a free one.
+	 *
+	 * @param last true if no more chunks follow.
+	 */
+	private void handOver(boolean last) {
+		current.last = last;
+		try {
+			fullChunks.put(current);
+			current = last ? null : freeChunks.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			closed = true;
+		}
+	}
+
+	/**
+	 * Body of the writer thread: appends every chunk it is handed to the file.
+	 */
+	private void writeChunks() {
+		try {
+			while (true) {
+				Chunk chunk = fullChunks.take();
+				if (chunk.ticks > 0 && failure == null) {
+					try {
+						writeChunk(chunk);
+					} catch (IOException e) {
+						failure = e;
+						e.printStackTrace();
+					}
+				}
+				if (chunk.last) {
+					return;
+				}
+				chunk.ticks = 0;
+				chunk.samples = 0;
+				freeChunks.put(chunk);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Maps the region after the last chunk and copies the columns into it.
+	 *
+	 * @param chunk The chunk to write.
+	 * @throws IOException if the region cannot be mapped.
+	 */
+	private void writeChunk(Chunk chunk) throws IOException {
+		int n = chunk.samples;
+		MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, position, chunk.byteSize());
+		region.putInt(CHUNK_MAGIC);
+		region.putLong(chunk.firstTick);
+		region.putInt(chunk.ticks);
+		region.putInt(n);
+		region.asIntBuffer().put(chunk.tickStarts, 0, chunk.ticks + 1);
+		region.position(region.position() + 4 * (chunk.ticks + 1));
+		region.asIntBuffer().put(chunk.ids, 0, n);
+		region.position(region.position() + 4 * n);
+		region.asFloatBuffer().put(chunk.xs, 0, n);
+		region.position(region.position() + 4 * n);
+		region.asFloatBuffer().put(chunk.ys, 0, n);
+		region.position(region.position() + 4 * n);
+		region.asFloatBuffer().put(chunk.speeds, 0, n);
+		region.position(region.position() + 4 * n);
+		region.put(chunk.flags, 0, n);
+		position += chunk.byteSize();
+		samplesWritten += n;
+	}
+
+	/**
+	 * Writes the partly filled last chunk, waits for the writer to finish and
+	 * closes the file.
+	 *
+	 * @throws IOException if a chunk could not be written.
+	 */
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		handOver(true);
+		closed = true;
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		channel.close();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the number of car samples written to the file so far.
+	 *
+	 * @return the sample count.
+	 */
+	public long getSamplesWritten() {
+		return samplesWritten;
+	}
+}
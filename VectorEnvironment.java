@@ -0,0 +1,318 @@
+package application;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Many copies of one level, stepped together, for training traffic light
+ * controllers. The interface follows the reset/step style of reinforcement
+ * learning environments:
+ *
+ * <ul>
+ * <li>An action is the wanted colour of every light of every copy: 0 for red,
+ * anything else for green.</li>
+ * <li>An observation holds {@link #OBSERVATION_SIZE} values per light: the
+ * number of stopped cars within {@link #QUEUE_RADIUS} of it, its colour (1 for
+ * green) and the simulated seconds since it last changed.</li>
+ * <li>The reward of a step is the number of cars that arrived minus
+ * {@link #CRASH_PENALTY} for every crash.</li>
+ * </ul>
+ *
+ * All values are read from and written to arrays owned by the caller, laid out
+ * environment by environment. The copies are split over a fixed set of worker
+ * threads that are woken with park/unpark. Neither the environment nor a game
+ * tick allocates anything, except for the cars that spawn, so training speed is
+ * limited by the CPU and not by garbage collection.
+ */
+public class VectorEnvironment implements AutoCloseable {
+	public static final int OBSERVATION_SIZE = 3; // Values per light
+	public static final double QUEUE_RADIUS = 120.0; // Distance from a light within which stopped cars count
+	public static final double CRASH_PENALTY = 10.0; // Reward lost for every crash
+	private final String levelText;
+	private final int environments;
+	private final int ticksPerStep;
+	private final double episodeSeconds;
+	private final Game[] games;
+	private final TrafficLight[][] lights; // Lights of every copy, in level file order
+	private final double[] lastSwitch; // Simulated time of the last change of every light
+	private final int[] lastArrivals; // Counters at the end of the previous step
+	private final int[] lastCrashes;
+	private final int lightCount;
+
+	private final Thread[] workers;
+	private final int[] partitionStarts; // Copies handled by worker k: partitionStarts[k] to partitionStarts[k + 1]
+	private final AtomicInteger pending = new AtomicInteger();
+	private volatile long generation = 0; // Incremented for every step, wakes the workers
+	private volatile boolean closed = false;
+	private boolean workersStarted = false;
+	private volatile Thread caller;
+	private volatile Throwable failure;
+	private int[] actions; // Arrays of the step in progress, read by the workers
+	private float[] observations;
+	private float[] rewards;
+	private boolean[] dones;
+
+	/**
+	 * Creates the environment. {@link #reset(long, float[])} must be called before
+	 * the first step.
+	 *
+	 * @param levelText      The contents of the level file.
+	 * @param environments   Number of copies of the level.
+	 * @param ticksPerStep   Simulation ticks between two actions.
+	 * @param episodeSeconds Simulated time after which a copy reports done.
+	 * @param threads        Number of threads stepping the copies, including the
+	 *                       calling thread.
+	 */
+	public VectorEnvironment(String levelText, int environments, int ticksPerStep, double episodeSeconds,
+			int threads) {
+		this.levelText = levelText;
+		this.environments = environments;
+		this.ticksPerStep = ticksPerStep;
+		this.episodeSeconds = episodeSeconds;
+		games = new Game[environments];
+		lights = new TrafficLight[environments][];
+		lightCount = countLights(levelText);
+		lastSwitch = new double[environments * lightCount];
+		lastArrivals = new int[environments];
+		lastCrashes = new int[environments];
+
+		int partitions = Math.max(1, Math.min(threads, environments));
+		partitionStarts = new int[partitions + 1];
+		for (int k = 0; k <= partitions; k++) {
+			partitionStarts[k] = (int) ((long) environments * k / partitions);
+		}
+		workers = new Thread[partitions - 1]; // Partition 0 runs on the calling thread; started by the first step
+	}
+
+	/**
+	 * Starts the worker threads before the first step, once the environment is
+	 * fully constructed.
+	 */
+	private void startWorkers() {
+		for (int k = 0; k < workers.length; k++) {
+			int partition = k + 1;
+			workers[k] = new Thread(() -> work(partition), "Environment worker " + partition);
+			workers[k].setDaemon(true);
+		}
+		for (Thread worker : workers) {
+			worker.start(); // Only once the array is filled, which step reads
+		}
+		workersStarted = true;
+	}
+
+	/**
+	 * Counts the traffic lights of a level.
+	 *
+	 * @param levelText The contents of the level file.
+	 * @return the number of lights.
+	 */
+	private static int countLights(String levelText) {
+		Game game = new Game(15, 15);
+		LevelLoader.loadLevelText(game, levelText);
+		return game.getTrafficLights().size();
+	}
+
+	/**
+	 * Starts a new episode in every copy. Copy i is seeded with seed + i. This
+	 * also recovers the environment after a failed step.
+	 *
+	 * @param seed         The base seed.
+	 * @param observations Receives the first observation of every copy.
+	 */
+	public void reset(long seed, float[] observations) {
+		failure = null; // The copies of the failed step are replaced
+		for (int env = 0; env < environments; env++) {
+			Game game = new Game(15, 15);
+			LevelLoader.loadLevelText(game, levelText);
+			game.setSeed(seed + env);
+			game.setWinConditions(Integer.MAX_VALUE, Integer.MAX_VALUE); // Episodes end by time only
+			game.createTraffic();
+			games[env] = game;
+			lights[env] = game.getTrafficLights().toArray(new TrafficLight[0]);
+			lastArrivals[env] = 0;
+			lastCrashes[env] = 0;
+			for (int light = 0; light < lightCount; light++) {
+				lastSwitch[env * lightCount + light] = 0;
+			}
+			observe(env, observations);
+		}
+	}
+
+	/**
+	 * Applies one action per light, runs {@link #getTicksPerStep()} ticks in every
+	 * copy and reports the results. Copies that are done keep running; call
+	 * {@link #reset(long, float[])} to start a new episode.
+	 *
+	 * @param actions      The wanted colour of every light, 0 for red.
+	 * @param observations Receives the observation of every copy.
+	 * @param rewards      Receives the reward of every copy.
+	 * @param dones        Receives whether each copy reached the end of its
+	 *                     episode.
+	 * @throws IllegalStateException if a copy failed in this step or an earlier
+	 *                               one since the last reset; the step returns
+	 *                               only once every worker has finished.
+	 */
+	public void step(int[] actions, float[] observations, float[] rewards, boolean[] dones) {
+		if (!workersStarted) {
+			startWorkers();
+		}
+		this.actions = actions;
+		this.observations = observations;
+		this.rewards = rewards;
+		this.dones = dones;
+		caller = Thread.currentThread();
+		pending.set(workers.length);
+		generation++; // Publishes the arrays above to the workers
+		for (Thread worker : workers) {
+			LockSupport.unpark(worker);
+		}
+		try {
+			stepPartition(0);
+		} catch (Throwable e) {
+			fail(e);
+		}
+		while (pending.get() > 0) { // Also after a failure, as the workers still step their copies
+			LockSupport.park(this);
+		}
+		if (failure != null) {
+			throw new IllegalStateException("Environment step failed", failure);
+		}
+	}
+
+	/**
+	 * Body of a worker thread: waits for a step and runs its share of copies.
+	 *
+	 * @param partition The partition of copies of this worker.
+	 */
+	private void work(int partition) {
+		long seen = 0;
+		while (true) {
+			while (generation == seen && !closed) {
+				LockSupport.park(this);
+			}
+			if (closed) {
+				return;
+			}
+			seen = generation;
+			try {
+				stepPartition(partition);
+			} catch (Throwable e) {
+				fail(e);
+			}
+			if (pending.decrementAndGet() == 0) {
+				LockSupport.unpark(caller);
+			}
+		}
+	}
+
+	/**
+	 * Keeps the first failure of a step, which every later step reports until
+	 * the next reset.
+	 *
+	 * @param e The failure.
+	 */
+	private synchronized void fail(Throwable e) {
+		if (failure == null) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * Steps every copy of one partition.
+	 *
+	 * @param partition The partition index.
+	 */
+	private void stepPartition(int partition) {
+		for (int env = partitionStarts[partition]; env < partitionStarts[partition + 1]; env++) {
+			Game game = games[env];
+			for (int light = 0; light < lightCount; light++) {
+				boolean green = actions[env * lightCount + light] != 0;
+				if (lights[env][light].isGreen() != green) {
+					lights[env][light].setGreen(green);
+					lastSwitch[env * lightCount + light] = game.getSimulationTime();
+				}
+			}
+			for (int tick = 0; tick < ticksPerStep; tick++) {
+				game.tick();
+			}
+			rewards[env] = (float) (game.getCarsArrived() - lastArrivals[env]
+					- CRASH_PENALTY * (game.getCrashes() - lastCrashes[env]));
+			lastArrivals[env] = game.getCarsArrived();
+			lastCrashes[env] = game.getCrashes();
+			dones[env] = game.getSimulationTime() >= episodeSeconds;
+			observe(env, observations);
+		}
+	}
+
+	/**
+	 * Writes the observation of one copy.
+	 *
+	 * @param env          The copy.
+	 * @param observations The observation array of all copies.
+	 */
+	private void observe(int env, float[] observations) {
+		Game game = games[env];
+		List<Car> cars = game.getCars();
+		int base = env * lightCount * OBSERVATION_SIZE;
+		for (int light = 0; light < lightCount; light++) {
+			TrafficLight trafficLight = lights[env][light];
+			int queue = 0;
+			for (int i = 0; i < cars.size(); i++) {
+				Car car = cars.get(i);
+				double dx = car.getPositionX() - trafficLight.getCenterX();
+				double dy = car.getPositionY() - trafficLight.getCenterY();
+				if (car.isStopped() && dx * dx + dy * dy < QUEUE_RADIUS * QUEUE_RADIUS) {
+					queue++;
+				}
+			}
+			int offset = base + light * OBSERVATION_SIZE;
+			observations[offset] = queue;
+			observations[offset + 1] = trafficLight.isGreen() ? 1 : 0;
+			observations[offset + 2] = (float) (game.getSimulationTime() - lastSwitch[env * lightCount + light]);
+		}
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (Thread worker : workers) {
+			if (worker != null) { // Not started if the environment never stepped
+				LockSupport.unpark(worker);
+			}
+		}
+	}
+
+	public int getEnvironmentCount() {
+		return environments;
+	}
+
+	/**
+	 * Returns the number of traffic lights in each copy, which is the number of
+	 * actions per copy.
+	 *
+	 * @return the light count.
+	 */
+	public int getLightCount() {
+		return lightCount;
+	}
+
+	/**
+	 * Returns the length the observation array must have.
+	 *
+	 * @return the number of observation values over all copies.
+	 */
+	public int getObservationLength() {
+		return environments * lightCount * OBSERVATION_SIZE;
+	}
+
+	public int getTicksPerStep() {
+		return ticksPerStep;
+	}
+}
@@ -0,0 +1,294 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * Keeps track of which stopped car waits on which car or traffic light, and
+ * finds the groups of cars that can no longer move without help. The graph is
+ * changed only when a car stops, starts or waits on something else, and each
+ * change looks at no more than the queue the car joins.
+ *
+ * A group of waiting cars is a gridlock when the front of its queue is
+ * <ul>
+ * <li>a car waiting on nothing, because the car it stopped behind crashed or
+ * left,</li>
+ * <li>a cycle of cars waiting on each other, or</li>
+ * <li>a traffic light without a running signal plan that has held its first car
+ * for {@link #HOLD_SECONDS}.</li>
+ * </ul>
+ * Light holds run on the game's timing wheel. Every gridlock is reported once,
+ * with all cars queued behind its front, until it breaks up.
+ */
+public class WaitForGraph {
+	public static final double HOLD_SECONDS = 30; // Time a light may hold its queue before it counts as a gridlock
+
+	/**
+	 * What the game does about a gridlock.
+	 */
+	public enum Policy {
+		REPORT, // Only publish it
+		RELEASE // Also start the front car, or turn the holding light green
+	}
+
+	/**
+	 * A gridlock found by the graph.
+	 */
+	public static class Gridlock {
+		private final MapElement front; // The car or traffic light at the front of the queue
+		private final List<Car> cars;
+
+		private Gridlock(MapElement front, List<Car> cars) {
+			this.front = front;
+			this.cars = cars;
+		}
+
+		public MapElement getFront() {
+			return front;
+		}
+
+		/**
+		 * Returns the cars of the gridlock, the ones at the front first.
+		 *
+		 * @return the cars.
+		 */
+		public List<Car> getCars() {
+			return cars;
+		}
+	}
+
+	/**
+	 * Timer that reports a light once it has held its queue too long.
+	 */
+	private class Hold implements TimingWheel.Timer {
+		private final TrafficLight light;
+		private long deadline;
+		private long timer;
+
+		private Hold(TrafficLight light) {
+			this.light = light;
+		}
+
+		@Override
+		public void expire(long tick) {
+			if (light.isPlanned()) {
+				deadline = tick + holdTicks(); // The plan will change it; look again later
+				timer = wheel.schedule(this, deadline);
+			} else {
+				holds.remove(light);
+				report(light);
+			}
+		}
+	}
+
+	private TimingWheel wheel;
+	private final Map<Car, MapElement> waitsOn = new HashMap<>(); // Edge of every waiting car, null for nothing
+	private final Map<MapElement, List<Car>> waiters = new HashMap<>(); // Reverse edges
+	private final Map<TrafficLight, Hold> holds = new HashMap<>(); // Lights that hold cars right now
+	private final Set<MapElement> reported = new HashSet<>(); // Fronts of gridlocks reported and not broken up yet
+	private final List<Gridlock> found = new ArrayList<>(); // Gridlocks found since the game last took them
+	private int gridlockCount = 0;
+
+	/**
+	 * Creates an empty graph.
+	 *
+	 * @param wheel The timing wheel of the game.
+	 */
+	public WaitForGraph(TimingWheel wheel) {
+		this.wheel = wheel;
+	}
+
+	/**
+	 * Forgets every edge, for example when a snapshot is restored. The edges are
+	 * found again in the next tick; the waiting times are kept by the cars.
+	 *
+	 * @param wheel The timing wheel of the game from now on.
+	 */
+	public void reset(TimingWheel wheel) {
+		for (Hold hold : holds.values()) {
+			this.wheel.cancel(hold.timer);
+		}
+		this.wheel = wheel;
+		waitsOn.clear();
+		waiters.clear();
+		holds.clear();
+		reported.clear();
+		found.clear();
+	}
+
+	/**
+	 * Records that a car is stopped and what it waits on. Nothing happens if that
+	 * has not changed since the last tick.
+	 *
+	 * @param car    The stopped car.
+	 * @param target The car ahead or the traffic light the car stopped for, or
+	 *               null if nothing holds it any more.
+	 * @param tick   The current tick.
+	 */
+	public void waiting(Car car, MapElement target, long tick) {
+		if (car.getWaitTick() < 0) {
+			car.setWaitTick(tick); // Just stopped
+		} else if (waitsOn.containsKey(car) && waitsOn.get(car) == target) {
+			return; // The common case
+		}
+		unlink(car);
+		waitsOn.put(car, target);
+		if (target == null) {
+			report(car);
+			return;
+		}
+		waiters.computeIfAbsent(target, key -> new ArrayList<>()).add(car);
+		if (target instanceof TrafficLight) {
+			hold((TrafficLight) target, car.getWaitTick() + holdTicks());
+		} else {
+			MapElement next = target;
+			for (int steps = 0; next instanceof Car && steps < waitsOn.size(); steps++) {
+				if (next == car) {
+					report(car); // The car closed a cycle
+					return;
+				}
+				next = waitsOn.get(next);
+			}
+		}
+	}
+
+	/**
+	 * Records that a car moves.
+	 *
+	 * @param car The car.
+	 */
+	public void moving(Car car) {
+		if (car.getWaitTick() >= 0) {
+			car.setWaitTick(-1);
+			removed(car);
+		}
+	}
+
+	/**
+	 * Removes a car that is moving again or has left the game. Cars waiting on it
+	 * get their new edge in the next tick.
+	 *
+	 * @param car The car.
+	 */
+	public void removed(Car car) {
+		if (waitsOn.containsKey(car)) {
+			unlink(car);
+			waitsOn.remove(car);
+		}
+		waiters.remove(car);
+		reported.remove(car);
+	}
+
+	private void unlink(Car car) {
+		MapElement old = waitsOn.get(car);
+		List<Car> list = old != null ? waiters.get(old) : null;
+		if (list == null) {
+			return;
+		}
+		list.remove(car);
+		if (list.isEmpty()) {
+			waiters.remove(old);
+			reported.remove(old);
+			Hold hold = holds.remove(old);
+			if (hold != null) {
+				wheel.cancel(hold.timer);
+			}
+		}
+	}
+
+	/**
+	 * Sets the hold timer of a light to the given tick, unless it runs out
+	 * earlier already.
+	 *
+	 * @param light    The light.
+	 * @param deadline The tick its queue counts as a gridlock.
+	 */
+	private void hold(TrafficLight light, long deadline) {
+		Hold hold = holds.get(light);
+		if (hold == null) {
+			hold = new Hold(light);
+			holds.put(light, hold);
+		} else if (hold.deadline <= deadline) {
+			return;
+		} else {
+			wheel.cancel(hold.timer);
+		}
+		hold.deadline = deadline;
+		hold.timer = wheel.schedule(hold, deadline);
+	}
+
+	private static long holdTicks() {
+		return Math.round(HOLD_SECONDS / Game.TICK_SECONDS);
+	}
+
+	/**
+	 * Collects the queue behind a front and adds it to the gridlocks found, if
+	 * it has not been reported yet.
+	 *
+	 * @param front The car or light at the front.
+	 */
+	private void report(MapElement front) {
+		if (!reported.add(front)) {
+			return;
+		}
+		List<Car> cars = new ArrayList<>();
+		if (front instanceof Car) {
+			cars.add((Car) front);
+		} else if (waiters.containsKey(front)) {
+			cars.addAll(waiters.get(front));
+		}
+		for (int i = 0; i < cars.size(); i++) { // Breadth first, the list doubles as the queue
+			List<Car> behind = waiters.get(cars.get(i));
+			if (behind != null) {
+				for (Car car : behind) {
+					if (car != front) { // The cycle closes here
+						cars.add(car);
+					}
+				}
+			}
+		}
+		gridlockCount++;
+		found.add(new Gridlock(front, cars));
+	}
+
+	/**
+	 * Returns the gridlocks found since the last call and forgets them.
+	 *
+	 * @return the gridlocks, possibly none.
+	 */
+	public List<Gridlock> takeGridlocks() {
+		if (found.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<Gridlock> result = new ArrayList<>(found);
+		found.clear();
+		return result;
+	}
+
+	/**
+	 * Returns what a car waits on.
+	 *
+	 * @param car The car.
+	 * @return the car or light, or null if the car moves or waits on nothing.
+	 */
+	public MapElement getWaitingOn(Car car) {
+		return waitsOn.get(car);
+	}
+
+	/**
+	 * Returns the number of gridlocks found since the game was created.
+	 *
+	 * @return the count.
+	 */
+	public int getGridlockCount() {
+		return gridlockCount;
+	}
+}
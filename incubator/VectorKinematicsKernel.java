@@ -0,0 +1,55 @@
+package application;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+//Berat Metehan Çakmak 150123547
+//Eray Hoşavcıoğlu 150121005
+
+/**
+ * The {@link KinematicsKernel} on the Vector API: it works on as many cars at
+ * once as the widest vector of the processor holds, and on the last few cars
+ * one by one. Each lane does the very operations of the scalar kernel, a
+ * multiply and then an add without fusing them, so the results are equal to
+ * the last bit.
+ *
+ * The gaps to the cars ahead are measured one by one: they read the lanes of
+ * other cars, a gather, which the compiler of JDK 17 can translate into code
+ * that reads from a wrong index and crashes the JVM.
+ *
+ * The API is an incubator module of the JDK. This class needs
+ * {@code --add-modules jdk.incubator.vector} to compile and to run, so it is
+ * kept in its own source folder, incubator, which is only compiled along with
+ * the others when the module is wanted. It is only ever made through
+ * {@link KinematicsKernel#vector()}, which checks for the module and the class
+ * first.
+ */
+public class VectorKinematicsKernel extends KinematicsKernel {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public String getName() {
+		return "vector" + SPECIES.length();
+	}
+
+	@Override
+	protected void move(int from, int to, double dt) {
+		int i = from;
+		for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+			DoubleVector moved = DoubleVector.fromArray(SPECIES, progress, i)
+					.add(DoubleVector.fromArray(SPECIES, speed, i).mul(dt));
+			moved.min(DoubleVector.fromArray(SPECIES, length, i)).intoArray(progress, i);
+		}
+		super.move(i, to, dt); // The cars that do not fill a vector
+	}
+
+	@Override
+	protected void measureStops(int from, int to) {
+		int i = from;
+		for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+			DoubleVector.fromArray(SPECIES, stopLine, i).sub(DoubleVector.fromArray(SPECIES, progress, i))
+					.intoArray(stopGap, i);
+		}
+		super.measureStops(i, to);
+	}
+}